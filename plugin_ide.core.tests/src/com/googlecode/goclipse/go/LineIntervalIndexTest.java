@@ -0,0 +1,77 @@
+package com.googlecode.goclipse.go;
+
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LineIntervalIndexTest {
+	
+	@Test
+	public void testFind() throws Exception { testFind$(); }
+	public void testFind$() throws Exception {
+		LineIntervalIndex<String> index = new LineIntervalIndex.Builder<String>()
+			.add(1, 100, "file")
+			.add(10, 20, "func")
+			.add(12, 15, "block")
+			.add(30, 40, "func2")
+			.add(50, 49, "empty")
+			.build();
+		
+		// The first added interval is found, not the innermost one
+		assertTrue(index.find(0) == null);
+		assertTrue(index.find(1).equals("file"));
+		assertTrue(index.find(13).equals("file"));
+		assertTrue(index.find(100).equals("file"));
+		assertTrue(index.find(101) == null);
+		
+		index = new LineIntervalIndex.Builder<String>()
+			.add(12, 15, "block")
+			.add(10, 20, "func")
+			.add(30, 40, "func2")
+			.add(Integer.MIN_VALUE, Integer.MAX_VALUE, "all")
+			.build();
+		assertTrue(index.find(9).equals("all"));
+		assertTrue(index.find(10).equals("func"));
+		assertTrue(index.find(12).equals("block"));
+		assertTrue(index.find(15).equals("block"));
+		assertTrue(index.find(16).equals("func"));
+		assertTrue(index.find(21).equals("all"));
+		assertTrue(index.find(40).equals("func2"));
+		assertTrue(index.find(Integer.MAX_VALUE).equals("all"));
+		
+		assertTrue(new LineIntervalIndex.Builder<String>().build().find(1) == null);
+	}
+	
+	@Test
+	public void testAgainstLinearSearch() throws Exception { testAgainstLinearSearch$(); }
+	public void testAgainstLinearSearch$() throws Exception {
+		Random random = new Random(42);
+		for (int run = 0; run < 50; run++) {
+			ArrayList<int[]> intervals = new ArrayList<>();
+			LineIntervalIndex.Builder<Integer> builder = new LineIntervalIndex.Builder<>();
+			for (int i = 0; i < 30; i++) {
+				int start = random.nextInt(200);
+				int end = start + random.nextInt(60) - 5;
+				intervals.add(new int[] { start, end });
+				builder.add(start, end, i);
+			}
+			LineIntervalIndex<Integer> index = builder.build();
+			
+			for (int line = -1; line < 270; line++) {
+				Integer expected = null;
+				for (int i = 0; i < intervals.size(); i++) {
+					if (intervals.get(i)[0] <= line && line <= intervals.get(i)[1]) {
+						expected = i;
+						break;
+					}
+				}
+				Integer found = index.find(line);
+				assertTrue(expected == null ? found == null : expected.equals(found));
+			}
+		}
+	}
+	
+}
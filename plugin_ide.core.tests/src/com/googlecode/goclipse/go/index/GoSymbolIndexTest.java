@@ -0,0 +1,210 @@
+package com.googlecode.goclipse.go.index;
+
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.go.index.GoSymbolIndex.LookupTable;
+import com.googlecode.goclipse.go.index.GoSymbolIndex.MatchMode;
+import com.googlecode.goclipse.go.lang.model.ENodeKind;
+
+public class GoSymbolIndexTest {
+	
+	protected static final String DIR = File.separator + "src" + File.separator + "pkg";
+	protected static final String FILE_A = DIR + File.separator + "a.go";
+	protected static final String FILE_B = DIR + File.separator + "b.go";
+	
+	protected static GoSymbol symbol(String name, String filePath) {
+		return new GoSymbol(name, ENodeKind.FUNCTION, null, filePath, 1);
+	}
+	
+	protected static LookupTable createTable(String... names) {
+		GoSymbol[] symbols = new GoSymbol[names.length];
+		for (int i = 0; i < names.length; i++) {
+			symbols[i] = symbol(names[i], FILE_A);
+		}
+		return new LookupTable(symbols);
+	}
+	
+	protected static void checkFind(LookupTable table, String pattern, MatchMode matchMode, boolean caseSensitive,
+			String... expectedNames) {
+		ArrayList<String> names = new ArrayList<>();
+		for (GoSymbol symbol : table.findSymbols(pattern, matchMode, caseSensitive)) {
+			names.add(symbol.name);
+		}
+		assertTrue(names.equals(Arrays.asList(expectedNames)));
+	}
+	
+	@Test
+	public void testFindSymbols() throws Exception { testFindSymbols$(); }
+	public void testFindSymbols$() throws Exception {
+		LookupTable table = createTable("NewReader", "NewBufferedReader", "newReader", "Reader", "ReadAll", "readAll",
+			"bufio", "Buffer", "MyBuffer", "x", "名前付き");
+		assertTrue(table.getSymbolCount() == 11);
+		
+		checkFind(table, "reader", MatchMode.EXACT, false, "Reader");
+		checkFind(table, "Reader", MatchMode.EXACT, true, "Reader");
+		checkFind(table, "reader", MatchMode.EXACT, true);
+		checkFind(table, "readAll", MatchMode.EXACT, false, "ReadAll", "readAll");
+		checkFind(table, "Read", MatchMode.EXACT, false);
+		checkFind(table, "x", MatchMode.EXACT, false, "x");
+		
+		checkFind(table, "new", MatchMode.PREFIX, false, "NewBufferedReader", "NewReader", "newReader");
+		checkFind(table, "New", MatchMode.PREFIX, true, "NewBufferedReader", "NewReader");
+		checkFind(table, "Read", MatchMode.PREFIX, true, "ReadAll", "Reader");
+		checkFind(table, "zz", MatchMode.PREFIX, false);
+		checkFind(table, "", MatchMode.PREFIX, false);
+		
+		checkFind(table, "NBR", MatchMode.CAMEL_CASE, false, "NewBufferedReader");
+		checkFind(table, "NR", MatchMode.CAMEL_CASE, true, "NewBufferedReader", "NewReader");
+		checkFind(table, "nR", MatchMode.CAMEL_CASE, false, "NewBufferedReader", "NewReader", "newReader");
+		checkFind(table, "nR", MatchMode.CAMEL_CASE, true, "newReader");
+		checkFind(table, "NeBuRe", MatchMode.CAMEL_CASE, true, "NewBufferedReader");
+		checkFind(table, "NRB", MatchMode.CAMEL_CASE, true);
+		// Humps are matched by case, except as a plain prefix when case-insensitive
+		checkFind(table, "newr", MatchMode.CAMEL_CASE, true);
+		checkFind(table, "newr", MatchMode.CAMEL_CASE, false, "NewReader", "newReader");
+		
+		checkFind(table, "buf", MatchMode.SUBSTRING, false, "Buffer", "bufio", "MyBuffer", "NewBufferedReader");
+		checkFind(table, "Buf", MatchMode.SUBSTRING, true, "Buffer", "MyBuffer", "NewBufferedReader");
+		checkFind(table, "ff", MatchMode.SUBSTRING, false, "Buffer", "MyBuffer", "NewBufferedReader");
+		checkFind(table, "eaderx", MatchMode.SUBSTRING, false);
+		checkFind(table, "zzz", MatchMode.SUBSTRING, false);
+		checkFind(table, "前付き", MatchMode.SUBSTRING, false, "名前付き");
+		
+		assertTrue(new LookupTable(new GoSymbol[0]).findSymbols("abc", MatchMode.SUBSTRING, false).isEmpty());
+	}
+	
+	@Test
+	public void testSymbolOrder() throws Exception { testSymbolOrder$(); }
+	public void testSymbolOrder$() throws Exception {
+		LookupTable table = new LookupTable(new GoSymbol[] {
+			new GoSymbol("Read", ENodeKind.METHOD, "File", FILE_B, 3),
+			new GoSymbol("Read", ENodeKind.FUNCTION, null, FILE_A, 20),
+			new GoSymbol("read", ENodeKind.FUNCTION, null, FILE_A, 1),
+			new GoSymbol("Read", ENodeKind.METHOD, "Conn", FILE_A, 10),
+		});
+		// By name, then file and line
+		List<GoSymbol> symbols = table.findSymbols("read", MatchMode.EXACT, false);
+		assertTrue(symbols.size() == 4);
+		assertTrue(symbols.get(0).line == 10 && symbols.get(1).line == 20);
+		assertTrue(symbols.get(2).filePath.equals(FILE_B));
+		assertTrue(symbols.get(3).name.equals("read"));
+	}
+	
+	@Test
+	public void testSubstringAgainstLinearSearch() throws Exception { testSubstringAgainstLinearSearch$(); }
+	public void testSubstringAgainstLinearSearch$() throws Exception {
+		// A small alphabet, so that names share many trigrams
+		Random random = new Random(42);
+		String alphabet = "abAB_";
+		for (int run = 0; run < 20; run++) {
+			String[] names = new String[200];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = randomString(random, alphabet, 1 + random.nextInt(10));
+			}
+			LookupTable table = createTable(names);
+			
+			for (int query = 0; query < 50; query++) {
+				String pattern = randomString(random, alphabet, 1 + random.nextInt(5));
+				boolean caseSensitive = random.nextBoolean();
+				
+				List<GoSymbol> symbols = table.findSymbols(pattern, MatchMode.SUBSTRING, caseSensitive);
+				int expectedCount = 0;
+				for (String name : names) {
+					if(caseSensitive ? name.contains(pattern) : name.toLowerCase().contains(pattern.toLowerCase())) {
+						expectedCount++;
+					}
+				}
+				assertTrue(symbols.size() == expectedCount);
+				for (GoSymbol symbol : symbols) {
+					assertTrue(caseSensitive ? symbol.name.contains(pattern) :
+						symbol.name.toLowerCase().contains(pattern.toLowerCase()));
+				}
+			}
+		}
+	}
+	
+	protected static String randomString(Random random, String alphabet, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testIntersect() throws Exception { testIntersect$(); }
+	public void testIntersect$() throws Exception {
+		assertTrue(Arrays.equals(LookupTable.intersect(new int[] { 1, 3, 5, 7 }, new int[] { 0, 3, 4, 7, 9 }),
+			new int[] { 3, 7 }));
+		assertTrue(Arrays.equals(LookupTable.intersect(new int[] { 0, 9 }, new int[] { 0, 9 }), new int[] { 0, 9 }));
+		assertTrue(Arrays.equals(LookupTable.intersect(new int[] { 10, 20 }, new int[] { 1, 2 }), new int[0]));
+		assertTrue(Arrays.equals(LookupTable.intersect(new int[0], new int[] { 1 }), new int[0]));
+		
+		int[] array = { 1, 3, 5 };
+		assertTrue(LookupTable.lowerBound(array, 0, 0) == 0);
+		assertTrue(LookupTable.lowerBound(array, 0, 3) == 1);
+		assertTrue(LookupTable.lowerBound(array, 0, 4) == 2);
+		assertTrue(LookupTable.lowerBound(array, 0, 6) == 3);
+		assertTrue(LookupTable.lowerBound(array, 2, 1) == 2);
+		
+		LookupTable table = createTable("alpha", "beta", "gamma");
+		assertTrue(table.lowerBound("a") == 0);
+		assertTrue(table.lowerBound("beta") == 1);
+		assertTrue(table.lowerBound("c") == 2);
+		assertTrue(table.lowerBound("z") == 3);
+		
+		// Names with all the trigrams of the pattern are candidates, even if they don't contain it
+		table = createTable("abcxbcd", "abcd", "bcd");
+		assertTrue(Arrays.equals(table.findNamesContaining("abcd"), new int[] { 0, 1 }));
+		assertTrue(table.findNamesContaining("ab") == null);
+		assertTrue(table.findNamesContaining("abz").length == 0);
+		checkFind(table, "abcd", MatchMode.SUBSTRING, false, "abcd");
+	}
+	
+	@Test
+	public void testIndex() throws Exception { testIndex$(); }
+	public void testIndex$() throws Exception {
+		GoSymbolIndex index = new GoSymbolIndex();
+		index.putPackage(DIR, "fp1", Arrays.asList(symbol("Open", FILE_A), symbol("Close", FILE_B)));
+		index.putPackage("other", "fp2", Arrays.asList(symbol("OpenFile", "other" + File.separator + "c.go")));
+		assertTrue(index.getFingerprint(DIR).equals("fp1"));
+		assertTrue(index.getFingerprint("missing") == null);
+		assertTrue(index.findSymbols("Open", MatchMode.PREFIX, true).size() == 2);
+		
+		// Changes rebuild the lookup table
+		index.removePackage("other");
+		assertTrue(index.findSymbols("Open", MatchMode.PREFIX, true).size() == 1);
+		index.putPackage(DIR, "fp3", Arrays.asList(symbol("Closer", FILE_A)));
+		assertTrue(index.findSymbols("Open", MatchMode.PREFIX, true).isEmpty());
+		assertTrue(index.findSymbols("Close", MatchMode.PREFIX, true).size() == 1);
+		
+		Path indexFile = Files.createTempDirectory("GoSymbolIndexTest").resolve("index.dat");
+		try {
+			index.save(indexFile);
+			GoSymbolIndex loadedIndex = new GoSymbolIndex();
+			loadedIndex.load(indexFile);
+			assertTrue(loadedIndex.getFingerprint(DIR).equals("fp3"));
+			List<GoSymbol> symbols = loadedIndex.findSymbols("closer", MatchMode.EXACT, false);
+			assertTrue(symbols.size() == 1 && symbols.get(0).filePath.equals(FILE_A));
+			
+			// Another format version gives an empty index
+			Files.write(indexFile, new byte[] { 0, 0, 0, 99 });
+			loadedIndex.load(indexFile);
+			assertTrue(loadedIndex.isEmpty());
+		} finally {
+			Files.deleteIfExists(indexFile);
+			Files.deleteIfExists(indexFile.getParent());
+		}
+	}
+	
+}
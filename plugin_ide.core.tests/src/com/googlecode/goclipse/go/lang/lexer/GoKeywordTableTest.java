@@ -0,0 +1,38 @@
+package com.googlecode.goclipse.go.lang.lexer;
+
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.go.lang.lexer.GoKeywordTable.Category;
+import com.googlecode.goclipse.go.lang.lexer.GoKeywordTable.GoWord;
+
+public class GoKeywordTableTest {
+	
+	@Test
+	public void testLookup() throws Exception { testLookup$(); }
+	public void testLookup$() throws Exception {
+		for (GoWord word : GoKeywordTable.WORDS) {
+			assertTrue(GoKeywordTable.lookup(word.text) == word);
+			assertTrue(GoKeywordTable.lookup(new StringBuilder(word.text)) == word);
+			if (word.tokenType != null) {
+				assertTrue(word.tokenType.getText().equals(word.text));
+			}
+		}
+		
+		assertTrue(GoKeywordTable.classifyIdentifier("func") == TokenType.FUNC);
+		assertTrue(GoKeywordTable.classifyIdentifier("complex128") == TokenType.COMPLEX128);
+		assertTrue(GoKeywordTable.classifyIdentifier("panic") == TokenType.PANIC);
+		assertTrue(GoKeywordTable.classifyIdentifier("recover") == TokenType.IDENTIFIER);
+		assertTrue(GoKeywordTable.getCategory("recover") == Category.BUILTIN_FUNCTION);
+		assertTrue(GoKeywordTable.getCategory("closed") == null);
+		
+		assertTrue(GoKeywordTable.lookup("") == null);
+		assertTrue(GoKeywordTable.lookup("x") == null);
+		assertTrue(GoKeywordTable.lookup("fun") == null);
+		assertTrue(GoKeywordTable.lookup("funcs") == null);
+		assertTrue(GoKeywordTable.lookup("Func") == null);
+		assertTrue(GoKeywordTable.lookup("fallthroughs") == null);
+	}
+	
+}
@@ -0,0 +1,108 @@
+package com.googlecode.goclipse.go.lang.lexer;
+
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.go.lang.lexer.IncrementalLexer.TextDamage;
+
+public class IncrementalLexerTest {
+	
+	protected static final String SOURCE =
+		"package main\n" +
+		"\n" +
+		"import \"fmt\"\n" +
+		"\n" +
+		"/* block\n" +
+		"   comment */\n" +
+		"type T struct {\n" +
+		"\tName string // field\n" +
+		"}\n" +
+		"\n" +
+		"func (t *T) Hello(n int) string {\n" +
+		"\ts := `raw\n" +
+		"string`\n" +
+		"\tfor i := 0; i < n; i++ {\n" +
+		"\t\tfmt.Println(\"hello\", t.Name, 'x', 1.5e3)\n" +
+		"\t}\n" +
+		"\treturn s\n" +
+		"}\n";
+	
+	/** Fragments that change the lexer state across lines, and ordinary ones. */
+	protected static final String[] FRAGMENTS = {
+		"/*", "*/", "//", "`", "\"", "'", "\n", "\n\n", " ", "\t", "x", "func", "int64", "{", "}", "(", ")",
+		"fmt.Println", "0x1F", ":=", "/* c */", "\"s\"", "",
+	};
+	
+	@Test
+	public void testRandomEdits() throws Exception { testRandomEdits$(); }
+	public void testRandomEdits$() throws Exception {
+		Random random = new Random(12345);
+		
+		for (int run = 0; run < 20; run++) {
+			String text = SOURCE;
+			IncrementalLexer incrementalLexer = new IncrementalLexer();
+			incrementalLexer.reset(text);
+			
+			for (int update = 0; update < 50; update++) {
+				// Several successive edits, lexed in a single update
+				TextDamage damage = new TextDamage();
+				int editCount = 1 + random.nextInt(3);
+				for (int i = 0; i < editCount; i++) {
+					int offset = random.nextInt(text.length() + 1);
+					int removedLength = random.nextInt(Math.min(8, text.length() - offset) + 1);
+					String inserted = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+					text = text.substring(0, offset) + inserted + text.substring(offset + removedLength);
+					damage.add(offset, removedLength, inserted.length());
+				}
+				
+				TokenBuffer tokens = incrementalLexer.update(text, damage);
+				checkSameTokens(tokens, new IncrementalLexer().reset(text));
+			}
+		}
+	}
+	
+	@Test
+	public void testRelexedLines() throws Exception { testRelexedLines$(); }
+	public void testRelexedLines$() throws Exception {
+		IncrementalLexer incrementalLexer = new IncrementalLexer();
+		incrementalLexer.reset(SOURCE);
+		
+		// An edit that doesn't change the state at the end of the line only re-lexes that line
+		int offset = SOURCE.indexOf("Hello");
+		String text = SOURCE.substring(0, offset) + "Hi" + SOURCE.substring(offset + "Hello".length());
+		TokenBuffer tokens = incrementalLexer.update(text, new TextDamage(offset, "Hello".length(), 2));
+		checkSameTokens(tokens, new IncrementalLexer().reset(text));
+		assertTrue(incrementalLexer.getLastRelexedLineCount() <= 2);
+		
+		// Opening a block comment re-lexes the rest of the text
+		offset = SOURCE.indexOf("type T");
+		text = SOURCE.substring(0, offset) + "/*" + SOURCE.substring(offset);
+		incrementalLexer.reset(SOURCE);
+		tokens = incrementalLexer.update(text, new TextDamage(offset, 0, 2));
+		checkSameTokens(tokens, new IncrementalLexer().reset(text));
+		assertTrue(incrementalLexer.getLastRelexedLineCount() > 10);
+	}
+	
+	protected static void checkSameTokens(TokenBuffer tokens, TokenBuffer expected) {
+		assertTrue(tokens.getSource().toString().equals(expected.getSource().toString()));
+		assertTrue(tokens.size() == expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertTrue(tokens.getType(i) == expected.getType(i));
+			assertTrue(tokens.isInComment(i) == expected.isInComment(i));
+			assertTrue(tokens.getLine(i) == expected.getLine(i));
+			assertTrue(tokens.getStart(i) == expected.getStart(i));
+			assertTrue(tokens.getEnd(i) == expected.getEnd(i));
+			assertTrue(tokens.getOffset(i) == expected.getOffset(i));
+			assertTrue(tokens.getText(i).equals(expected.getText(i)));
+		}
+		assertTrue(tokens.getLineCount() == expected.getLineCount());
+		for (int line = 1; line <= expected.getLineCount(); line++) {
+			assertTrue(tokens.getLineStartOffset(line) == expected.getLineStartOffset(line));
+			assertTrue(tokens.isLineInBlockComment(line) == expected.isLineInBlockComment(line));
+		}
+	}
+	
+}
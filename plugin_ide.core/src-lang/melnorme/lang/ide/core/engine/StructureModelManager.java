@@ -13,12 +13,15 @@ package melnorme.lang.ide.core.engine;
 import static melnorme.utilbox.core.Assert.AssertNamespace.assertNotNull;
 import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import melnorme.lang.ide.core.LangCore;
+import melnorme.lang.ide.core.text.DocumentModification;
 import melnorme.lang.tooling.structure.SourceFileStructure;
 import melnorme.lang.utils.EntryMapTS;
 import melnorme.utilbox.concurrency.ICancelMonitor;
@@ -135,6 +138,17 @@ public abstract class StructureModelManager {
 	 * @param fileLocation the file location if document is based on a file, null otherwise.
 	 */
 	protected abstract StructureUpdateTask createDisposeTask2(StructureInfo structureInfo, Location fileLocation);
+	
+	/**
+	 * @return whether {@link StructureInfo}s should record the document modifications, 
+	 * for use by incremental parsers. See {@link StructureInfo#getModifications(long, long)}.
+	 */
+	protected boolean isTrackingModifications() {
+		return false;
+	}
+	
+	/** Maximum number of modifications kept. If exceeded, consumers must do a full update. */
+	protected static final int MAX_TRACKED_MODIFICATIONS = 1000;
 
 	
 	public class StructureInfo {
@@ -149,6 +163,12 @@ public abstract class StructureModelManager {
 		private StructureUpdateTask latestTask = null;
 		private CountDownLatch latch = new CountDownLatch(0);
 		
+		/** Number of document modifications recorded so far. */
+		private long modificationStamp = 0;
+		/** The stamp before the first modification in {@link #modifications}. */
+		private long modificationsStart = 0;
+		private final ArrayList<DocumentModification> modifications = new ArrayList<>();
+		
 		public StructureInfo(Object key) {
 			this.key = assertNotNull(key);
 		}
@@ -172,6 +192,10 @@ public abstract class StructureModelManager {
 		public synchronized boolean connectDocument(IDocument newDocument, IStructureModelListener structureListener) {
 			if(document == null) {
 				document = newDocument;
+				// A new document is a modification that is not available, consumers must do a full update.
+				modifications.clear();
+				modificationStamp++;
+				modificationsStart = modificationStamp;
 				connectDocumentListener(newDocument, this);
 			}
 			else if(document != newDocument) {
@@ -193,10 +217,58 @@ public abstract class StructureModelManager {
 			}
 			@Override
 			public void documentChanged(DocumentEvent event) {
+				if(isTrackingModifications()) {
+					recordModification(new DocumentModification(event.getOffset(), event.getLength(), 
+						event.getText() == null ? "" : event.getText()));
+				}
 				queueUpdateTask(StructureInfo.this, document);
 			}
 		};
 		
+		protected synchronized void recordModification(DocumentModification modification) {
+			if(modifications.size() >= MAX_TRACKED_MODIFICATIONS) {
+				// No one is consuming them, stop accumulating.
+				modifications.clear();
+				modificationsStart = modificationStamp;
+			}
+			modifications.add(modification);
+			modificationStamp++;
+		}
+		
+		/** 
+		 * @return the stamp of the current document contents: the number of modifications recorded so far.
+		 * Only meaningful if {@link StructureModelManager#isTrackingModifications()}.
+		 */
+		public synchronized long getModificationStamp() {
+			return modificationStamp;
+		}
+		
+		/**
+		 * @return the document modifications that changed the contents at fromStamp into the contents at toStamp,
+		 * in order. Null if those modifications are no longer available (the caller must then process 
+		 * the whole document).
+		 */
+		public synchronized List<DocumentModification> getModifications(long fromStamp, long toStamp) {
+			if(fromStamp < modificationsStart || toStamp > modificationStamp || fromStamp > toStamp) {
+				return null;
+			}
+			int fromIndex = (int) (fromStamp - modificationsStart);
+			int toIndex = (int) (toStamp - modificationsStart);
+			return new ArrayList<>(modifications.subList(fromIndex, toIndex));
+		}
+		
+		/**
+		 * Discard the recorded modifications up to given stamp, once they are no longer needed.
+		 */
+		public synchronized void discardModifications(long upToStamp) {
+			upToStamp = Math.min(upToStamp, modificationStamp);
+			if(upToStamp <= modificationsStart) {
+				return;
+			}
+			modifications.subList(0, (int) (upToStamp - modificationsStart)).clear();
+			modificationsStart = upToStamp;
+		}
+		
 		public synchronized void disconnectFromDocument(IStructureModelListener structureListener,
 				StructureUpdateTask disposeTask, @SuppressWarnings("unused") MDocumentSynchedAcess docAcess) {
 			workingCopyListeners.removeListener(structureListener);
@@ -377,4 +449,4 @@ public abstract class StructureModelManager {
 		return null;
 	}
 	
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -16,7 +16,13 @@ import static melnorme.utilbox.core.Assert.AssertNamespace.assertNotNull;
 import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
 
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import melnorme.lang.ide.core.LangCore;
 import melnorme.lang.ide.core.LangCore_Actual;
@@ -28,12 +34,12 @@ import melnorme.lang.tooling.data.PathValidator;
 import melnorme.lang.tooling.data.StatusLevel;
 import melnorme.lang.tooling.ops.SourceLineColumnRange;
 import melnorme.lang.tooling.ops.ToolSourceMessage;
+import melnorme.utilbox.collections.ArrayList2;
 import melnorme.utilbox.concurrency.OperationCancellation;
 import melnorme.utilbox.core.CommonException;
 import melnorme.utilbox.misc.Location;
 
 import org.eclipse.core.filebuffers.FileBuffers;
-import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.resources.IBuildConfiguration;
@@ -41,7 +47,12 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
@@ -49,6 +60,17 @@ import org.eclipse.jface.text.IDocument;
 
 public abstract class LangProjectBuilder extends IncrementalProjectBuilder {
 	
+	/** The number of resources refreshed after the last build. */
+	protected volatile int lastRefreshedResourceCount;
+	/** The build markers from before the current build, that were not yet replaced. Grouped by resource. */
+	protected HashMap<IResource, ArrayList2<IMarker>> previousBuildMarkers = new HashMap<>();
+	/** 
+	 * The build markers from before the current build, that were not yet replaced, of the resources updated so far.
+	 * Grouped by resource, then by attributes. These resources are removed from {@link #previousBuildMarkers}.
+	 */
+	protected HashMap<IResource, HashMap<Map<String, Object>, Deque<IMarker>>> previousBuildMarkersByAttributes = 
+			new HashMap<>();
+	
 	public LangProjectBuilder() {
 	}
 	
@@ -65,6 +87,13 @@ public abstract class LangProjectBuilder extends IncrementalProjectBuilder {
 		}
 	}
 	
+	/**
+	 * @return the existing build markers that the current build will replace.
+	 */
+	protected IMarker[] findProjectBuildMarkers() throws CoreException {
+		return getProject().findMarkers(getBuildProblemId(), true, IResource.DEPTH_INFINITE);
+	}
+	
 	protected String getBuildProblemId() {
 		return LangCore_Actual.BUILD_PROBLEM_ID;
 	}
@@ -99,7 +128,8 @@ public abstract class LangProjectBuilder extends IncrementalProjectBuilder {
 			handleFirstOfKind();
 		}
 		
-		deleteProjectBuildMarkers();
+		// Existing markers are only deleted after the build, so that those reported again can be kept.
+		collectPreviousBuildMarkers();
 		
 		try {
 			doBuild(project, kind, args, monitor);
@@ -119,7 +149,8 @@ public abstract class LangProjectBuilder extends IncrementalProjectBuilder {
 			throw ce;
 		}
 		finally {
-			getProject().refreshLocal(IResource.DEPTH_INFINITE, monitor);
+			deletePreviousBuildMarkers();
+			refreshBuildOutput(project, monitor);
 			
 			if(isLastProjectOfKind()) {
 				handleLastOfKind();
@@ -130,6 +161,49 @@ public abstract class LangProjectBuilder extends IncrementalProjectBuilder {
 		return null;
 	}
 	
+	/**
+	 * Refresh the resources that may have been changed by the build.
+	 */
+	protected void refreshBuildOutput(IProject project, IProgressMonitor monitor) throws CoreException {
+		int refreshedCount = 0;
+		for (IResource resource : getBuildOutputResources(project)) {
+			if(!resource.exists() && resource.getParent() != null) {
+				// Discover the resource itself, if it was created by the build
+				resource.getParent().refreshLocal(IResource.DEPTH_ONE, monitor);
+			}
+			resource.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+			refreshedCount += countResources(resource);
+		}
+		lastRefreshedResourceCount = refreshedCount;
+	}
+	
+	/**
+	 * @return the resources that may have been changed by the build, to be refreshed after it.
+	 * Default is the whole project, subclasses should narrow it down to the build output locations if possible.
+	 */
+	protected Collection<? extends IResource> getBuildOutputResources(IProject project) throws CoreException {
+		return new ArrayList2<>(project);
+	}
+	
+	protected static int countResources(IResource resource) throws CoreException {
+		if(!resource.exists()) {
+			return 0;
+		}
+		final int[] count = { 0 };
+		resource.accept(new IResourceProxyVisitor() {
+			@Override
+			public boolean visit(IResourceProxy proxy) {
+				count[0]++;
+				return true;
+			}
+		}, IResource.NONE);
+		return count[0];
+	}
+	
+	public int getLastRefreshedResourceCount() {
+		return lastRefreshedResourceCount;
+	}
+	
 	protected void handleFirstOfKind() {
 	}
 	
@@ -169,69 +243,205 @@ public abstract class LangProjectBuilder extends IncrementalProjectBuilder {
 	
 	/* ----------------- Problem markers handling ----------------- */
 	
+	protected void collectPreviousBuildMarkers() {
+		previousBuildMarkers = new HashMap<>();
+		previousBuildMarkersByAttributes = new HashMap<>();
+		try {
+			for (IMarker marker : findProjectBuildMarkers()) {
+				ArrayList2<IMarker> resourceMarkers = previousBuildMarkers.get(marker.getResource());
+				if(resourceMarkers == null) {
+					resourceMarkers = new ArrayList2<>();
+					previousBuildMarkers.put(marker.getResource(), resourceMarkers);
+				}
+				resourceMarkers.add(marker);
+			}
+		} catch (CoreException ce) {
+			LangCore.logStatus(ce);
+			deleteProjectBuildMarkers();
+		}
+	}
+	
+	/** Keep the previous build markers of given resources: they are neither replaced nor deleted by this build. */
+	protected void keepPreviousBuildMarkers(Collection<? extends IResource> resources) {
+		for (IResource resource : resources) {
+			previousBuildMarkers.remove(resource);
+			previousBuildMarkersByAttributes.remove(resource);
+		}
+	}
+	
+	protected void deletePreviousBuildMarkers() {
+		if(previousBuildMarkers.isEmpty() && previousBuildMarkersByAttributes.isEmpty()) {
+			return;
+		}
+		final ArrayList2<IMarker> staleMarkers = new ArrayList2<>();
+		for (ArrayList2<IMarker> resourceMarkers : previousBuildMarkers.values()) {
+			staleMarkers.addAll(resourceMarkers);
+		}
+		for (HashMap<Map<String, Object>, Deque<IMarker>> resourceMarkers : previousBuildMarkersByAttributes.values()) {
+			for (Deque<IMarker> markers : resourceMarkers.values()) {
+				staleMarkers.addAll(markers);
+			}
+		}
+		previousBuildMarkers = new HashMap<>();
+		previousBuildMarkersByAttributes = new HashMap<>();
+		try {
+			runMarkersUpdate(new IWorkspaceRunnable() {
+				@Override
+				public void run(IProgressMonitor monitor) throws CoreException {
+					for (IMarker marker : staleMarkers) {
+						marker.delete();
+					}
+				}
+			});
+		} catch (CoreException ce) {
+			LangCore.logStatus(ce);
+		}
+	}
+	
+	/** Run given marker changes as one workspace operation, so that a single resource change event is sent. */
+	protected void runMarkersUpdate(IWorkspaceRunnable markersUpdate) throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		workspace.run(markersUpdate, workspace.getRoot(), IWorkspace.AVOID_UPDATE, null);
+	}
+	
 	protected void addErrorMarkers(Iterable<ToolSourceMessage> buildErrors, Location rootPath) throws CoreException {
+		final LinkedHashMap<IResource, ArrayList2<ToolSourceMessage>> resourcesMessages = new LinkedHashMap<>();
 		
 		for (ToolSourceMessage buildError : buildErrors) {
+			if(buildError.getMessageKind() == StatusLevel.OK) {
+				continue; // Don't add message as a marker.
+			}
 			Location loc = rootPath.resolve(buildError.getFilePath()); // Absolute paths will remain unchanged.
 			
 			IFile[] files = ResourceUtils.getWorkspaceRoot().findFilesForLocationURI(loc.toUri());
 			for (IFile file : files) {
-				addErrorMarker(file, buildError);
+				if(!file.exists()) {
+					continue;
+				}
+				ArrayList2<ToolSourceMessage> resourceMessages = resourcesMessages.get(file);
+				if(resourceMessages == null) {
+					resourceMessages = new ArrayList2<>();
+					resourcesMessages.put(file, resourceMessages);
+				}
+				resourceMessages.add(buildError);
 			}
 		}
 		
+		runMarkersUpdate(new IWorkspaceRunnable() {
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (Entry<IResource, ArrayList2<ToolSourceMessage>> entry : resourcesMessages.entrySet()) {
+					updateErrorMarkers(entry.getKey(), entry.getValue());
+				}
+			}
+		});
 	}
 	
-	protected void addErrorMarker(IResource resource, ToolSourceMessage buildmessage) throws CoreException {
-		if(!resource.exists())
-			return;
+	/**
+	 * Add markers for given messages to given resource. Previous markers identical to a message are kept,
+	 * the others are deleted at the end of the build (messages can be added in several batches during the build).
+	 */
+	protected void updateErrorMarkers(IResource resource, Collection<ToolSourceMessage> buildMessages) 
+			throws CoreException {
+		HashMap<Map<String, Object>, Deque<IMarker>> staleMarkers = getPreviousBuildMarkersByAttributes(resource);
 		
-		if(buildmessage.getMessageKind() == StatusLevel.OK) {
-			return; // Don't add message as a marker.
+		IDocument doc = null;
+		ITextFileBufferManager fileBufferManager = FileBuffers.getTextFileBufferManager();
+		IFile file = resource instanceof IFile ? (IFile) resource : null;
+		if(file != null) {
+			// Connect once for all the messages of the file
+			fileBufferManager.connect(file.getFullPath(), LocationKind.IFILE, null);
 		}
-		
-		// TODO: check if marker already exists?
-		IMarker marker = resource.createMarker(getBuildProblemId());
-		
-		marker.setAttribute(IMarker.SEVERITY, severityFrom(buildmessage.getMessageKind()));
-		marker.setAttribute(IMarker.MESSAGE, buildmessage.getMessage());
-		
-		if(!(resource instanceof IFile)) {
-			return;
+		try {
+			if(file != null) {
+				doc = fileBufferManager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE).getDocument();
+			}
+			
+			for (ToolSourceMessage buildMessage : buildMessages) {
+				Map<String, Object> markerAttributes = getMarkerAttributes(buildMessage, doc);
+				if(removeMatchingMarker(staleMarkers, markerAttributes)) {
+					continue; // Marker already exists
+				}
+				resource.createMarker(getBuildProblemId()).setAttributes(markerAttributes);
+			}
+		} finally {
+			if(file != null) {
+				fileBufferManager.disconnect(file.getFullPath(), LocationKind.IFILE, null);
+			}
+		}
+	}
+	
+	/** 
+	 * @return the previous build markers of given resource that were not yet replaced, grouped by attributes.
+	 * The attributes of each marker are fetched once, on the first update of the resource.
+	 */
+	protected HashMap<Map<String, Object>, Deque<IMarker>> getPreviousBuildMarkersByAttributes(IResource resource) {
+		HashMap<Map<String, Object>, Deque<IMarker>> markersByAttributes = 
+				previousBuildMarkersByAttributes.get(resource);
+		if(markersByAttributes != null) {
+			return markersByAttributes;
+		}
+		markersByAttributes = new HashMap<>();
+		ArrayList2<IMarker> markers = previousBuildMarkers.remove(resource);
+		if(markers != null) {
+			for (IMarker marker : markers) {
+				Map<String, Object> attributes;
+				try {
+					attributes = marker.getAttributes();
+				} catch (CoreException ce) {
+					continue; // Marker no longer exists, ignore
+				}
+				Deque<IMarker> sameAttributesMarkers = markersByAttributes.get(attributes);
+				if(sameAttributesMarkers == null) {
+					sameAttributesMarkers = new ArrayDeque<>();
+					markersByAttributes.put(attributes, sameAttributesMarkers);
+				}
+				sameAttributesMarkers.add(marker);
+			}
+		}
+		previousBuildMarkersByAttributes.put(resource, markersByAttributes);
+		return markersByAttributes;
+	}
+	
+	protected static boolean removeMatchingMarker(HashMap<Map<String, Object>, Deque<IMarker>> markers, 
+			Map<String, Object> attributes) {
+		Deque<IMarker> matchingMarkers = markers.get(attributes);
+		if(matchingMarkers == null) {
+			return false;
+		}
+		matchingMarkers.removeFirst();
+		if(matchingMarkers.isEmpty()) {
+			markers.remove(attributes);
 		}
+		return true;
+	}
+	
+	/**
+	 * @return the attributes of the marker for given build message. 
+	 * @param doc the document of the message file, or null if the resource is not a file.
+	 */
+	protected Map<String, Object> getMarkerAttributes(ToolSourceMessage buildmessage, IDocument doc) {
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put(IMarker.SEVERITY, severityFrom(buildmessage.getMessageKind()));
+		attributes.put(IMarker.MESSAGE, buildmessage.getMessage());
 		
-		IFile file = (IFile) resource;
+		if(doc == null) {
+			return attributes;
+		}
 		
 		int line = buildmessage.getFileLineNumber();
 		if(line >= 0) {
-			marker.setAttribute(IMarker.LINE_NUMBER, line);
-		}
-		
-		SourceLineColumnRange range = buildmessage.range;
-		
-		SourceRange messageSR;
-		
-		ITextFileBufferManager fileBufferManager = FileBuffers.getTextFileBufferManager();
-		fileBufferManager.connect(file.getFullPath(), LocationKind.IFILE, null);
-		
-		try {
-			ITextFileBuffer tfb = fileBufferManager.getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
-			messageSR = getMessageRangeUsingDocInfo(range, tfb.getDocument());
-		} finally {
-			fileBufferManager.disconnect(file.getFullPath(), LocationKind.IFILE, null);
+			attributes.put(IMarker.LINE_NUMBER, line);
 		}
 		
+		SourceRange messageSR = getMessageRangeUsingDocInfo(buildmessage.range, doc);
 		if(messageSR != null) {
-			try {
-				marker.setAttribute(IMarker.CHAR_START, messageSR.getStartPos());
-				marker.setAttribute(IMarker.CHAR_END, messageSR.getEndPos());
-			} catch (CoreException ce) {
-				LangCore.logStatus(ce);
-			}
+			attributes.put(IMarker.CHAR_START, messageSR.getStartPos());
+			attributes.put(IMarker.CHAR_END, messageSR.getEndPos());
 		}
-		
+		return attributes;
 	}
-
+	
 	protected SourceRange getMessageRangeUsingDocInfo(SourceLineColumnRange range, IDocument doc) {
 		
 		int charStart;
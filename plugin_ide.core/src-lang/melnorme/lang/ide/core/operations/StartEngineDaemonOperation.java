@@ -25,6 +25,12 @@ public class StartEngineDaemonOperation extends AbstractRunProcessTask {
 		this.abstractToolsManager = abstractToolsManager;
 	}
 	
+	@Override
+	protected ExternalProcessNotifyingHelper readFromStartedProcess(Process process, ICancelMonitor cm) {
+		// The daemon outlives this operation: canceling the operation must not destroy it once started
+		return super.readFromStartedProcess(process, ICancelMonitor._Util.NULL_MONITOR);
+	}
+	
 	@Override
 	protected void handleProcessStartResult(ExternalProcessNotifyingHelper processHelper, CommonException ce) {
 		for (ILangOperationsListener listener : abstractToolsManager.getListeners()) {
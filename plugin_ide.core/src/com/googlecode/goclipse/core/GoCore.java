@@ -15,18 +15,41 @@ import melnorme.lang.ide.core.LangCore;
 
 import org.osgi.framework.BundleContext;
 
+import com.googlecode.goclipse.go.CodeContext;
+import com.googlecode.goclipse.go.ExternalPackagesPreindexer;
+import com.googlecode.goclipse.go.PackageModelStore;
+import com.googlecode.goclipse.go.index.GoSymbolIndexer;
+
 public class GoCore extends LangCore {
 	
+	protected static final long PREINDEXER_START_DELAY_MS = 5000;
+	
+	protected static GoSymbolIndexer symbolIndexer;
+	protected static ExternalPackagesPreindexer packagesPreindexer;
+	
 	@Override
 	protected void doCustomStart(BundleContext context) {
+		symbolIndexer = new GoSymbolIndexer(getStateLocation().append("symbolIndex.dat").toFile().toPath());
+		CodeContext.setPackageModelStore(new PackageModelStore(
+			getStateLocation().append("packageModels").toFile().toPath()));
+		packagesPreindexer = new ExternalPackagesPreindexer();
 	}
 	
 	@Override
 	public void doInitializeAfterUIStart() {
+		symbolIndexer.start();
+		// Leave the startup work to the workbench first
+		packagesPreindexer.schedule(PREINDEXER_START_DELAY_MS);
 	}
 	
 	@Override
 	protected void doCustomStop(BundleContext context) {
+		packagesPreindexer.cancel();
+		symbolIndexer.dispose();
+	}
+	
+	public static GoSymbolIndexer getSymbolIndexer() {
+		return symbolIndexer;
 	}
 	
 	public static GoCore getDefault() {
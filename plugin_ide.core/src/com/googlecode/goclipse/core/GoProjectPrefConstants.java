@@ -30,4 +30,10 @@ public interface GoProjectPrefConstants {
 	IntPreference AUTO_UNIT_TEST_MAX_TIME = 
 		new IntPreference("projectPrefs.auto_unit_test.max_time", 5000);
 	
+	BooleanPreference PARALLEL_PACKAGE_BUILD = 
+		new BooleanPreference("projectPrefs.build.parallel_packages", false);
+	/** Maximum number of packages built in parallel. 0 means the number of processors. */
+	IntPreference PARALLEL_BUILD_JOBS = 
+		new IntPreference("projectPrefs.build.parallel_jobs", 0);
+	
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.core.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import melnorme.lang.tooling.ast.ParserError;
+import melnorme.lang.tooling.ast.ParserErrorTypes;
+import melnorme.lang.tooling.ast.SourceRange;
+import melnorme.utilbox.collections.ArrayList2;
+
+import com.googlecode.goclipse.go.lang.lexer.TokenBuffer;
+import com.googlecode.goclipse.go.lang.lexer.TokenType;
+
+/**
+ * Matches the parentheses, braces and brackets of a token stream, and reports the syntax errors
+ * that can be reliably detected at the token level: unbalanced delimiters, and unterminated
+ * comments and literals.
+ *
+ * Comments and string literals are tracked here, instead of relying on the lexer comment flag,
+ * since the lexer does not know about string literals (it would treat a "//" inside a string as a comment).
+ */
+public class GoDelimiterMatcher {
+	
+	protected enum State { CODE, LINE_COMMENT, BLOCK_COMMENT, STRING, RUNE, RAW_STRING }
+	
+	protected final TokenBuffer tokens;
+	/** For each opening delimiter token, the index of its closing token. -1 otherwise. */
+	protected final int[] matchingToken;
+	protected final ArrayList2<ParserError> errors = new ArrayList2<>();
+	
+	public GoDelimiterMatcher(TokenBuffer tokens) {
+		this.tokens = tokens;
+		this.matchingToken = new int[tokens.size()];
+		Arrays.fill(matchingToken, -1);
+		
+		match();
+	}
+	
+	/**
+	 * @return the index of the token closing the delimiter at given token index,
+	 * or -1 if that token is not an opening delimiter, or it is not closed.
+	 */
+	public int getMatchingToken(int index) {
+		return matchingToken[index];
+	}
+	
+	/**
+	 * @return whether the token at given index is an opening delimiter in code (not in a comment or literal).
+	 */
+	public boolean isMatchedOpening(int index) {
+		return matchingToken[index] != -1;
+	}
+	
+	public ArrayList2<ParserError> getErrors() {
+		return errors;
+	}
+	
+	protected void match() {
+		ArrayList<Integer> openDelimiters = new ArrayList<>();
+		
+		State state = State.CODE;
+		int stateStartToken = -1;
+		boolean escape = false;
+		int currentLine = -1;
+		int skipOffset = -1;
+		
+		for (int i = 0; i < tokens.size(); i++) {
+			TokenType type = tokens.getType(i);
+			
+			if (tokens.getLine(i) != currentLine) {
+				currentLine = tokens.getLine(i);
+				escape = false;
+				if (state == State.STRING || state == State.RUNE) {
+					// Interpreted string and rune literals cannot span lines
+					addError(stateStartToken, "Unterminated " + (state == State.RUNE ? "rune" : "string") +
+						" literal.");
+					state = State.CODE;
+				} else if (state == State.LINE_COMMENT) {
+					state = State.CODE;
+				}
+			}
+			
+			if (tokens.getOffset(i) == skipOffset) {
+				// The '/' of a "*/", which the lexer reports as a separate token.
+				continue;
+			}
+			
+			switch (state) {
+			case CODE:
+				switch (type) {
+				case COMMENT:
+					state = State.LINE_COMMENT;
+					break;
+				case BLOCK_COMMENT_START:
+					state = State.BLOCK_COMMENT;
+					stateStartToken = i;
+					break;
+				case QUOTE:
+					state = State.STRING;
+					stateStartToken = i;
+					break;
+				case APOSTROPHE:
+					state = State.RUNE;
+					stateStartToken = i;
+					break;
+				case GRAVE_ACCENT:
+					state = State.RAW_STRING;
+					stateStartToken = i;
+					break;
+				case LPAREN:
+				case LBRACE:
+				case LBRACKET:
+					openDelimiters.add(i);
+					break;
+				case RPAREN:
+				case RBRACE:
+				case RBRACKET:
+					closeDelimiter(openDelimiters, i);
+					break;
+				default:
+					break;
+				}
+				break;
+			
+			case STRING:
+			case RUNE:
+				if (escape) {
+					escape = false;
+				} else if (type == TokenType.BACKSLASH) {
+					escape = true;
+				} else if (type == (state == State.STRING ? TokenType.QUOTE : TokenType.APOSTROPHE)) {
+					state = State.CODE;
+				}
+				break;
+			
+			case RAW_STRING:
+				if (type == TokenType.GRAVE_ACCENT) {
+					state = State.CODE;
+				}
+				break;
+			
+			case BLOCK_COMMENT:
+				if (type == TokenType.BLOCK_COMMENT_END) {
+					state = State.CODE;
+					skipOffset = tokens.getOffset(i) + 1;
+				}
+				break;
+			
+			case LINE_COMMENT:
+				break;
+			}
+		}
+		
+		switch (state) {
+		case BLOCK_COMMENT: addError(stateStartToken, "Unterminated comment."); break;
+		case RAW_STRING: addError(stateStartToken, "Unterminated raw string literal."); break;
+		case STRING: addError(stateStartToken, "Unterminated string literal."); break;
+		case RUNE: addError(stateStartToken, "Unterminated rune literal."); break;
+		default: break;
+		}
+		
+		for (int openIndex : openDelimiters) {
+			addError(openIndex, "Unclosed '" + tokens.getText(openIndex) + "'.");
+		}
+	}
+	
+	protected void closeDelimiter(ArrayList<Integer> openDelimiters, int closeIndex) {
+		TokenType openType = getOpeningType(tokens.getType(closeIndex));
+		
+		for (int depth = openDelimiters.size() - 1; depth >= 0; depth--) {
+			int openIndex = openDelimiters.get(depth);
+			if (tokens.getType(openIndex) != openType) {
+				continue;
+			}
+			// Any delimiters opened after the matching one were not closed.
+			for (int unclosed = openDelimiters.size() - 1; unclosed > depth; unclosed--) {
+				int unclosedIndex = openDelimiters.remove(unclosed);
+				addError(unclosedIndex, "Unclosed '" + tokens.getText(unclosedIndex) + "'.");
+			}
+			openDelimiters.remove(depth);
+			matchingToken[openIndex] = closeIndex;
+			return;
+		}
+		addError(closeIndex, "Unexpected '" + tokens.getText(closeIndex) + "'.");
+	}
+	
+	protected static TokenType getOpeningType(TokenType closingType) {
+		switch (closingType) {
+		case RPAREN: return TokenType.LPAREN;
+		case RBRACE: return TokenType.LBRACE;
+		default: return TokenType.LBRACKET;
+		}
+	}
+	
+	protected void addError(int tokenIndex, String message) {
+		SourceRange sr = new SourceRange(tokens.getOffset(tokenIndex), tokens.getTextView(tokenIndex).length());
+		errors.add(new ParserError(ParserErrorTypes.GENERIC_ERROR, sr, message, null));
+	}
+	
+}
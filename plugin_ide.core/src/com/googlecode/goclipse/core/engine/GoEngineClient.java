@@ -10,29 +10,56 @@
  *******************************************************************************/
 package com.googlecode.goclipse.core.engine;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+
 import melnorme.lang.ide.core.engine.EngineClient;
-import melnorme.lang.tooling.ElementAttributes;
-import melnorme.lang.tooling.ast.SourceRange;
+import melnorme.lang.ide.core.text.DocumentModification;
 import melnorme.lang.tooling.structure.SourceFileStructure;
-import melnorme.lang.tooling.structure.StructureElement;
-import melnorme.lang.tooling.structure.StructureElementKind;
-import melnorme.utilbox.collections.ArrayList2;
 import melnorme.utilbox.misc.Location;
 
+import com.googlecode.goclipse.go.CodeContext;
+import com.googlecode.goclipse.go.ParsedSourceFile;
+import com.googlecode.goclipse.go.lang.lexer.IncrementalLexer;
+import com.googlecode.goclipse.go.lang.lexer.IncrementalLexer.TextDamage;
+import com.googlecode.goclipse.go.lang.lexer.TokenBuffer;
+
 public class GoEngineClient extends EngineClient {
 	
+	/** The lexed state of each connected document. Access synchronized on the map. */
+	protected final HashMap<StructureInfo, LexedDocument> lexedDocuments = new HashMap<>();
+	
 	public GoEngineClient() {
 	}
 	
+	@Override
+	protected boolean isTrackingModifications() {
+		return true;
+	}
+	
 	@Override
 	protected StructureUpdateTask createUpdateTask2(StructureInfo structureInfo, String source, Location fileLocation) {
+		final long sourceStamp = structureInfo.getModificationStamp();
+		
 		return new StructureUpdateTask(structureInfo) {
 			@Override
 			protected SourceFileStructure createSourceFileStructure() {
-				SourceRange sr = new SourceRange(0, source.length());
-				StructureElement element = new StructureElement("Outline_Not_Implemented", sr, sr, 
-					StructureElementKind.MODULEDEC, new ElementAttributes(null), null, null);
-				return new SourceFileStructure(fileLocation, new ArrayList2<StructureElement>(element), null);
+				if(isCancelled()) {
+					return null;
+				}
+				TokenBuffer tokens = getLexedDocument(structureInfo).updateTokens(structureInfo, source, sourceStamp);
+				if(tokens == null) {
+					return null;
+				}
+				
+				File file = fileLocation == null ? null : fileLocation.toFile();
+				ParsedSourceFile parsedFile = ParsedSourceFile.parse(file, source.length(), tokens);
+				if(file != null) {
+					// Share this parse with CodeContext clients (completion, outline, navigation)
+					CodeContext.getParsedFileCache().putParsedFile(file, source, parsedFile);
+				}
+				return new GoStructureBuilder(fileLocation, parsedFile).createStructure();
 			}
 		};
 	}
@@ -42,9 +69,64 @@ public class GoEngineClient extends EngineClient {
 		return new StructureUpdateTask(structureInfo) {
 			@Override
 			protected SourceFileStructure createSourceFileStructure() {
+				synchronized(lexedDocuments) {
+					lexedDocuments.remove(structureInfo);
+				}
 				return null;
 			}
 		};
 	}
 	
-}
\ No newline at end of file
+	protected LexedDocument getLexedDocument(StructureInfo structureInfo) {
+		synchronized(lexedDocuments) {
+			LexedDocument lexedDocument = lexedDocuments.get(structureInfo);
+			if(lexedDocument == null) {
+				lexedDocument = new LexedDocument();
+				lexedDocuments.put(structureInfo, lexedDocument);
+			}
+			return lexedDocument;
+		}
+	}
+	
+	/**
+	 * The tokens of a document, kept up to date incrementally using the document modifications
+	 * recorded by the {@link StructureInfo}.
+	 */
+	protected static class LexedDocument {
+		
+		protected final IncrementalLexer lexer = new IncrementalLexer();
+		/** The modification stamp of the source last lexed, -1 if none. */
+		protected long lexedStamp = -1;
+		
+		/**
+		 * @return the tokens for given source, which has given modification stamp. 
+		 * Null if a more recent source has already been lexed (the caller's update is obsolete).
+		 */
+		public synchronized TokenBuffer updateTokens(StructureInfo structureInfo, String source, long sourceStamp) {
+			if(sourceStamp < lexedStamp) {
+				return null;
+			}
+			if(sourceStamp == lexedStamp) {
+				return lexer.getTokenBuffer();
+			}
+			
+			List<DocumentModification> modifications = lexedStamp == -1 ? null : 
+				structureInfo.getModifications(lexedStamp, sourceStamp);
+			TokenBuffer tokens;
+			if(modifications == null) {
+				tokens = lexer.reset(source);
+			} else {
+				TextDamage damage = new TextDamage();
+				for(DocumentModification modification : modifications) {
+					damage.add(modification.getOffset(), modification.getLength(), modification.getText().length());
+				}
+				tokens = damage.isEmpty() ? lexer.getTokenBuffer() : lexer.update(source, damage);
+			}
+			lexedStamp = sourceStamp;
+			structureInfo.discardModifications(sourceStamp);
+			return tokens;
+		}
+		
+	}
+	
+}
\ No newline at end of file
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.core.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import melnorme.lang.tooling.EProtection;
+import melnorme.lang.tooling.ElementAttributes;
+import melnorme.lang.tooling.ast.SourceRange;
+import melnorme.lang.tooling.structure.SourceFileStructure;
+import melnorme.lang.tooling.structure.StructureElement;
+import melnorme.lang.tooling.structure.StructureElementKind;
+import melnorme.utilbox.collections.ArrayList2;
+import melnorme.utilbox.misc.Location;
+
+import com.googlecode.goclipse.go.ParsedSourceFile;
+import com.googlecode.goclipse.go.lang.lexer.TokenBuffer;
+import com.googlecode.goclipse.go.lang.lexer.TokenType;
+import com.googlecode.goclipse.go.lang.model.Function;
+import com.googlecode.goclipse.go.lang.model.Import;
+import com.googlecode.goclipse.go.lang.model.Node;
+import com.googlecode.goclipse.go.lang.model.Type;
+import com.googlecode.goclipse.go.lang.model.TypeClass;
+import com.googlecode.goclipse.go.lang.model.Var;
+
+/**
+ * Creates the {@link SourceFileStructure} of a Go source file, from its parse result and tokens.
+ *
+ * The parsers only record the line of each declaration, source ranges are derived from the tokens:
+ * a declaration extends from the start of its line to the brace closing its body, if it has one
+ * opening on that line, or to the end of that line otherwise.
+ */
+public class GoStructureBuilder {
+	
+	protected final Location location;
+	protected final ParsedSourceFile parsedFile;
+	protected final TokenBuffer tokens;
+	protected final GoDelimiterMatcher delimiters;
+	
+	public GoStructureBuilder(Location location, ParsedSourceFile parsedFile) {
+		this.location = location;
+		this.parsedFile = parsedFile;
+		this.tokens = parsedFile.page.getTokenBuffer();
+		this.delimiters = new GoDelimiterMatcher(tokens);
+	}
+	
+	public SourceFileStructure createStructure() {
+		ArrayList2<StructureElement> elements = new ArrayList2<>();
+		
+		if(parsedFile.pkg != null && parsedFile.pkg.getName() != null) {
+			elements.add(createElement(parsedFile.pkg, parsedFile.pkg.getName(), parsedFile.pkg.getName(), null,
+				StructureElementKind.MODULEDEC, null));
+		}
+		
+		if(!parsedFile.imports.isEmpty()) {
+			elements.add(createImportsElement());
+		}
+		
+		ArrayList<Node> declarations = new ArrayList<>();
+		declarations.addAll(parsedFile.types);
+		declarations.addAll(parsedFile.functions);
+		declarations.addAll(parsedFile.methods);
+		for(Var var : parsedFile.vars) {
+			if(var.getScope() == null || var.getScope().getParent() == null) {
+				declarations.add(var); // Top-level only
+			}
+		}
+		Collections.sort(declarations, new Comparator<Node>() {
+			@Override
+			public int compare(Node node1, Node node2) {
+				return node1.getLine() - node2.getLine();
+			}
+		});
+		
+		for(Node node : declarations) {
+			StructureElement element = createDeclarationElement(node);
+			if(element != null) {
+				elements.add(element);
+			}
+		}
+		
+		return new SourceFileStructure(location, elements, delimiters.getErrors());
+	}
+	
+	protected StructureElement createImportsElement() {
+		ArrayList2<StructureElement> importElements = new ArrayList2<>();
+		int start = Integer.MAX_VALUE;
+		int end = 0;
+		for(Import imprt : parsedFile.imports) {
+			String path = imprt.path;
+			String type = imprt.prefixType == Import.PrefixType.ALIAS ? imprt.prefix : null;
+			StructureElement element = createElement(imprt, path, path, type, StructureElementKind.MODULEDEC, null);
+			if(element == null) {
+				continue;
+			}
+			importElements.add(element);
+			start = Math.min(start, element.getSourceRange().getStartPos());
+			end = Math.max(end, element.getSourceRange().getEndPos());
+		}
+		if(importElements.isEmpty()) {
+			start = end = 0;
+		}
+		SourceRange sr = SourceRange.srStartToEnd(start, end);
+		return new StructureElement("import declarations", sr, sr, StructureElementKind.MODULEDEC,
+			new ElementAttributes(null), null, importElements);
+	}
+	
+	protected StructureElement createDeclarationElement(Node node) {
+		String name = node.getName();
+		if(name == null) {
+			return null;
+		}
+		name = name.trim();
+		
+		if(node instanceof Function) {
+			Function function = (Function) node;
+			String simpleName = function.getInsertionText() == null ? null :
+				function.getInsertionText().replace("()", "");
+			
+			// Split the signature from the result types
+			String type = null;
+			int index = name.indexOf(')');
+			if(name.startsWith("(")) {
+				index = name.indexOf(')', index + 1);
+			}
+			if(index != -1 && index + 1 < name.length()) {
+				type = name.substring(index + 1).trim();
+				name = name.substring(0, index + 1);
+			}
+			return createElement(node, name, simpleName, type, StructureElementKind.FUNCTION, simpleName);
+		}
+		if(node instanceof Type) {
+			Type type = (Type) node;
+			StructureElementKind kind =
+				type.getTypeClass() == TypeClass.STRUCT ? StructureElementKind.STRUCT :
+				type.getTypeClass() == TypeClass.INTERFACE ? StructureElementKind.INTERFACE :
+				StructureElementKind.CLASS;
+			return createElement(node, name, name, null, kind, name);
+		}
+		return createElement(node, name, name, node.getType(), StructureElementKind.VARIABLE, name);
+	}
+	
+	protected StructureElement createElement(Node node, String name, String nameInSource, String type,
+			StructureElementKind kind, String exportName) {
+		int line = node.getLine();
+		if(line < 1 || line > tokens.getLineCount()) {
+			return null;
+		}
+		SourceRange sourceRange = getDeclarationRange(line);
+		SourceRange nameRange = getNameRange(line, nameInSource, sourceRange);
+		
+		EProtection protection = null;
+		if(exportName != null && !exportName.isEmpty()) {
+			protection = Character.isUpperCase(exportName.charAt(0)) ? EProtection.PUBLIC : EProtection.PRIVATE;
+		}
+		return new StructureElement(name, nameRange, sourceRange, kind, new ElementAttributes(protection), type,
+			null);
+	}
+	
+	protected SourceRange getDeclarationRange(int line) {
+		int start = tokens.getLineStartOffset(line);
+		int end = getLineEndOffset(line);
+		
+		for(int i = tokens.getLineFirstTokenIndex(line); i < tokens.getLineEndTokenIndex(line); i++) {
+			if(tokens.getType(i) == TokenType.LBRACE && delimiters.isMatchedOpening(i)) {
+				end = tokens.getOffset(delimiters.getMatchingToken(i)) + 1;
+				break;
+			}
+		}
+		return SourceRange.srStartToEnd(start, end);
+	}
+	
+	protected SourceRange getNameRange(int line, String nameInSource, SourceRange declarationRange) {
+		if(nameInSource != null) {
+			for(int i = tokens.getLineFirstTokenIndex(line); i < tokens.getLineEndTokenIndex(line); i++) {
+				CharSequence text = tokens.getTextView(i);
+				if(text.length() == nameInSource.length() && text.toString().equals(nameInSource)) {
+					return new SourceRange(tokens.getOffset(i), text.length());
+				}
+			}
+		}
+		return new SourceRange(declarationRange.getOffset(), 0);
+	}
+	
+	/** @return the offset of the end of given line, excluding the line terminator. */
+	protected int getLineEndOffset(int line) {
+		// The source has an extra newline added by the lexer, so every line is terminated.
+		int lineEnd = line < tokens.getLineCount() ?
+				tokens.getLineStartOffset(line + 1) - 1 : tokens.getSource().length() - 1;
+		return Math.max(Math.min(lineEnd, parsedFile.sourceLength), tokens.getLineStartOffset(line));
+	}
+	
+}
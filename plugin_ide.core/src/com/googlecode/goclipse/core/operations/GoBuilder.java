@@ -10,28 +10,62 @@
  *******************************************************************************/
 package com.googlecode.goclipse.core.operations;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 import melnorme.lang.ide.core.LangCore;
 import melnorme.lang.ide.core.operations.LangProjectBuilderExt;
+import melnorme.lang.ide.core.utils.ResourceUtils;
+import melnorme.lang.ide.core.utils.process.EclipseCancelMonitor;
+import melnorme.lang.ide.core.utils.process.RunExternalProcessTask;
 import melnorme.lang.tooling.data.PathValidator;
 import melnorme.lang.tooling.data.StatusLevel;
+import melnorme.lang.tooling.ops.ToolSourceMessage;
 import melnorme.utilbox.collections.ArrayList2;
 import melnorme.utilbox.concurrency.OperationCancellation;
 import melnorme.utilbox.core.CommonException;
+import melnorme.utilbox.misc.ChunkedByteBuffer;
 import melnorme.utilbox.misc.Location;
+import melnorme.utilbox.misc.PathUtil;
 import melnorme.utilbox.process.ExternalProcessHelper.ExternalProcessResult;
+import melnorme.utilbox.process.ExternalProcessNotifyingHelper;
 
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import com.googlecode.goclipse.core.GoEnvironmentPrefs;
 import com.googlecode.goclipse.core.GoProjectEnvironment;
 import com.googlecode.goclipse.core.GoProjectPrefConstants;
+import com.googlecode.goclipse.tooling.FileFingerprints;
 import com.googlecode.goclipse.tooling.GoBuildOutputProcessor;
+import com.googlecode.goclipse.tooling.GoBuildOutputProcessor.IncrementalParser;
+import com.googlecode.goclipse.tooling.GoPackageBuildCache;
+import com.googlecode.goclipse.tooling.GoPackageBuildCache.FingerprintCalculator;
+import com.googlecode.goclipse.tooling.GoPackageBuildScheduler;
+import com.googlecode.goclipse.tooling.GoPackageBuildScheduler.IPackageBuildJob;
+import com.googlecode.goclipse.tooling.GoPackageDependencyGraph;
 import com.googlecode.goclipse.tooling.GoPackageName;
 import com.googlecode.goclipse.tooling.GoSDKLocationValidator;
 import com.googlecode.goclipse.tooling.env.GoEnvironment;
@@ -42,6 +76,22 @@ import com.googlecode.goclipse.tooling.env.GoEnvironment;
  */
 public class GoBuilder extends LangProjectBuilderExt {
 	
+	/** The package pattern of the build options that is replaced by the packages to build, in incremental builds */
+	public static final String ALL_PACKAGES_PATTERN = "./...";
+	
+	/** The import dependencies of the project packages. Null if unknown (no full build was done yet). */
+	protected GoPackageDependencyGraph dependencyGraph;
+	/** The directories of the packages to build, in an incremental build. Null for a full build. */
+	protected LinkedHashSet<Location> incrementalBuildPackages;
+	/** Whether the build was explicitly requested as a full build: the build cache is not used then. */
+	protected boolean fullBuildRequested;
+	
+	/** The period for adding the markers of the errors parsed so far, while the build is running. */
+	public static final int MARKERS_UPDATE_PERIOD_MS = 500;
+	
+	/** The build results of the project packages, persisted in the plugin state location. Loaded on first use. */
+	protected GoPackageBuildCache buildCache;
+	
 	public GoBuilder() {
 	}
 	
@@ -56,6 +106,189 @@ public class GoBuilder extends LangProjectBuilderExt {
 		return getBuildToolPathValidator().getValidatedPath(pathString);
 	}
 	
+	protected GoPackageBuildCache getBuildCache() {
+		if(buildCache == null) {
+			buildCache = new GoPackageBuildCache();
+			try {
+				buildCache.load(getBuildCacheFile());
+			} catch (IOException e) {
+				LangCore.logError("Error loading build cache.", e);
+			}
+		}
+		return buildCache;
+	}
+	
+	protected Location getBuildCacheFile() {
+		IPath cacheFile = LangCore.getInstance().getStateLocation().append("buildCache")
+				.append(getProject().getName() + ".cache");
+		return Location.create_fromValid(cacheFile.toFile().toPath());
+	}
+	
+	protected void saveBuildCache() {
+		try {
+			getBuildCache().save(getBuildCacheFile());
+		} catch (IOException e) {
+			LangCore.logError("Error saving build cache.", e);
+		}
+	}
+	
+	@Override
+	protected IProject[] build(int kind, Map<String, String> args, IProgressMonitor monitor) throws CoreException {
+		incrementalBuildPackages = null;
+		fullBuildRequested = kind == FULL_BUILD;
+		if(kind != FULL_BUILD && dependencyGraph != null) {
+			incrementalBuildPackages = getIncrementalBuildPackages(getDelta(getProject()));
+		}
+		try {
+			return super.build(kind, args, monitor);
+		} finally {
+			incrementalBuildPackages = null;
+		}
+	}
+	
+	@Override
+	protected Collection<? extends IResource> getBuildOutputResources(IProject project) throws CoreException {
+		ArrayList2<IResource> outputResources = new ArrayList2<>();
+		if(GoProjectEnvironment.isProjectInsideGoPath(project)) {
+			return outputResources; // The output goes to the bin and pkg folders of the GOPATH entry
+		}
+		for (IPath outputFolder : 
+				new IPath[] { GoProjectEnvironment.getBinFolder(project), GoProjectEnvironment.getPkgFolder(project) }) {
+			IContainer container = ResourceUtils.getWorkspaceRoot().getContainerForLocation(outputFolder);
+			if(container != null) {
+				outputResources.add(container);
+			}
+		}
+		return outputResources;
+	}
+	
+	@Override
+	protected IMarker[] findProjectBuildMarkers() throws CoreException {
+		if(incrementalBuildPackages == null) {
+			return super.findProjectBuildMarkers();
+		}
+		ArrayList2<IMarker> markers = new ArrayList2<>();
+		for (Location packageDir : incrementalBuildPackages) {
+			for (IContainer container : 
+					ResourceUtils.getWorkspaceRoot().findContainersForLocationURI(packageDir.toUri())) {
+				markers.addElements(container.findMarkers(getBuildProblemId(), true, IResource.DEPTH_ONE));
+			}
+		}
+		return markers.toArray(IMarker.class);
+	}
+	
+	/**
+	 * @return the directories of the packages affected by given delta: the packages with changed files, 
+	 * and the packages that depend on those. 
+	 * Null if a full build is required (packages were added or removed, or the delta is unknown).
+	 */
+	protected LinkedHashSet<Location> getIncrementalBuildPackages(IResourceDelta delta) {
+		if(delta == null) {
+			return null;
+		}
+		IProject project = getProject();
+		try {
+			if(!isIncrementalBuildSupported(project)) {
+				return null;
+			}
+			GoEnvironment goEnv = getValidGoEnvironment(project);
+			Location sourceRootDir = getSourceRootDir(project, goEnv);
+			
+			ChangedPackagesVisitor changedPackagesVisitor = new ChangedPackagesVisitor(sourceRootDir);
+			delta.accept(changedPackagesVisitor);
+			if(changedPackagesVisitor.requiresFullBuild) {
+				return null;
+			}
+			
+			ArrayList<GoPackageName> changedPackages = new ArrayList<>();
+			for (Entry<Location, Location> entry : changedPackagesVisitor.changedPackages.entrySet()) {
+				GoPackageName goPackage = goEnv.getGoPath().findGoPackageForSourceFile(entry.getValue());
+				if(goPackage == null) {
+					continue; // Not in a package, so not built by the go tool anyways
+				}
+				dependencyGraph.updatePackage(goPackage, entry.getKey());
+				if(!dependencyGraph.containsPackage(goPackage)) {
+					return null; // Package was removed
+				}
+				changedPackages.add(goPackage);
+			}
+			
+			LinkedHashSet<Location> packageDirs = new LinkedHashSet<>();
+			for (GoPackageName goPackage : dependencyGraph.getPackagesAndDependents(changedPackages)) {
+				packageDirs.add(dependencyGraph.getPackageLocation(goPackage));
+			}
+			return packageDirs;
+		} catch (CoreException | IOException e) {
+			dependencyGraph = null;
+			return null;
+		}
+	}
+	
+	protected boolean isIncrementalBuildSupported(IProject project) throws CoreException {
+		int patternCount = 0;
+		for (String buildOption : GoProjectPrefConstants.GO_BUILD_OPTIONS.getParsedArguments(project)) {
+			if(buildOption.equals(ALL_PACKAGES_PATTERN)) {
+				patternCount++;
+			}
+		}
+		return patternCount == 1;
+	}
+	
+	/**
+	 * Collects the package directories of the source files changed in a delta.
+	 */
+	protected static class ChangedPackagesVisitor implements IResourceDeltaVisitor {
+		
+		protected final Location sourceRootDir;
+		/** Map of package directory to a changed file in it. */
+		protected final LinkedHashMap<Location, Location> changedPackages = new LinkedHashMap<>();
+		protected boolean requiresFullBuild = false;
+		
+		public ChangedPackagesVisitor(Location sourceRootDir) {
+			this.sourceRootDir = sourceRootDir;
+		}
+		
+		@Override
+		public boolean visit(IResourceDelta delta) {
+			IResource resource = delta.getResource();
+			Location location = ResourceUtils.getResourceLocation(resource);
+			if(location == null || requiresFullBuild) {
+				return false;
+			}
+			
+			if(resource.getType() != IResource.FILE) {
+				if(!location.startsWith(sourceRootDir)) {
+					return sourceRootDir.startsWith(location); // Visit the parents of the source root only
+				}
+				if(!location.equals(sourceRootDir) && isIgnoredName(resource.getName())) {
+					return false;
+				}
+				if(delta.getKind() == IResourceDelta.ADDED || delta.getKind() == IResourceDelta.REMOVED) {
+					requiresFullBuild = true;
+					return false;
+				}
+				return true;
+			}
+			
+			if(delta.getKind() == IResourceDelta.CHANGED && 
+					(delta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) == 0) {
+				return false; // Markers or other metadata changed only
+			}
+			Location packageDir = location.getParent();
+			if(location.startsWith(sourceRootDir) && !isIgnoredName(resource.getName()) && 
+					!changedPackages.containsKey(packageDir)) {
+				changedPackages.put(packageDir, location);
+			}
+			return false;
+		}
+		
+		protected boolean isIgnoredName(String name) {
+			// Same as the go tool, for the "./..." pattern
+			return name.startsWith(".") || name.startsWith("_") || name.equals("testdata");
+		}
+		
+	}
+	
 	@Override
 	protected AbstractRunBuildOperation createBuildOp() {
 		return new GoRunBuildOperation();
@@ -73,23 +306,313 @@ public class GoBuilder extends LangProjectBuilderExt {
 		protected GoEnvironment goEnv;
 		protected Location sourceRootDir;
 		
+		/** The fingerprints of the packages being built, for the build cache. Null if the cache is not used. */
+		protected HashMap<GoPackageName, String> buildFingerprints;
+		protected final ArrayList2<ToolSourceMessage> buildMessages = new ArrayList2<>();
+		protected final Set<Location> successfulPackages = Collections.synchronizedSet(new HashSet<Location>());
 		
 		@Override
 		public IProject[] execute(IProject project, IProgressMonitor monitor) throws CoreException,
 				OperationCancellation {
 			
-			Location projectLocation = getProjectLocation();
-			
 			goEnv = getValidGoEnvironment(project);
-			if(GoProjectEnvironment.isProjectInsideGoPath(project, goEnv.getGoPath())) {
-				sourceRootDir = projectLocation;
-			} else {
-				sourceRootDir = projectLocation.resolve_valid("src");
-				
+			sourceRootDir = getSourceRootDir(project, goEnv);
+			if(!GoProjectEnvironment.isProjectInsideGoPath(project, goEnv.getGoPath())) {
 				checkGoFilesInSourceRoot();
 			}
 			
-			return super.execute(project, monitor);
+			if(incrementalBuildPackages != null && incrementalBuildPackages.isEmpty()) {
+				return null; // No package changed
+			}
+			
+			if(incrementalBuildPackages == null) {
+				try {
+					dependencyGraph = GoPackageDependencyGraph.create(goEnv.getGoPath(), sourceRootDir);
+				} catch (IOException e) {
+					dependencyGraph = null;
+				}
+			}
+			
+			if(dependencyGraph != null && isIncrementalBuildSupported(project)) {
+				applyBuildCache(project);
+				if(incrementalBuildPackages != null && incrementalBuildPackages.isEmpty()) {
+					return null; // All packages are up to date
+				}
+			}
+			
+			LangCore.getToolManager().notifyBuildStarting(project, false);
+			try {
+				if(isParallelBuild(project)) {
+					executeParallelBuild(project, monitor);
+				} else {
+					executeStreamingBuild(project, monitor);
+				}
+			} catch (CommonException ce) {
+				throw LangCore.createCoreException(ce);
+			}
+			
+			updateBuildCache();
+			return null;
+		}
+		
+		/**
+		 * Remove the packages whose build result is cached from the packages to build, 
+		 * and add the markers of their cached messages instead.
+		 * In an explicit full build, all packages are built, and their cache entries refreshed.
+		 */
+		protected void applyBuildCache(IProject project) throws CoreException {
+			FingerprintCalculator fingerprints = getBuildCache().createFingerprintCalculator(dependencyGraph, 
+				goEnv.getGoPath(), getBuildSettings(project));
+			buildFingerprints = new HashMap<>();
+			LinkedHashSet<Location> packagesToBuild = new LinkedHashSet<>();
+			ArrayList2<ToolSourceMessage> cachedMessages = new ArrayList2<>();
+			
+			for (Entry<GoPackageName, Location> entry : getBuildPackages().entrySet()) {
+				GoPackageName goPackage = entry.getKey();
+				String fingerprint;
+				try {
+					fingerprint = fingerprints.getFingerprint(goPackage);
+				} catch (IOException e) {
+					packagesToBuild.add(entry.getValue());
+					continue;
+				}
+				ArrayList2<ToolSourceMessage> messages = 
+						fullBuildRequested ? null : getBuildCache().getCachedMessages(goPackage, fingerprint);
+				if(messages == null) {
+					packagesToBuild.add(entry.getValue());
+					buildFingerprints.put(goPackage, fingerprint);
+				} else {
+					cachedMessages.addAll(messages);
+				}
+			}
+			
+			if(fullBuildRequested) {
+				return;
+			}
+			incrementalBuildPackages = packagesToBuild;
+			addErrorMarkers(cachedMessages, sourceRootDir);
+		}
+		
+		/** @return the settings that affect the build result of all packages. */
+		protected String getBuildSettings(IProject project) throws CoreException {
+			StringBuilder buildSettings = new StringBuilder(GoEnvironmentPrefs.COMPILER_PATH.get());
+			for (String buildOption : GoProjectPrefConstants.GO_BUILD_OPTIONS.getParsedArguments(project)) {
+				buildSettings.append('\n').append(buildOption);
+			}
+			buildSettings.append('\n').append(goEnv.getGoRoot().asString());
+			buildSettings.append('\n').append(goEnv.getGoPathString());
+			try {
+				buildSettings.append('\n').append(goEnv.getGoOs().asString());
+				buildSettings.append('\n').append(goEnv.getGoArch().asString());
+			} catch (CommonException e) {
+				// Use the default OS and architecture
+			}
+			buildSettings.append('\n').append(getToolchainFingerprint());
+			return buildSettings.toString();
+		}
+		
+		/** 
+		 * @return a fingerprint of the Go toolchain files: the go tool and the GOROOT VERSION file. 
+		 * These change along with the GOROOT packages, which are not fingerprinted individually.
+		 */
+		protected String getToolchainFingerprint() {
+			ArrayList<Path> toolchainFiles = new ArrayList<>();
+			Path compilerPath = PathUtil.createPathOrNull(GoEnvironmentPrefs.COMPILER_PATH.get());
+			if(compilerPath != null && Files.isRegularFile(compilerPath)) {
+				toolchainFiles.add(compilerPath);
+			}
+			try {
+				Path versionFile = goEnv.getGoRoot_Location().resolve_fromValid("VERSION").toPath();
+				if(Files.isRegularFile(versionFile)) {
+					toolchainFiles.add(versionFile);
+				}
+			} catch (CommonException e) {
+				// GOROOT not valid
+			}
+			try {
+				return FileFingerprints.getFilesFingerprint(toolchainFiles);
+			} catch (IOException e) {
+				return "";
+			}
+		}
+		
+		/** Store the results of the packages built successfully in the build cache. */
+		protected void updateBuildCache() {
+			if(buildFingerprints == null) {
+				return;
+			}
+			
+			HashMap<Location, ArrayList2<ToolSourceMessage>> packagesMessages = new HashMap<>();
+			for (ToolSourceMessage buildMessage : buildMessages) {
+				Location packageDir = sourceRootDir.resolve(buildMessage.getFilePath()).getParent();
+				ArrayList2<ToolSourceMessage> packageMessages = packagesMessages.get(packageDir);
+				if(packageMessages == null) {
+					packageMessages = new ArrayList2<>();
+					packagesMessages.put(packageDir, packageMessages);
+				}
+				packageMessages.add(buildMessage);
+			}
+			
+			for (Entry<GoPackageName, String> entry : buildFingerprints.entrySet()) {
+				Location packageDir = dependencyGraph.getPackageLocation(entry.getKey());
+				if(!successfulPackages.contains(packageDir)) {
+					getBuildCache().removeEntry(entry.getKey());
+					continue;
+				}
+				ArrayList2<ToolSourceMessage> packageMessages = packagesMessages.get(packageDir);
+				getBuildCache().putEntry(entry.getKey(), entry.getValue(), 
+					packageMessages == null ? new ArrayList2<ToolSourceMessage>() : packageMessages);
+			}
+			saveBuildCache();
+		}
+		
+		/** 
+		 * @return the packages to build (all packages of the dependency graph, in a full build), 
+		 * sorted by name. 
+		 */
+		protected LinkedHashMap<GoPackageName, Location> getBuildPackages() {
+			ArrayList<GoPackageName> packages = new ArrayList<>();
+			for (GoPackageName goPackage : dependencyGraph.getPackages()) {
+				if(incrementalBuildPackages == null || 
+						incrementalBuildPackages.contains(dependencyGraph.getPackageLocation(goPackage))) {
+					packages.add(goPackage);
+				}
+			}
+			Collections.sort(packages, new Comparator<GoPackageName>() {
+				@Override
+				public int compare(GoPackageName o1, GoPackageName o2) {
+					return o1.getFullNameAsString().compareTo(o2.getFullNameAsString());
+				}
+			});
+			
+			LinkedHashMap<GoPackageName, Location> buildPackages = new LinkedHashMap<>();
+			for (GoPackageName goPackage : packages) {
+				buildPackages.put(goPackage, dependencyGraph.getPackageLocation(goPackage));
+			}
+			return buildPackages;
+		}
+		
+		/**
+		 * Run the build, parsing the output as it is read, and adding the markers of the errors found so far
+		 * periodically while the build is running.
+		 */
+		protected void executeStreamingBuild(IProject project, IProgressMonitor monitor) 
+				throws CoreException, CommonException, OperationCancellation {
+			final IncrementalParser outputParser = createBuildOutputProcessor().createIncrementalParser();
+			
+			RunExternalProcessTask buildTask = new RunExternalProcessTask(createBuildPB(), project, 
+				new EclipseCancelMonitor(monitor), getToolManager()) {
+				@Override
+				protected void handleProcessStartResult(ExternalProcessNotifyingHelper processHelper, 
+						CommonException ce) {
+					if(processHelper != null) {
+						// Called before the reader threads are started
+						processHelper.setRetainStdErr(false);
+						processHelper.getOutputListenersHelper().addListener(outputParser);
+					}
+					super.handleProcessStartResult(processHelper, ce);
+				}
+			};
+			ExternalProcessNotifyingHelper processHelper = buildTask.startProcess();
+			
+			while(true) {
+				try {
+					processHelper.awaitTermination(MARKERS_UPDATE_PERIOD_MS);
+					break;
+				} catch (TimeoutException e) {
+					if(monitor.isCanceled()) {
+						processHelper.destroyProcessTree();
+						throw new OperationCancellation();
+					}
+				} catch (InterruptedException e) {
+					processHelper.destroyProcessTree();
+					throw new OperationCancellation();
+				}
+				addBuildErrorMarkers(outputParser.takeNewMessages());
+			}
+			ExternalProcessResult buildResult = processHelper.strictAwaitTermination_(); // Reports reader errors
+			if(buildResult.exitValue == 0 && incrementalBuildPackages != null) {
+				successfulPackages.addAll(incrementalBuildPackages);
+			} else if(buildResult.exitValue == 0 && buildFingerprints != null) {
+				successfulPackages.addAll(getBuildPackages().values()); // A full build
+			}
+			
+			outputParser.finish();
+			addBuildErrorMarkers(outputParser.takeNewMessages());
+		}
+		
+		protected boolean isParallelBuild(IProject project) throws CoreException {
+			return GoProjectPrefConstants.PARALLEL_PACKAGE_BUILD.get(project) && dependencyGraph != null && 
+					isIncrementalBuildSupported(project);
+		}
+		
+		/**
+		 * Build each package with a separate invocation of the build command, running them in parallel 
+		 * (in dependency order). The output of all invocations is then processed as one build output.
+		 */
+		protected void executeParallelBuild(IProject project, final IProgressMonitor monitor) 
+				throws CoreException, CommonException, OperationCancellation {
+			final LinkedHashMap<GoPackageName, Location> packages = getBuildPackages();
+			
+			// Create the process builders beforehand, as it requires access to preferences and such.
+			final HashMap<GoPackageName, ProcessBuilder> packagesPB = new HashMap<>();
+			for (Entry<GoPackageName, Location> entry : packages.entrySet()) {
+				packagesPB.put(entry.getKey(), createBuildPB(Collections.singleton(entry.getValue())));
+			}
+			
+			final Map<GoPackageName, ChunkedByteBuffer> packagesStderr = Collections.synchronizedMap(
+				new HashMap<GoPackageName, ChunkedByteBuffer>());
+			IPackageBuildJob buildJob = new IPackageBuildJob() {
+				@Override
+				public boolean buildPackage(GoPackageName goPackage) throws CommonException, OperationCancellation {
+					ExternalProcessResult buildResult = runBuildTool_2(monitor, packagesPB.get(goPackage));
+					packagesStderr.put(goPackage, buildResult.getStdErrBytes());
+					if(buildResult.exitValue != 0) {
+						return false;
+					}
+					successfulPackages.add(packages.get(goPackage));
+					return true;
+				}
+			};
+			
+			int poolSize = GoProjectPrefConstants.PARALLEL_BUILD_JOBS.get(project);
+			new GoPackageBuildScheduler(poolSize).run(packages.keySet(), dependencyGraph, buildJob, 
+				new EclipseCancelMonitor(monitor));
+			
+			// The packages not built, because a dependency failed to build, keep the markers of their last build
+			for (Entry<GoPackageName, Location> entry : packages.entrySet()) {
+				if(!packagesStderr.containsKey(entry.getKey())) {
+					keepPackageBuildMarkers(entry.getValue());
+				}
+			}
+			
+			GoBuildOutputProcessor buildOutput = createBuildOutputProcessor();
+			IncrementalParser outputParser = buildOutput.createIncrementalParser();
+			for (GoPackageName goPackage : packages.keySet()) {
+				ChunkedByteBuffer stderr = packagesStderr.get(goPackage);
+				if(stderr != null) {
+					outputParser.parseCompleteOutput(stderr);
+				}
+			}
+			outputParser.finish();
+			addBuildErrorMarkers(buildOutput.getBuildErrors());
+		}
+		
+		/** Keep the previous build markers of the files of given package directory, and of the directory itself. */
+		protected void keepPackageBuildMarkers(Location packageDir) {
+			HashSet<IResource> markedResources = new HashSet<>(previousBuildMarkers.keySet());
+			markedResources.addAll(previousBuildMarkersByAttributes.keySet());
+			
+			ArrayList<IResource> packageResources = new ArrayList<>();
+			for (IContainer container : 
+					ResourceUtils.getWorkspaceRoot().findContainersForLocationURI(packageDir.toUri())) {
+				for (IResource resource : markedResources) {
+					if(container.equals(resource) || container.equals(resource.getParent())) {
+						packageResources.add(resource);
+					}
+				}
+			}
+			keepPreviousBuildMarkers(packageResources);
 		}
 		
 		protected void checkGoFilesInSourceRoot() throws CoreException {
@@ -105,11 +628,30 @@ public class GoBuilder extends LangProjectBuilderExt {
 		
 		@Override
 		protected ProcessBuilder createBuildPB() throws CoreException, CommonException {
+			return createBuildPB(incrementalBuildPackages);
+		}
+		
+		/** 
+		 * Create the build process builder, for given package directories.
+		 * If packageDirs is null, build all packages, as specified in the build options. 
+		 */
+		protected ProcessBuilder createBuildPB(Collection<Location> packageDirs) throws CoreException {
 			IProject project = getProject();
 			
 			ArrayList2<String> goBuildCmdLine = getGoToolCommandLine();
 			goBuildCmdLine.addElements();
-			goBuildCmdLine.addElements(GoProjectPrefConstants.GO_BUILD_OPTIONS.getParsedArguments(project));
+			String[] buildOptions = GoProjectPrefConstants.GO_BUILD_OPTIONS.getParsedArguments(project);
+			if(packageDirs == null) {
+				goBuildCmdLine.addElements(buildOptions);
+			} else {
+				for (String buildOption : buildOptions) {
+					if(buildOption.equals(ALL_PACKAGES_PATTERN)) {
+						addPackageDirs(goBuildCmdLine, packageDirs);
+					} else {
+						goBuildCmdLine.add(buildOption);
+					}
+				}
+			}
 			
 			return goEnv.createProcessBuilder(goBuildCmdLine, sourceRootDir);
 		}
@@ -117,19 +659,58 @@ public class GoBuilder extends LangProjectBuilderExt {
 		@Override
 		protected void doBuild_processBuildResult(ExternalProcessResult buildAllResult) 
 				throws CoreException, CommonException {
-			GoBuildOutputProcessor buildOutput = new GoBuildOutputProcessor() {
+			GoBuildOutputProcessor buildOutput = createBuildOutputProcessor();
+			buildOutput.parseOutput(buildAllResult);
+			addBuildErrorMarkers(buildOutput.getBuildErrors());
+		}
+		
+		protected GoBuildOutputProcessor createBuildOutputProcessor() {
+			return new GoBuildOutputProcessor() {
 				@Override
 				protected void handleLineParseError(CommonException ce) {
 					LangCore.logError(ce.getMessage(), ce.getCause());
 				}
 			};
-			buildOutput.parseOutput(buildAllResult);
-			
-			addErrorMarkers(buildOutput.getBuildErrors(), sourceRootDir);
+		}
+		
+		protected void addBuildErrorMarkers(ArrayList2<ToolSourceMessage> buildErrors) throws CoreException {
+			if(buildErrors.isEmpty()) {
+				return;
+			}
+			if(incrementalBuildPackages != null) {
+				// Only the markers of the built packages are replaced, ignore errors from other packages
+				ArrayList2<ToolSourceMessage> builtPackagesErrors = new ArrayList2<>();
+				for (ToolSourceMessage buildError : buildErrors) {
+					Location fileLoc = sourceRootDir.resolve(buildError.getFilePath());
+					if(incrementalBuildPackages.contains(fileLoc.getParent())) {
+						builtPackagesErrors.add(buildError);
+					}
+				}
+				buildErrors = builtPackagesErrors;
+			}
+			if(buildFingerprints != null) {
+				buildMessages.addAll(buildErrors);
+			}
+			addErrorMarkers(buildErrors, sourceRootDir);
+		}
+		
+		protected void addPackageDirs(ArrayList2<String> goBuildCmdLine, Collection<Location> packageDirs) {
+			for (Location packageDir : packageDirs) {
+				String relativePath = sourceRootDir.relativize(packageDir).toString();
+				goBuildCmdLine.add(relativePath.isEmpty() ? "." : "./" + relativePath.replace(File.separatorChar, '/'));
+			}
 		}
 		
 	}
 	
+	protected static Location getSourceRootDir(IProject project, GoEnvironment goEnv) throws CoreException {
+		Location projectLocation = ResourceUtils.getProjectLocation(project);
+		if(GoProjectEnvironment.isProjectInsideGoPath(project, goEnv.getGoPath())) {
+			return projectLocation;
+		}
+		return projectLocation.resolve_valid("src");
+	}
+	
 	protected static GoEnvironment getValidGoEnvironment(IProject project) throws CoreException {
 		try {
 			return GoProjectEnvironment.getValidatedGoEnvironment(project);
@@ -157,6 +738,13 @@ public class GoBuilder extends LangProjectBuilderExt {
 	
 	/* -----------------  ----------------- */
 	
+	@Override
+	protected void clean(IProgressMonitor monitor) throws CoreException {
+		getBuildCache().clear();
+		saveBuildCache();
+		super.clean(monitor);
+	}
+	
 	@Override
 	protected ProcessBuilder createCleanPB() throws CoreException, CommonException {
 		IProject project = getProject();
@@ -8,6 +8,7 @@ import melnorme.utilbox.collections.ArrayList2;
 import melnorme.utilbox.core.CommonException;
 import melnorme.utilbox.ownership.IDisposable;
 import melnorme.utilbox.process.ExternalProcessNotifyingHelper;
+import melnorme.utilbox.process.ExternalProcessNotifyingHelper.IProcessOutputListener;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -17,13 +18,17 @@ import org.eclipse.core.runtime.Path;
 import com.googlecode.goclipse.core.GoCore;
 import com.googlecode.goclipse.core.operations.GoToolManager;
 import com.googlecode.goclipse.tooling.gocode.GocodeCompletionOperation;
+import com.googlecode.goclipse.tooling.gocode.GocodeDaemonClient;
+import com.googlecode.goclipse.tooling.gocode.GocodeLibPathTracker;
 
 /**
  * Start up an instance of Gocode in server mode.
  */
 public class GocodeServerManager implements IDisposable {
 	
-	protected ExternalProcessNotifyingHelper gocodeProcess;
+	protected volatile ExternalProcessNotifyingHelper gocodeProcess;
+	protected final GocodeLibPathTracker libPathTracker = new GocodeLibPathTracker();
+	protected final GocodeDaemonClient daemonClient = new GocodeDaemonClient();
 	
 	public GocodeServerManager() {
 	}
@@ -38,6 +43,25 @@ public class GocodeServerManager implements IDisposable {
 		return new Path(pref);
 	}
 	
+	/**
+	 * @return the tracker of the lib-path set in the gocode server started by this manager.
+	 */
+	public GocodeLibPathTracker getLibPathTracker() {
+		ExternalProcessNotifyingHelper process = gocodeProcess;
+		if(process == null || !process.getProcess().isAlive()) {
+			// gocode will auto-start a new server, which will not have the lib-path set
+			libPathTracker.setServerInstance(null);
+		}
+		return libPathTracker;
+	}
+	
+	/**
+	 * @return the client connected to the gocode server (whether started by this manager or not).
+	 */
+	public GocodeDaemonClient getDaemonClient() {
+		return daemonClient;
+	}
+	
 	protected boolean isChildServerRunning() {
 		return gocodeProcess != null;
 	}
@@ -55,6 +79,10 @@ public class GocodeServerManager implements IDisposable {
 			throw LangCore.createCoreException("No gocode path provided.", null);
 		}
 		
+		ExternalProcessNotifyingHelper process = gocodeProcess;
+		if(process != null && !process.getProcess().isAlive()) {
+			serverTerminated(process);
+		}
 		// TODO: check path hasn't changed
 		return gocodeProcess == null;
 	}
@@ -73,19 +101,48 @@ public class GocodeServerManager implements IDisposable {
 		ProcessBuilder pb = new ProcessBuilder(commandLine);
 		
 		try {
-			gocodeProcess = new StartEngineDaemonOperation(GoToolManager.getDefault(), pb, 
-				new EclipseCancelMonitor(monitor)).startProcess();
+			final ExternalProcessNotifyingHelper process = new StartEngineDaemonOperation(
+				GoToolManager.getDefault(), pb, new EclipseCancelMonitor(monitor)).startProcess();
+			gocodeProcess = process;
+			libPathTracker.setServerInstance(process);
+			daemonClient.reset();
+			
+			process.getOutputListenersHelper().addListener(new IProcessOutputListener() {
+				@Override
+				public void notifyStdOutListeners(byte[] buffer, int offset, int readCount) {
+				}
+				
+				@Override
+				public void notifyStdErrListeners(byte[] buffer, int offset, int readCount) {
+				}
+				
+				@Override
+				public void notifyProcessTerminatedAndRead(int exitCode) {
+					serverTerminated(process);
+				}
+			});
 		} catch (CommonException ce) {
 			throw LangCore.createCoreException(ce.getMessage(), ce.getCause());
 		}
 	}
 	
-	public void stopServer() {
+	/** Forget given server process, if it is still the current one, so that a new server is started when needed. */
+	protected synchronized void serverTerminated(ExternalProcessNotifyingHelper process) {
+		if(gocodeProcess == process) {
+			gocodeProcess = null;
+			libPathTracker.setServerInstance(null);
+			daemonClient.reset();
+		}
+	}
+	
+	public synchronized void stopServer() {
 		if (gocodeProcess != null) {
 			GoCore.createInfoStatus("stopping gocode server").logInPlugin();
 			
 			gocodeProcess.getProcess().destroy();
 			gocodeProcess = null;
+			libPathTracker.setServerInstance(null);
+			daemonClient.reset();
 		}
 	}
 	
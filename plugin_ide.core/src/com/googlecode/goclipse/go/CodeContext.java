@@ -5,9 +5,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import melnorme.utilbox.core.CommonException;
 
 import org.eclipse.core.resources.IFile;
@@ -17,6 +25,7 @@ import org.eclipse.core.resources.IResource;
 
 import com.googlecode.goclipse.Environment;
 import com.googlecode.goclipse.core.GoProjectEnvironment;
+import com.googlecode.goclipse.go.PackageModelStore.PackageModel;
 import com.googlecode.goclipse.go.lang.lexer.Lexer;
 import com.googlecode.goclipse.go.lang.lexer.TokenUnit;
 import com.googlecode.goclipse.go.lang.lexer.Tokenizer;
@@ -29,12 +38,9 @@ import com.googlecode.goclipse.go.lang.model.Scope;
 import com.googlecode.goclipse.go.lang.model.Type;
 import com.googlecode.goclipse.go.lang.model.Var;
 import com.googlecode.goclipse.go.lang.parser.FunctionParser;
-import com.googlecode.goclipse.go.lang.parser.ImportParser;
 import com.googlecode.goclipse.go.lang.parser.PackageParser;
-import com.googlecode.goclipse.go.lang.parser.ScopeParser;
 import com.googlecode.goclipse.go.lang.parser.TokenizedPage;
 import com.googlecode.goclipse.go.lang.parser.TypeParser;
-import com.googlecode.goclipse.go.lang.parser.VariableParser;
 import com.googlecode.goclipse.tooling.GoFileNaming;
 import com.googlecode.goclipse.tooling.env.GoEnvironment;
 
@@ -45,7 +51,20 @@ import com.googlecode.goclipse.tooling.env.GoEnvironment;
  */
 public class CodeContext {
 
-	static HashMap<String, CodeContext>	externalContexts	= new HashMap<String, CodeContext>();
+	/** Contexts of imported packages, shared by all code contexts. */
+	protected static final ExternalPackageCache externalContexts = new ExternalPackageCache();
+	
+	/** Parse results of individual files, shared by all code contexts. */
+	protected static final ParsedSourceFileCache parsedFileCache = new ParsedSourceFileCache();
+	
+	/** Parsed models of external package directories, kept across sessions. Null if not set. */
+	protected static volatile PackageModelStore packageModelStore;
+	
+	/** The time code contexts were last requested, by editor features. */
+	protected static volatile long lastRequestTimeMillis;
+	
+	/** Parses the files of a package in parallel. Its threads are daemons, and are ended when idle. */
+	protected static final ForkJoinPool parsePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
 
 	protected final IProject project;
 	
@@ -59,12 +78,32 @@ public class CodeContext {
 	public ArrayList<Type>	            types	         = new ArrayList<Type>();
 	public ArrayList<Var>	            vars	         = new ArrayList<Var>();
 	public ArrayList<Scope>	            moduleScope	     = new ArrayList<Scope>();
+	/** The files and directories this context was parsed from (only recorded for external packages). */
+	protected final ArrayList<File>     sourceFiles      = new ArrayList<File>();
+	/** The name lookup tables of the nodes above, built on first use. Reset by the methods that add nodes. */
+	protected volatile NameIndex        nameIndex;
 
 	public CodeContext(String name, IProject project) throws IOException {
 		this.name = name;
 		this.project = project;
 	}
 
+	public static ParsedSourceFileCache getParsedFileCache() {
+		return parsedFileCache;
+	}
+
+	public static void setPackageModelStore(PackageModelStore store) {
+		packageModelStore = store;
+	}
+
+	/**
+	 * @return the time, in {@link System#currentTimeMillis()} terms, a code context was last requested.
+	 * Background work can use it to avoid competing with editor features.
+	 */
+	public static long getLastRequestTimeMillis() {
+		return lastRequestTimeMillis;
+	}
+
 	public static CodeContext getCodeContext(String filename, String fileText) throws IOException, CommonException {
 		return getCodeContext(null, filename, fileText, true);
 	}
@@ -93,6 +132,7 @@ public class CodeContext {
 	public static CodeContext getCodeContext(final IProject project, String filename, String fileText,
 	        boolean useExternalContext) throws IOException, CommonException {
 
+		lastRequestTimeMillis = System.currentTimeMillis();
 		boolean isCmdSrcFolder = false;
 
 		if (project != null) {
@@ -114,7 +154,8 @@ public class CodeContext {
 
 		File packageFolder = targetContext.getParentFile();
 
-		parseText(targetContext, fileText, false, useExternalContext, codeContext);
+		codeContext.mergeParsedFile(parsedFileCache.getParsedFile(targetContext, fileText), false, 
+			useExternalContext);
 
 		//
 		// Only look at the other files in the directory if the file
@@ -124,14 +165,22 @@ public class CodeContext {
 		// source file.
 		//
 		if (!isCmdSrcFolder && useExternalContext) {
-			for (File file : packageFolder.listFiles()) {
+			ArrayList<Callable<ParsedSourceFile>> parseTasks = new ArrayList<Callable<ParsedSourceFile>>();
+			for (final File file : listFilesSorted(packageFolder)) {
 				if (file.isFile() && file.canRead() && file.getName().endsWith(GoFileNaming.GO_SOURCE_FILE_EXTENSION)
 				        && !file.getName().endsWith(GoFileNaming.GO_TEST_FILE_EXTENSION)) {
 
-					String text = readFile(file);
-					parseText(file, text, true, false, codeContext);
+					parseTasks.add(new Callable<ParsedSourceFile>() {
+						@Override
+						public ParsedSourceFile call() throws IOException {
+							return parsedFileCache.getParsedFile(file);
+						}
+					});
 				}
 			}
+			for (ParsedSourceFile parsedFile : invokeInParallel(parseTasks)) {
+				codeContext.mergeParsedFile(parsedFile, true, false);
+			}
 		}
 
 		return codeContext;
@@ -147,7 +196,7 @@ public class CodeContext {
 		CodeContext context = new CodeContext(pkg.getName(), project);
 		for(File child:pkg.listFiles()) {
 			if (child.getName().endsWith("_test.go")) {
-				parseText(child, readFile(child), false, false, context);
+				context.mergeParsedFile(parsedFileCache.getParsedFile(child), false, false);
 			}
 		}
 		
@@ -167,6 +216,7 @@ public class CodeContext {
 		this.types.addAll(b.types);
 		this.vars.addAll(b.vars);
 		this.moduleScope.addAll(b.moduleScope);
+		this.nameIndex = null;
 	}
 
 	/**
@@ -197,73 +247,71 @@ public class CodeContext {
 	}
 
 	/**
-	 * @param fileText
+	 * Merge the given file parse result into this context.
+	 * 
+	 * @param parsedFile
+	 * @param packagePeer
 	 * @param useExternalContext
-	 * @param codeContext
 	 * @throws IOException
 	 * @throws CommonException 
 	 */
-	private static void parseText(File file, String fileText, boolean packagePeer, boolean useExternalContext,
-	        CodeContext codeContext) throws IOException, CommonException {
-		
-		final IProject project = codeContext.project; 
-
-		Lexer         lexer         = new Lexer();
-		Tokenizer     tokenizer     = new Tokenizer(lexer);
-		PackageParser packageParser = new PackageParser(tokenizer, file);
-		ImportParser  importParser  = new ImportParser(tokenizer, file);
-		ScopeParser   scopeParser   = new ScopeParser(tokenizer, file);
-
-		FunctionParser functionParser = new FunctionParser(false, tokenizer, file);
-		functionParser.setScopeParser(scopeParser);
-
-		TypeParser typeParser = new TypeParser(false, tokenizer, file);
-		typeParser.setScopeParser(scopeParser);
-
-		VariableParser variableParser = new VariableParser(tokenizer, file, functionParser);
-		variableParser.setScopeParser(scopeParser);
-
-		// InterfaceParser interfaceParser = new InterfaceParser(tokenizer);
-
-		lexer.scan(fileText);
+	protected void mergeParsedFile(ParsedSourceFile parsedFile, boolean packagePeer, boolean useExternalContext)
+			throws IOException, CommonException {
 
 		if (!packagePeer) {
-			codeContext.page = new TokenizedPage(tokenizer.getTokenizedStream());
-			codeContext.pkg = packageParser.getPckg();
-			codeContext.imports.addAll(importParser.getImports());
+			this.page = parsedFile.page;
+			this.pkg = parsedFile.pkg;
+			this.imports.addAll(parsedFile.imports);
 		}
 
-		codeContext.methods.addAll(functionParser.getMethods());
-		codeContext.functions.addAll(functionParser.getFunctions());
-		codeContext.types.addAll(typeParser.getTypes());
-		codeContext.vars.addAll(variableParser.getVars());
+		this.methods.addAll(parsedFile.methods);
+		this.functions.addAll(parsedFile.functions);
+		this.types.addAll(parsedFile.types);
+		this.vars.addAll(parsedFile.vars);
 
 		if (useExternalContext) {
 			
-			for (Import imp : codeContext.imports) {
+			for (Import imp : imports) {
 			
-				CodeContext context = externalContexts.get(imp.path);
+				CodeContext context = getCachedExternalCodeContext(project, imp.path);
 				
-				if (context == null) {
-					context = getExternalCodeContext(project, imp.path);
-					externalContexts.put(imp.path, context);
-				}
+				this.methods.addAll(context.methods);
+				this.functions.addAll(context.functions);
+			}
+		}
+		this.nameIndex = null;
+	}
 
+	/**
+	 * Get the context of given imported package from the shared cache, loading it if necessary.
+	 * 
+	 * @param project
+	 * @param packagePath
+	 * @return
+	 * @throws IOException
+	 * @throws CommonException
+	 */
+	public static CodeContext getCachedExternalCodeContext(final IProject project, final String packagePath)
+			throws IOException, CommonException {
+		return externalContexts.getOrLoad(packagePath, new Callable<CodeContext>() {
+			@Override
+			public CodeContext call() throws Exception {
+				CodeContext context = getExternalCodeContext(project, packagePath);
+				
+				// Set the package once at load time, the context is shared read-only after that.
 				for (Method method : context.methods) {
 					method.setPackage(context.pkg);
 				}
-				
-				codeContext.methods.addAll(context.methods);
-
 				for (Function function : context.functions) {
 					function.setPackage(context.pkg);
 				}
-				
-				codeContext.functions.addAll(context.functions);
+				// Build the lookup tables once, instead of in each thread that uses the shared context
+				context.getNameIndex();
+				return context;
 			}
-		}
+		});
 	}
-
+	
 	/**
 	 * 
 	 * @param filename
@@ -317,61 +365,226 @@ public class CodeContext {
 	}
 
 	/**
+	 * Add the exported nodes of given package directory to given context. The nodes are taken from the
+	 * package model store if they were stored for the current source files, otherwise the files are parsed.
+	 * 
 	 * @param codeContext
-	 * @param lexer
-	 * @param packageParser
-	 * @param functionParser
 	 * @param pkgdir
 	 * @throws IOException
 	 */
 	private static void processExternalPackage(CodeContext codeContext, File pkgdir) throws IOException {
 
-		File[] files = pkgdir.listFiles();
+		PackageModelStore store = packageModelStore;
+		PackageModel model = null;
+		String fingerprint = null;
+		if (store != null) {
+			fingerprint = PackageModelStore.getFingerprint(pkgdir);
+			model = store.load(pkgdir, fingerprint);
+		}
+		if (model == null) {
+			model = parseExternalPackage(pkgdir, true);
+			if (store != null) {
+				store.save(pkgdir, fingerprint, model);
+			}
+		}
 
-		for (File file : files) {
-			Lexer          lexer          = new Lexer();
-			Tokenizer      tokenizer      = new Tokenizer(lexer);
-			PackageParser  packageParser  = new PackageParser(tokenizer, file);
-			FunctionParser functionParser = new FunctionParser(true, tokenizer, file);
-			TypeParser     typeParser     = new TypeParser(true, tokenizer, file);
+		if (model.pkg != null) {
+			codeContext.pkg = model.pkg;
+		}
+		codeContext.methods.addAll(model.methods);
+		codeContext.functions.addAll(model.functions);
+		codeContext.types.addAll(model.types);
+		codeContext.sourceFiles.addAll(model.sourceFiles);
+		codeContext.nameIndex = null;
+	}
 
-			if (file.canRead() && file.getName().endsWith(".go") && !file.getName().endsWith("_test.go")) {
+	/**
+	 * Parse given external package directory into the package model store,
+	 * unless it is already stored for the current source files.
+	 * 
+	 * @param pkgdir
+	 * @return whether the package was parsed.
+	 * @throws IOException
+	 */
+	public static boolean storeExternalPackageModel(File pkgdir) throws IOException {
+		PackageModelStore store = packageModelStore;
+		if (store == null) {
+			return false;
+		}
+		String fingerprint = PackageModelStore.getFingerprint(pkgdir);
+		if (store.contains(pkgdir, fingerprint)) {
+			return false;
+		}
+		// Callers parse several packages at a time already, on their own threads
+		store.save(pkgdir, fingerprint, parseExternalPackage(pkgdir, false));
+		return true;
+	}
 
-				lexer.reset();
-				lexer.scan(file);
+	/**
+	 * @param pkgdir
+	 * @param parallel whether to parse the files on the parse pool, rather than on the calling thread.
+	 * @return the exported nodes of the source files of given package directory, in file name order.
+	 * @throws IOException
+	 */
+	private static PackageModel parseExternalPackage(File pkgdir, boolean parallel) throws IOException {
 
-				codeContext.pkg = packageParser.getPckg();
-				codeContext.methods.addAll(functionParser.getMethods());
-				for (Method method : functionParser.getMethods()) {
-					if (method.getFile() == null) {
-						method.setFile(file);
+		ArrayList<Callable<PackageModel>> parseTasks = new ArrayList<Callable<PackageModel>>();
+		for (final File file : listFilesSorted(pkgdir)) {
+			if (file.canRead() && file.getName().endsWith(".go") && !file.getName().endsWith("_test.go")) {
+				parseTasks.add(new Callable<PackageModel>() {
+					@Override
+					public PackageModel call() throws IOException {
+						return parseExternalFile(file);
 					}
-				}
+				});
+			}
+		}
+		List<PackageModel> fileModels;
+		if (parallel) {
+			fileModels = invokeInParallel(parseTasks);
+		} else {
+			fileModels = new ArrayList<PackageModel>();
+			for (Callable<PackageModel> parseTask : parseTasks) {
+				fileModels.add(callParseTask(parseTask));
+			}
+		}
 
-				codeContext.functions.addAll(functionParser.getFunctions());
-				for (Function function : functionParser.getFunctions()) {
-					if (function.getFile() == null) {
-						function.setFile(file);
-					}
-				}
+		Package pkg = null;
+		ArrayList<Method> methods = new ArrayList<Method>();
+		ArrayList<Function> functions = new ArrayList<Function>();
+		ArrayList<Type> types = new ArrayList<Type>();
+		ArrayList<File> sourceFiles = new ArrayList<File>();
+		sourceFiles.add(pkgdir);
+
+		for (PackageModel fileModel : fileModels) {
+			pkg = fileModel.pkg;
+			methods.addAll(fileModel.methods);
+			functions.addAll(fileModel.functions);
+			types.addAll(fileModel.types);
+			sourceFiles.addAll(fileModel.sourceFiles);
+		}
+		return new PackageModel(pkg, methods, functions, types, sourceFiles);
+	}
 
-				codeContext.types.addAll(typeParser.getTypes());
-				for (Type type : typeParser.getTypes()) {
-					if (type.getFile() == null) {
-						type.setFile(file);
-					}
-				}
+	/**
+	 * @param file
+	 * @return the exported nodes of given source file of an external package.
+	 * @throws IOException
+	 */
+	private static PackageModel parseExternalFile(File file) throws IOException {
+		Lexer          lexer          = new Lexer();
+		Tokenizer      tokenizer      = new Tokenizer(lexer);
+		PackageParser  packageParser  = new PackageParser(tokenizer, file);
+		FunctionParser functionParser = new FunctionParser(true, tokenizer, file);
+		TypeParser     typeParser     = new TypeParser(true, tokenizer, file);
+
+		lexer.reset();
+		lexer.scan(file);
+
+		for (Method method : functionParser.getMethods()) {
+			if (method.getFile() == null) {
+				method.setFile(file);
+			}
+		}
 
-				// codeContext.vars = variableParser.getVars();
-				// for(Var var:variableParser.getVars()){
-				// if(var.getFile()==null){
-				// var.setFile(file);
-				// }
-				// }
+		for (Function function : functionParser.getFunctions()) {
+			if (function.getFile() == null) {
+				function.setFile(file);
+			}
+		}
 
-				// codeContext.interfaces = interfaceParser.getFunctions();
+		for (Type type : typeParser.getTypes()) {
+			if (type.getFile() == null) {
+				type.setFile(file);
 			}
 		}
+
+		// codeContext.vars = variableParser.getVars();
+		// for(Var var:variableParser.getVars()){
+		// if(var.getFile()==null){
+		// var.setFile(file);
+		// }
+		// }
+
+		// codeContext.interfaces = interfaceParser.getFunctions();
+
+		ArrayList<File> sourceFiles = new ArrayList<File>();
+		sourceFiles.add(file);
+		return new PackageModel(packageParser.getPckg(), new ArrayList<Method>(functionParser.getMethods()),
+			new ArrayList<Function>(functionParser.getFunctions()), new ArrayList<Type>(typeParser.getTypes()),
+			sourceFiles);
+	}
+
+	/**
+	 * @param dir
+	 * @return the files of given directory, sorted by name.
+	 * @throws IOException if the directory can't be listed.
+	 */
+	private static File[] listFilesSorted(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Can't list directory: " + dir);
+		}
+		Arrays.sort(files);
+		return files;
+	}
+
+	/**
+	 * Run given parse tasks on the parse pool.
+	 * 
+	 * @param parseTasks
+	 * @return the results of the tasks, in the same order as the tasks.
+	 * @throws IOException the first failure of a task, in task order.
+	 */
+	private static <T> List<T> invokeInParallel(List<Callable<T>> parseTasks) throws IOException {
+		ArrayList<T> results = new ArrayList<T>(parseTasks.size());
+		if (parseTasks.size() <= 1) {
+			// Not worth handing over to the pool
+			for (Callable<T> parseTask : parseTasks) {
+				results.add(callParseTask(parseTask));
+			}
+			return results;
+		}
+
+		for (Future<T> future : parsePool.invokeAll(parseTasks)) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while parsing package files");
+			} catch (ExecutionException e) {
+				throw toParseException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	private static <T> T callParseTask(Callable<T> parseTask) throws IOException {
+		try {
+			return parseTask.call();
+		} catch (Exception e) {
+			throw toParseException(e);
+		}
+	}
+
+	private static IOException toParseException(Throwable cause) {
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+
+	/**
+	 * @return the files and package directories this context was parsed from.
+	 */
+	public List<File> getSourceFiles() {
+		return sourceFiles;
 	}
 
 	/**
@@ -391,13 +604,7 @@ public class CodeContext {
 			return null;
 		}
 		
-		for (Import i : imports) {
-			if (i.prefix != null && i.prefix.equals(name)) {
-				return i;
-			}
-		}
-		
-		return null;
+		return getNameIndex().importsByPrefix.get(name);
 	}
 	
 	/**
@@ -410,13 +617,7 @@ public class CodeContext {
 			return null;
 		}
 		
-		for (Function f : functions) {
-			if (f.getInsertionText().equals(name)) {
-				return f;
-			}
-		}
-		
-		return null;
+		return getNameIndex().functionsByInsertionText.get(name);
 	}
 	
 	/**
@@ -429,14 +630,7 @@ public class CodeContext {
 			return null;
 		}
 		
-		for (Method m : methods) {
-			if (m.getInsertionText().equals(name)) {
-				System.out.println(m.getName());
-				return m;
-			}
-		}
-		
-		return null;
+		return getNameIndex().methodsByInsertionText.get(name);
 	}
 
 	/**
@@ -449,15 +643,8 @@ public class CodeContext {
 			return null;
 		}
 		
-		for (Var v : vars) {
-			if (v.getInsertionText().equals(name) &&
-				v.getScope().getStart() <= line   &&
-				v.getScope().getEnd() >= line  ) {
-				return v;
-			}
-		}
-		
-		return null;
+		LineIntervalIndex<Var> varScopes = getNameIndex().varScopesByInsertionText.get(name);
+		return varScopes == null ? null : varScopes.find(line);
 	}
 
 	/**
@@ -488,24 +675,21 @@ public class CodeContext {
 	public String getDescriptionForName(final String name) {
 
 		String n = name + "()";
+		NameIndex index = getNameIndex();
 
-		// slowest possible searches...
-		for (Method method : methods) {
-			if (n.equals(method.getInsertionText())) {
-				return method.getDocumentation();
-			}
+		Method method = index.methodsByInsertionText.get(n);
+		if (method != null) {
+			return method.getDocumentation();
 		}
 
-		for (Function function : functions) {
-			if (n.equals(function.getInsertionText())) {
-				return function.getDocumentation();
-			}
+		Function function = index.functionsByInsertionText.get(n);
+		if (function != null) {
+			return function.getDocumentation();
 		}
 
-		for (Type type : types) {
-			if (name.equals(type.getInsertionText())) {
-				return type.getDocumentation();
-			}
+		Type type = index.typesByInsertionText.get(name);
+		if (type != null) {
+			return type.getDocumentation();
 		}
 
 		return "";
@@ -519,26 +703,26 @@ public class CodeContext {
 	public Node getLocationForPkgAndName(final String pkg, final String name) {
 
 		String n = name + "()";
-		CodeContext cc = externalContexts.get(pkg);
+		CodeContext cc = externalContexts.getIfPresent(pkg);
+		if (cc == null) {
+			return null;
+		}
 
-		// slowest possible searches...
-		for (Method method : cc.methods) {
-			if (n.equals(method.getInsertionText())) {
-				return method;
-			}
+		NameIndex index = cc.getNameIndex();
+
+		Method method = index.methodsByInsertionText.get(n);
+		if (method != null) {
+			return method;
 		}
 
-		for (Function function : cc.functions) {
-			if (n.equals(function.getInsertionText())) {
-				return function;
-			}
+		Function function = index.functionsByInsertionText.get(n);
+		if (function != null) {
+			return function;
 		}
 
-		for (Type type : cc.types) {
-			if (name.equals(type.getName())) {
-				// System.out.println(">>");
-				return type;
-			}
+		Type type = index.typesByName.get(name);
+		if (type != null) {
+			return type;
 		}
 
 		// for (Var var : vars) {
@@ -591,12 +775,73 @@ public class CodeContext {
 	 * @return
 	 */
 	public boolean isMethodName(String identifier) {
-		for (Method method : methods) {
-			if (method.getInsertionText().startsWith(identifier + "(")) {
-				return true;
+		// Method insertion texts are the method name followed by "()"
+		return getNameIndex().methodsByInsertionText.containsKey(identifier + "()");
+	}
+
+	protected NameIndex getNameIndex() {
+		NameIndex index = nameIndex;
+		if (index == null) {
+			index = new NameIndex(this);
+			nameIndex = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Hash tables from names to the nodes of a context, and for variables, an index of their scope lines.
+	 * Where several nodes have the same name, the first one in the context lists is found,
+	 * like the linear searches these replace did.
+	 */
+	protected static class NameIndex {
+
+		protected final HashMap<String, Import> importsByPrefix = new HashMap<String, Import>();
+		protected final HashMap<String, Method> methodsByInsertionText = new HashMap<String, Method>();
+		protected final HashMap<String, Function> functionsByInsertionText = new HashMap<String, Function>();
+		protected final HashMap<String, Type> typesByInsertionText = new HashMap<String, Type>();
+		protected final HashMap<String, Type> typesByName = new HashMap<String, Type>();
+		protected final HashMap<String, LineIntervalIndex<Var>> varScopesByInsertionText =
+				new HashMap<String, LineIntervalIndex<Var>>();
+
+		public NameIndex(CodeContext context) {
+			for (Import imp : context.imports) {
+				putFirst(importsByPrefix, imp.prefix, imp);
+			}
+			for (Method method : context.methods) {
+				putFirst(methodsByInsertionText, method.getInsertionText(), method);
+			}
+			for (Function function : context.functions) {
+				putFirst(functionsByInsertionText, function.getInsertionText(), function);
+			}
+			for (Type type : context.types) {
+				putFirst(typesByInsertionText, type.getInsertionText(), type);
+				putFirst(typesByName, type.getName(), type);
+			}
+
+			HashMap<String, LineIntervalIndex.Builder<Var>> varScopes =
+					new HashMap<String, LineIntervalIndex.Builder<Var>>();
+			for (Var var : context.vars) {
+				if (var.getInsertionText() == null || var.getScope() == null) {
+					continue;
+				}
+				LineIntervalIndex.Builder<Var> builder = varScopes.get(var.getInsertionText());
+				if (builder == null) {
+					builder = new LineIntervalIndex.Builder<Var>();
+					varScopes.put(var.getInsertionText(), builder);
+				}
+				builder.add(var.getScope().getStart(), var.getScope().getEnd(), var);
+			}
+			for (Entry<String, LineIntervalIndex.Builder<Var>> entry : varScopes.entrySet()) {
+				varScopesByInsertionText.put(entry.getKey(), entry.getValue().build());
 			}
 		}
-		return false;
+
+		protected static <T> void putFirst(HashMap<String, T> map, String key, T node) {
+			if (key != null && !map.containsKey(key)) {
+				map.put(key, node);
+			}
+		}
+
 	}
 
 }
@@ -0,0 +1,288 @@
+package com.googlecode.goclipse.go;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import melnorme.lang.tooling.ops.util.FileModificationDetectionHelper;
+import melnorme.utilbox.core.CommonException;
+import melnorme.utilbox.misc.Location;
+
+/**
+ * A thread-safe cache of the {@link CodeContext}s of imported (external) packages.
+ *
+ * - Each package is loaded only once, even if requested concurrently: other threads await the loading future.
+ * - Entries are evicted, least recently used first, when the total weight
+ * (number of top-level nodes) goes over the configured limit.
+ * - Entries are invalidated when any of the package source files, or the package directories,
+ * change on disk.
+ */
+public class ExternalPackageCache {
+	
+	public static final int DEFAULT_MAX_WEIGHT = 200_000;
+	/** Minimum interval between file system checks of a given entry. */
+	public static final long STALE_CHECK_INTERVAL_MILLIS = 2000;
+	
+	protected final ConcurrentHashMap<String, PackageEntry> entries = new ConcurrentHashMap<>();
+	protected final long maxWeight;
+	
+	/** The loaded entries, access-ordered so iteration starts at the least recently used one. Guarded by this. */
+	protected final LinkedHashMap<String, PackageEntry> loadedEntries = new LinkedHashMap<>(64, 0.75f, true);
+	/** The total weight of loadedEntries. Guarded by this. */
+	protected long totalWeight = 0;
+	
+	protected final AtomicLong hitCount = new AtomicLong();
+	protected final AtomicLong missCount = new AtomicLong();
+	protected final AtomicLong evictionCount = new AtomicLong();
+	protected final AtomicLong invalidationCount = new AtomicLong();
+	
+	public ExternalPackageCache() {
+		this(DEFAULT_MAX_WEIGHT);
+	}
+	
+	public ExternalPackageCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+	
+	public int getEntryCount() {
+		return entries.size();
+	}
+	
+	/**
+	 * @return the context for given package path, if it is loaded and up to date. Null otherwise.
+	 */
+	public CodeContext getIfPresent(String packagePath) {
+		PackageEntry entry = entries.get(packagePath);
+		if(entry == null || !entry.future.isDone() || checkStale(packagePath, entry)) {
+			return null;
+		}
+		try {
+			return entry.awaitContext();
+		} catch(IOException | CommonException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return the context for given package path, loading it with given loader if necessary.
+	 * If another thread is already loading the same package, wait for that result instead.
+	 */
+	public CodeContext getOrLoad(String packagePath, Callable<CodeContext> loader)
+			throws IOException, CommonException {
+		PackageEntry entry = entries.get(packagePath);
+		
+		if(entry != null && entry.future.isDone() && checkStale(packagePath, entry)) {
+			entry = null;
+		}
+		
+		if(entry == null) {
+			PackageEntry newEntry = new PackageEntry(loader);
+			entry = entries.putIfAbsent(packagePath, newEntry);
+			if(entry == null) {
+				missCount.incrementAndGet();
+				entry = newEntry;
+				
+				entry.future.run();
+				try {
+					entry.awaitContext();
+				} catch(IOException | CommonException | RuntimeException e) {
+					// Don't cache failures, allow next request to try again.
+					entries.remove(packagePath, entry);
+					throw e;
+				}
+				// Only now is the entry most recently used: a slow load must not make it the eviction candidate
+				addLoaded(packagePath, entry);
+				return entry.awaitContext();
+			}
+		}
+		
+		hitCount.incrementAndGet();
+		touch(packagePath);
+		return entry.awaitContext();
+	}
+	
+	protected synchronized void touch(String packagePath) {
+		loadedEntries.get(packagePath);
+	}
+	
+	protected boolean checkStale(String packagePath, PackageEntry entry) {
+		if(entry.isStale()) {
+			if(entries.remove(packagePath, entry)) {
+				invalidationCount.incrementAndGet();
+			}
+			removeLoaded(packagePath, entry);
+			return true;
+		}
+		return false;
+	}
+	
+	public void invalidate(String packagePath) {
+		PackageEntry entry = entries.remove(packagePath);
+		if(entry != null) {
+			invalidationCount.incrementAndGet();
+			removeLoaded(packagePath, entry);
+		}
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+		loadedEntries.clear();
+		totalWeight = 0;
+	}
+	
+	/**
+	 * Record given entry as loaded and most recently used, then evict the least recently used entries
+	 * (never the given one) while the total weight is over the limit.
+	 */
+	protected synchronized void addLoaded(String packagePath, PackageEntry entry) {
+		if(entries.get(packagePath) != entry) {
+			return; // Invalidated meanwhile
+		}
+		PackageEntry previous = loadedEntries.put(packagePath, entry);
+		if(previous != null) {
+			totalWeight -= previous.weight;
+		}
+		totalWeight += entry.weight;
+		
+		Iterator<Entry<String, PackageEntry>> iter = loadedEntries.entrySet().iterator();
+		while(totalWeight > maxWeight && iter.hasNext()) {
+			Entry<String, PackageEntry> eldest = iter.next();
+			if(eldest.getValue() == entry) {
+				break; // Only the new entry is left
+			}
+			iter.remove();
+			totalWeight -= eldest.getValue().weight;
+			if(entries.remove(eldest.getKey(), eldest.getValue())) {
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+	
+	protected synchronized void removeLoaded(String packagePath, PackageEntry entry) {
+		if(loadedEntries.remove(packagePath, entry)) {
+			totalWeight -= entry.weight;
+		}
+	}
+	
+	/* -----------------  ----------------- */
+	
+	protected static class PackageEntry {
+		
+		protected final FutureTask<CodeContext> future;
+		protected final ArrayList<FileModificationDetectionHelper> watchedFiles = new ArrayList<>();
+		
+		protected volatile long weight;
+		protected volatile long lastStaleCheck;
+		
+		public PackageEntry(final Callable<CodeContext> loader) {
+			this.future = new FutureTask<>(new Callable<CodeContext>() {
+				@Override
+				public CodeContext call() throws Exception {
+					long loadStartMillis = System.currentTimeMillis();
+					CodeContext context = loader.call();
+					markLoaded(context, loadStartMillis);
+					return context;
+				}
+			});
+		}
+		
+		protected void markLoaded(CodeContext context, long loadStartMillis) {
+			for(File file : context.getSourceFiles()) {
+				watchFile(file, loadStartMillis);
+			}
+			weight = context.methods.size() + context.functions.size() + context.types.size() + 1;
+			lastStaleCheck = System.currentTimeMillis();
+		}
+		
+		/**
+		 * Watch given file, read since loadStartMillis. The file attributes are only read after the load,
+		 * so a file modified since the load started may have been read before the modification: it is marked stale.
+		 */
+		protected void watchFile(File file, long loadStartMillis) {
+			FileModificationDetectionHelper helper =
+					new FileModificationDetectionHelper(Location.create_fromValid(file.toPath().toAbsolutePath()));
+			try {
+				helper.markRead();
+				if(file.lastModified() >= loadStartMillis) {
+					helper.markStale();
+				}
+			} catch(IOException e) {
+				helper.markStale();
+			}
+			watchedFiles.add(helper);
+		}
+		
+		public boolean isStale() {
+			long now = System.currentTimeMillis();
+			if(now - lastStaleCheck < STALE_CHECK_INTERVAL_MILLIS) {
+				return false;
+			}
+			lastStaleCheck = now;
+			
+			for(FileModificationDetectionHelper helper : watchedFiles) {
+				if(helper.isModifiedSinceLastRead()) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		public CodeContext awaitContext() throws IOException, CommonException {
+			boolean interrupted = false;
+			try {
+				while(true) {
+					try {
+						return future.get();
+					} catch(InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			} catch(ExecutionException ee) {
+				Throwable cause = ee.getCause();
+				if(cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if(cause instanceof CommonException) {
+					throw (CommonException) cause;
+				}
+				if(cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if(cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new CommonException("Error loading package.", cause);
+			} finally {
+				if(interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,118 @@
+package com.googlecode.goclipse.go;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * A low priority job that parses the packages of GOROOT and of the GOPATH of the open Go projects
+ * into the {@link PackageModelStore} ahead of time, so that editor features find them already parsed.
+ * Packages already stored for their current source files are skipped, and so are the packages in the project
+ * locations: the symbol indexer parses those (see {@link GoPackageLocations}).
+ *
+ * Packages are parsed in parallel, by low priority threads. Each thread waits before starting a package
+ * while code contexts are being requested by editor features, so as not to slow them down.
+ */
+public class ExternalPackagesPreindexer extends Job {
+	
+	/** How long after the last code context request the editor is considered busy. */
+	protected static final long EDITOR_BUSY_MILLIS = 1000;
+	protected static final long THROTTLE_SLEEP_MILLIS = 200;
+	
+	public ExternalPackagesPreindexer() {
+		super("Indexing Go packages");
+		setPriority(Job.DECORATE);
+	}
+	
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		ArrayList<Path> packageDirs = GoPackageLocations.findExternalPackageDirs();
+		monitor.beginTask(getName(), packageDirs.size());
+		
+		int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new LowPriorityThreadFactory());
+		try {
+			CompletionService<File> completionService = new ExecutorCompletionService<File>(executor);
+			for (Path packageDir : packageDirs) {
+				completionService.submit(new StorePackageTask(packageDir.toFile(), monitor));
+			}
+			
+			for (int i = 0; i < packageDirs.size(); i++) {
+				Future<File> done = completionService.take();
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				try {
+					monitor.subTask(done.get().getPath());
+				} catch (ExecutionException e) {
+					// The package is parsed again when needed, where errors are reported
+				}
+				monitor.worked(1);
+			}
+		} catch (InterruptedException e) {
+			return Status.CANCEL_STATUS;
+		} finally {
+			executor.shutdownNow();
+			monitor.done();
+		}
+		return Status.OK_STATUS;
+	}
+	
+	protected class StorePackageTask implements Callable<File> {
+		
+		protected final File packageDir;
+		protected final IProgressMonitor monitor;
+		
+		public StorePackageTask(File packageDir, IProgressMonitor monitor) {
+			this.packageDir = packageDir;
+			this.monitor = monitor;
+		}
+		
+		@Override
+		public File call() throws IOException, InterruptedException {
+			if (monitor.isCanceled()) {
+				return packageDir;
+			}
+			awaitEditorIdle();
+			CodeContext.storeExternalPackageModel(packageDir);
+			return packageDir;
+		}
+		
+	}
+	
+	protected void awaitEditorIdle() throws InterruptedException {
+		while (System.currentTimeMillis() - CodeContext.getLastRequestTimeMillis() < EDITOR_BUSY_MILLIS) {
+			Thread.sleep(THROTTLE_SLEEP_MILLIS);
+		}
+	}
+	
+	protected static class LowPriorityThreadFactory implements ThreadFactory {
+		
+		protected final AtomicInteger threadCount = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Go package indexer " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+		
+	}
+	
+}
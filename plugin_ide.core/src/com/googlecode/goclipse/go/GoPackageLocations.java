@@ -0,0 +1,135 @@
+package com.googlecode.goclipse.go;
+
+import static melnorme.utilbox.core.CoreUtil.listFrom;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+
+import melnorme.lang.ide.core.LangCore;
+import melnorme.lang.ide.core.LangNature;
+import melnorme.lang.ide.core.utils.EclipseUtils;
+import melnorme.lang.ide.core.utils.ResourceUtils;
+import melnorme.utilbox.core.CommonException;
+import melnorme.utilbox.misc.Location;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+
+import com.googlecode.goclipse.core.GoProjectEnvironment;
+import com.googlecode.goclipse.tooling.GoPackagesVisitor;
+import com.googlecode.goclipse.tooling.env.GoEnvironment;
+import com.googlecode.goclipse.tooling.env.GoPath;
+
+/**
+ * Finds the package directories of the open Go projects, split between the packages in the project locations
+ * (indexed by the symbol indexer) and the other packages of their GOROOT and GOPATH entries (stored by the
+ * {@link ExternalPackagesPreindexer}). Each package is in one set only, so that no package is parsed by both jobs.
+ */
+public class GoPackageLocations {
+	
+	/** @return the package directories in the locations of the open Go projects, sorted. */
+	public static ArrayList<Path> findProjectPackageDirs() {
+		LinkedHashSet<Path> packageDirs = new LinkedHashSet<Path>();
+		for (IProject project : getOpenedGoProjects()) {
+			Location projectLocation = ResourceUtils.getResourceLocation(project);
+			if (projectLocation == null) {
+				continue;
+			}
+			// The project is a GOPATH entry itself, or is in one (see GoProjectEnvironment.getEffectiveGoPath)
+			GoPath goPath = GoProjectEnvironment.getEffectiveGoPath(project);
+			Location goPathEntry = goPath.findGoPathEntry(projectLocation);
+			if (goPathEntry != null) {
+				visitPackages(goPathEntry, projectLocation, packageDirs);
+			}
+		}
+		return sorted(packageDirs);
+	}
+	
+	/**
+	 * @return the package directories of the GOROOT and GOPATH entries of the open Go projects, sorted.
+	 * Excludes the ones in the project locations.
+	 */
+	public static ArrayList<Path> findExternalPackageDirs() {
+		// Map each root (GOROOT or GOPATH entry) to the directory to visit in it
+		LinkedHashMap<Location, Location> roots = new LinkedHashMap<Location, Location>();
+		ArrayList<Path> projectLocations = new ArrayList<Path>();
+		for (IProject project : getOpenedGoProjects()) {
+			Location projectLocation = ResourceUtils.getResourceLocation(project);
+			if (projectLocation != null) {
+				projectLocations.add(projectLocation.toPath());
+			}
+			
+			GoEnvironment goEnvironment = GoProjectEnvironment.getGoEnvironment(project);
+			try {
+				roots.put(goEnvironment.getGoRoot_Location(), goEnvironment.getGoRoot().getSourceRootLocation());
+			} catch (CommonException e) {
+				// GOROOT not set or invalid
+			}
+			for (String goPathEntry : goEnvironment.getGoPathEntries()) {
+				try {
+					Location location = Location.createValidOrNull(Paths.get(goPathEntry));
+					if (location != null) {
+						roots.put(location, location);
+					}
+				} catch (InvalidPathException e) {
+					// Ignore invalid entry
+				}
+			}
+		}
+		
+		LinkedHashSet<Path> packageDirs = new LinkedHashSet<Path>();
+		for (Entry<Location, Location> root : roots.entrySet()) {
+			visitPackages(root.getKey(), root.getValue(), packageDirs);
+		}
+		ArrayList<Path> result = new ArrayList<Path>();
+		for (Path packageDir : sorted(packageDirs)) {
+			if (!isInAny(packageDir, projectLocations)) {
+				result.add(packageDir);
+			}
+		}
+		return result;
+	}
+	
+	protected static IProject[] getOpenedGoProjects() {
+		try {
+			return EclipseUtils.getOpenedProjects(LangNature.NATURE_ID);
+		} catch (CoreException e) {
+			LangCore.logStatus(e);
+			return new IProject[0];
+		}
+	}
+	
+	protected static void visitPackages(Location root, Location directoryToVisit, LinkedHashSet<Path> packageDirs) {
+		GoPackagesVisitor packagesVisitor = new GoPackagesVisitor(root, listFrom(directoryToVisit)) {
+			@Override
+			protected FileVisitResult handleFileVisitException(Path file, IOException exc) {
+				return FileVisitResult.CONTINUE;
+			}
+		};
+		packageDirs.addAll(packagesVisitor.getModuleFiles());
+	}
+	
+	protected static boolean isInAny(Path path, ArrayList<Path> directories) {
+		for (Path directory : directories) {
+			if (path.startsWith(directory)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	protected static ArrayList<Path> sorted(LinkedHashSet<Path> paths) {
+		ArrayList<Path> result = new ArrayList<Path>(paths);
+		Collections.sort(result);
+		return result;
+	}
+	
+}
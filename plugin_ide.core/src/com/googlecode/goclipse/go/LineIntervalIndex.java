@@ -0,0 +1,108 @@
+package com.googlecode.goclipse.go;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the first value, in the order they were added, whose line interval contains a given line.
+ * The lines are split into segments at the interval bounds, and the answer for each segment is computed once,
+ * with a sweep over the intervals sorted by start. Queries are then a binary search over the segments.
+ *
+ * Instances are immutable, use {@link Builder} to create them.
+ */
+public class LineIntervalIndex<T> {
+	
+	/** The start lines of the segments, sorted. */
+	protected final int[] segmentStarts;
+	/** The index in values of the first value containing each segment, or -1 if none does. */
+	protected final int[] segmentValues;
+	protected final List<T> values;
+	
+	protected LineIntervalIndex(int[] segmentStarts, int[] segmentValues, List<T> values) {
+		this.segmentStarts = segmentStarts;
+		this.segmentValues = segmentValues;
+		this.values = values;
+	}
+	
+	/** @return the first value whose interval contains given line, or null if none does. */
+	public T find(int line) {
+		int segment = Arrays.binarySearch(segmentStarts, line);
+		if (segment < 0) {
+			// The segment starting before line
+			segment = -(segment + 1) - 1;
+		}
+		if (segment < 0 || segmentValues[segment] == -1) {
+			return null;
+		}
+		return values.get(segmentValues[segment]);
+	}
+	
+	public static class Builder<T> {
+		
+		protected final ArrayList<T> values = new ArrayList<T>();
+		protected final ArrayList<int[]> intervals = new ArrayList<int[]>();
+		
+		/** Add a value for the lines from start to end, both inclusive. Empty intervals are ignored. */
+		public Builder<T> add(int start, int end, T value) {
+			if (start <= end) {
+				intervals.add(new int[] { start, end, values.size() });
+				values.add(value);
+			}
+			return this;
+		}
+		
+		public LineIntervalIndex<T> build() {
+			// Segments start at the interval starts and after the interval ends
+			int[] bounds = new int[intervals.size() * 2];
+			int boundCount = 0;
+			for (int[] interval : intervals) {
+				bounds[boundCount++] = interval[0];
+				if (interval[1] != Integer.MAX_VALUE) {
+					bounds[boundCount++] = interval[1] + 1;
+				}
+			}
+			Arrays.sort(bounds, 0, boundCount);
+			int segmentCount = 0;
+			for (int i = 0; i < boundCount; i++) {
+				if (segmentCount == 0 || bounds[segmentCount - 1] != bounds[i]) {
+					bounds[segmentCount++] = bounds[i];
+				}
+			}
+			int[] segmentStarts = Arrays.copyOf(bounds, segmentCount);
+			
+			ArrayList<int[]> sortedIntervals = new ArrayList<int[]>(intervals);
+			sortedIntervals.sort(new Comparator<int[]>() {
+				@Override
+				public int compare(int[] interval1, int[] interval2) {
+					return Integer.compare(interval1[0], interval2[0]);
+				}
+			});
+			// The intervals containing the current segment (and some that ended before), first added on top
+			PriorityQueue<int[]> openIntervals = new PriorityQueue<int[]>(11, new Comparator<int[]>() {
+				@Override
+				public int compare(int[] interval1, int[] interval2) {
+					return Integer.compare(interval1[2], interval2[2]);
+				}
+			});
+			
+			int[] segmentValues = new int[segmentCount];
+			int nextInterval = 0;
+			for (int segment = 0; segment < segmentCount; segment++) {
+				int segmentStart = segmentStarts[segment];
+				while (nextInterval < sortedIntervals.size() && sortedIntervals.get(nextInterval)[0] <= segmentStart) {
+					openIntervals.add(sortedIntervals.get(nextInterval++));
+				}
+				while (!openIntervals.isEmpty() && openIntervals.peek()[1] < segmentStart) {
+					openIntervals.poll();
+				}
+				segmentValues[segment] = openIntervals.isEmpty() ? -1 : openIntervals.peek()[2];
+			}
+			return new LineIntervalIndex<T>(segmentStarts, segmentValues, new ArrayList<T>(values));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,232 @@
+package com.googlecode.goclipse.go;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import melnorme.lang.ide.core.LangCore;
+
+import com.googlecode.goclipse.go.lang.model.Function;
+import com.googlecode.goclipse.go.lang.model.Method;
+import com.googlecode.goclipse.go.lang.model.Package;
+import com.googlecode.goclipse.go.lang.model.Type;
+import com.googlecode.goclipse.tooling.FileFingerprints;
+
+/**
+ * An on-disk store of the parsed models of external package directories, so that they are not parsed again
+ * in each IDE session. Each directory is stored in its own file, named after a hash of the directory path.
+ * The file starts with the store version, the directory path and a fingerprint of the package source files:
+ * a stored model is only used if that fingerprint matches the current one. The nodes follow, in Java
+ * serialization form.
+ *
+ * Files are only read when the package is first needed, through a memory mapping.
+ * This class is thread-safe.
+ */
+public class PackageModelStore {
+	
+	protected static final int MAGIC = 0x476F506D;
+	/** Increment when the format, or the serialized form of the model classes, changes. */
+	protected static final int FORMAT_VERSION = 1;
+	
+	/** The nodes of a parsed package directory. */
+	public static class PackageModel {
+		
+		public final Package pkg;
+		public final ArrayList<Method> methods;
+		public final ArrayList<Function> functions;
+		public final ArrayList<Type> types;
+		/** The package directory and the source files the model was parsed from. */
+		public final ArrayList<File> sourceFiles;
+		
+		public PackageModel(Package pkg, ArrayList<Method> methods, ArrayList<Function> functions,
+				ArrayList<Type> types, ArrayList<File> sourceFiles) {
+			this.pkg = pkg;
+			this.methods = methods;
+			this.functions = functions;
+			this.types = types;
+			this.sourceFiles = sourceFiles;
+		}
+		
+	}
+	
+	protected final Path storeDir;
+	
+	public PackageModelStore(Path storeDir) {
+		this.storeDir = storeDir;
+	}
+	
+	/**
+	 * @return a fingerprint of the names, sizes and modification times of the Go source files
+	 * (excluding tests) of given package directory.
+	 */
+	public static String getFingerprint(File packageDir) throws IOException {
+		ArrayList<Path> files = new ArrayList<Path>();
+		try(DirectoryStream<Path> dirStream = Files.newDirectoryStream(packageDir.toPath(), "*.go")) {
+			for (Path file : dirStream) {
+				if (!file.getFileName().toString().endsWith("_test.go")) {
+					files.add(file);
+				}
+			}
+		}
+		Collections.sort(files);
+		return FileFingerprints.getFilesFingerprint(files);
+	}
+	
+	/** @return the key of given directory: its normalized absolute path, however it was written. */
+	protected static String getDirectoryKey(File packageDir) {
+		return packageDir.toPath().toAbsolutePath().normalize().toString();
+	}
+	
+	protected Path getStoreFile(File packageDir) {
+		MessageDigest digest = FileFingerprints.newDigest();
+		digest.update(getDirectoryKey(packageDir).getBytes(StandardCharsets.UTF_8));
+		return storeDir.resolve(FileFingerprints.toHexString(digest.digest()) + ".model");
+	}
+	
+	protected static boolean readHeader(DataInputStream in, File packageDir, String fingerprint) throws IOException {
+		return in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION
+				&& in.readUTF().equals(getDirectoryKey(packageDir)) && in.readUTF().equals(fingerprint);
+	}
+	
+	/** @return whether a model of given package directory is stored for given fingerprint. */
+	public boolean contains(File packageDir, String fingerprint) {
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(getStoreFile(packageDir)), 1024))) {
+			return readHeader(in, packageDir, fingerprint);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * @return the stored model of given package directory, or null if there is none for given fingerprint,
+	 * or if it can't be read.
+	 */
+	public PackageModel load(File packageDir, String fingerprint) {
+		Path storeFile = getStoreFile(packageDir);
+		try(FileChannel channel = FileChannel.open(storeFile, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+			
+			if (!readHeader(in, packageDir, fingerprint)) {
+				return null;
+			}
+			
+			// Read all nodes with a single stream, so that shared references (such as the package) are kept
+			ObjectInputStream objects = new ObjectInputStream(in);
+			Package pkg = (Package) objects.readObject();
+			ArrayList<Method> methods = readList(objects, Method.class);
+			ArrayList<Function> functions = readList(objects, Function.class);
+			ArrayList<Type> types = readList(objects, Type.class);
+			ArrayList<File> sourceFiles = readList(objects, File.class);
+			return new PackageModel(pkg, methods, functions, types, sourceFiles);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			// An outdated or corrupt file: the package will be parsed and stored again
+			return null;
+		}
+	}
+	
+	protected static <T> ArrayList<T> readList(ObjectInputStream objects, Class<T> elementClass)
+			throws IOException, ClassNotFoundException {
+		int size = objects.readInt();
+		ArrayList<T> list = new ArrayList<T>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(elementClass.cast(objects.readObject()));
+		}
+		return list;
+	}
+	
+	/** Store the model of given package directory, parsed from files with given fingerprint. */
+	public void save(File packageDir, String fingerprint, PackageModel model) {
+		Path storeFile = getStoreFile(packageDir);
+		try {
+			Files.createDirectories(storeDir);
+			Path tempFile = Files.createTempFile(storeDir, "model", ".tmp");
+			try {
+				try(DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(FORMAT_VERSION);
+					out.writeUTF(getDirectoryKey(packageDir));
+					out.writeUTF(fingerprint);
+					
+					ObjectOutputStream objects = new ObjectOutputStream(out);
+					objects.writeObject(model.pkg);
+					writeList(objects, model.methods);
+					writeList(objects, model.functions);
+					writeList(objects, model.types);
+					writeList(objects, model.sourceFiles);
+					objects.flush();
+				}
+				// Can fail on Windows while an older version of the file is still mapped, that's harmless
+				Files.move(tempFile, storeFile, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		} catch (IOException e) {
+			LangCore.logWarning("Error storing package model of: " + packageDir, e);
+		}
+	}
+	
+	protected static void writeList(ObjectOutputStream objects, ArrayList<?> list) throws IOException {
+		objects.writeInt(list.size());
+		for (Object element : list) {
+			objects.writeObject(element);
+		}
+	}
+	
+	protected static class ByteBufferInputStream extends InputStream {
+		
+		protected final ByteBuffer buffer;
+		
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int readCount = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, readCount);
+			return readCount;
+		}
+		
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,118 @@
+package com.googlecode.goclipse.go;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.googlecode.goclipse.go.lang.lexer.Lexer;
+import com.googlecode.goclipse.go.lang.lexer.TokenBuffer;
+import com.googlecode.goclipse.go.lang.lexer.Tokenizer;
+import com.googlecode.goclipse.go.lang.model.Function;
+import com.googlecode.goclipse.go.lang.model.Import;
+import com.googlecode.goclipse.go.lang.model.Method;
+import com.googlecode.goclipse.go.lang.model.Package;
+import com.googlecode.goclipse.go.lang.model.Type;
+import com.googlecode.goclipse.go.lang.model.Var;
+import com.googlecode.goclipse.go.lang.parser.FunctionParser;
+import com.googlecode.goclipse.go.lang.parser.ImportParser;
+import com.googlecode.goclipse.go.lang.parser.PackageParser;
+import com.googlecode.goclipse.go.lang.parser.ScopeParser;
+import com.googlecode.goclipse.go.lang.parser.TokenizedPage;
+import com.googlecode.goclipse.go.lang.parser.TypeParser;
+import com.googlecode.goclipse.go.lang.parser.VariableParser;
+
+/**
+ * The parse result of a single Go source file.
+ * Instances are shared through {@link ParsedSourceFileCache}, so they should be treated as read-only:
+ * a {@link CodeContext} copies the node lists it needs, it doesn't modify these.
+ */
+public class ParsedSourceFile {
+	
+	public final File file;
+	public final int sourceLength;
+	public final Package pkg;
+	public final TokenizedPage page;
+	public final List<Import> imports;
+	public final List<Method> methods;
+	public final List<Function> functions;
+	public final List<Type> types;
+	public final List<Var> vars;
+	
+	protected ParsedSourceFile(File file, int sourceLength, Package pkg, TokenizedPage page, List<Import> imports,
+			List<Method> methods, List<Function> functions, List<Type> types, List<Var> vars) {
+		this.file = file;
+		this.sourceLength = sourceLength;
+		this.pkg = pkg;
+		this.page = page;
+		this.imports = imports;
+		this.methods = methods;
+		this.functions = functions;
+		this.types = types;
+		this.vars = vars;
+	}
+	
+	/**
+	 * Lex and parse given source text, which is the contents of given file.
+	 */
+	public static ParsedSourceFile parse(File file, String fileText) throws IOException {
+		Lexer     lexer     = new Lexer();
+		Tokenizer tokenizer = new Tokenizer(lexer);
+		FileParsers parsers = new FileParsers(tokenizer, file);
+		
+		lexer.scan(fileText);
+		
+		return parsers.createParsedFile(fileText.length(), tokenizer.getTokenBuffer());
+	}
+	
+	/**
+	 * Parse the tokens of an earlier scan of given file, without lexing it again.
+	 * @param sourceLength the length of the source text the tokens were lexed from.
+	 */
+	public static ParsedSourceFile parse(File file, int sourceLength, TokenBuffer tokens) {
+		Tokenizer tokenizer = new Tokenizer(new Lexer());
+		FileParsers parsers = new FileParsers(tokenizer, file);
+		
+		tokenizer.replay(tokens);
+		
+		return parsers.createParsedFile(sourceLength, tokens);
+	}
+	
+	protected static class FileParsers {
+		
+		protected final File           file;
+		protected final PackageParser  packageParser;
+		protected final ImportParser   importParser;
+		protected final FunctionParser functionParser;
+		protected final TypeParser     typeParser;
+		protected final VariableParser variableParser;
+		
+		public FileParsers(Tokenizer tokenizer, File file) {
+			this.file = file;
+			packageParser = new PackageParser(tokenizer, file);
+			importParser  = new ImportParser(tokenizer, file);
+			ScopeParser scopeParser = new ScopeParser(tokenizer, file);
+			
+			functionParser = new FunctionParser(false, tokenizer, file);
+			functionParser.setScopeParser(scopeParser);
+			
+			typeParser = new TypeParser(false, tokenizer, file);
+			typeParser.setScopeParser(scopeParser);
+			
+			variableParser = new VariableParser(tokenizer, file, functionParser);
+			variableParser.setScopeParser(scopeParser);
+		}
+		
+		public ParsedSourceFile createParsedFile(int sourceLength, TokenBuffer tokens) {
+			return new ParsedSourceFile(file, sourceLength,
+				packageParser.getPckg(),
+				new TokenizedPage(tokens),
+				importParser.getImports(),
+				functionParser.getMethods(),
+				functionParser.getFunctions(),
+				typeParser.getTypes(),
+				variableParser.getVars());
+		}
+		
+	}
+	
+}
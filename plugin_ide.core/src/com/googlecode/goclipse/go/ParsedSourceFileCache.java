@@ -0,0 +1,197 @@
+package com.googlecode.goclipse.go;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import melnorme.lang.ide.core.LangCore;
+import melnorme.lang.tooling.ops.util.FileCachingEntry;
+import melnorme.utilbox.misc.Location;
+
+/**
+ * A bounded, LRU cache of per-file parse results.
+ *
+ * Files read from disk are validated against their modification time and size (see {@link FileCachingEntry}),
+ * editor buffers are validated against the text they were parsed from.
+ * The memory bound is expressed as the total length of the source text of all cached entries,
+ * which is roughly proportional to the size of the parsed model.
+ */
+public class ParsedSourceFileCache {
+	
+	public static final int DEFAULT_MAX_SOURCE_CHARS = 32 * 1024 * 1024;
+	
+	protected final long maxSourceChars;
+	/** Access-ordered, so iteration starts at the least recently used entry. */
+	protected final LinkedHashMap<EntryKey, ParsedFileEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	protected long totalSourceChars = 0;
+	
+	public ParsedSourceFileCache() {
+		this(DEFAULT_MAX_SOURCE_CHARS);
+	}
+	
+	public ParsedSourceFileCache(long maxSourceChars) {
+		this.maxSourceChars = maxSourceChars;
+	}
+	
+	/**
+	 * @return the parse result for the current on-disk contents of given file.
+	 * Only re-parses the file if it was modified since it was last parsed.
+	 */
+	public ParsedSourceFile getParsedFile(File file) throws IOException {
+		EntryKey key = new EntryKey(file.getAbsolutePath(), false);
+		
+		ParsedFileEntry entry = getEntry(key);
+		if(entry != null && !entry.isStale()) {
+			return entry.getValue();
+		}
+		
+		entry = new ParsedFileEntry(Location.create_fromValid(file.toPath().toAbsolutePath()), null);
+		// Read the file attributes before the file: if it is modified while being read, the entry is stale
+		BasicFileAttributes fileAttributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		ParsedSourceFile parsedFile = ParsedSourceFile.parse(file, CodeContext.readFile(file));
+		entry.updateValue(parsedFile, fileAttributes);
+		putEntry(key, entry);
+		return parsedFile;
+	}
+	
+	/**
+	 * @return the parse result for given source text of given file (usually the contents of an editor buffer).
+	 * Only re-parses the text if it differs from the text that was last parsed for that file.
+	 */
+	public ParsedSourceFile getParsedFile(File file, String fileText) throws IOException {
+		EntryKey key = new EntryKey(file.getAbsolutePath(), true);
+		
+		ParsedFileEntry entry = getEntry(key);
+		if(entry != null && fileText.equals(entry.sourceText) && entry.getValue() != null) {
+			return entry.getValue();
+		}
+		
+		entry = new ParsedFileEntry(Location.create_fromValid(file.toPath().toAbsolutePath()), fileText);
+		ParsedSourceFile parsedFile = ParsedSourceFile.parse(file, fileText);
+		entry.updateValue(parsedFile);
+		putEntry(key, entry);
+		return parsedFile;
+	}
+	
+	/**
+	 * Store the parse result of given source text of given file, obtained elsewhere (for example by an 
+	 * editor reconciler), so that a subsequent request for the same text does not parse it again.
+	 */
+	public void putParsedFile(File file, String fileText, ParsedSourceFile parsedFile) {
+		EntryKey key = new EntryKey(file.getAbsolutePath(), true);
+		ParsedFileEntry entry = 
+				new ParsedFileEntry(Location.create_fromValid(file.toPath().toAbsolutePath()), fileText);
+		entry.updateValue(parsedFile);
+		putEntry(key, entry);
+	}
+	
+	protected synchronized ParsedFileEntry getEntry(EntryKey key) {
+		return entries.get(key);
+	}
+	
+	protected synchronized void putEntry(EntryKey key, ParsedFileEntry entry) {
+		ParsedFileEntry previous = entries.put(key, entry);
+		if(previous != null) {
+			totalSourceChars -= previous.getWeight();
+		}
+		totalSourceChars += entry.getWeight();
+		
+		Iterator<ParsedFileEntry> iter = entries.values().iterator();
+		while(totalSourceChars > maxSourceChars && entries.size() > 1 && iter.hasNext()) {
+			ParsedFileEntry eldest = iter.next();
+			if(eldest == entry) {
+				continue;
+			}
+			totalSourceChars -= eldest.getWeight();
+			iter.remove();
+		}
+	}
+	
+	public synchronized void invalidate(File file) {
+		String path = file.getAbsolutePath();
+		removeEntry(new EntryKey(path, false));
+		removeEntry(new EntryKey(path, true));
+	}
+	
+	protected void removeEntry(EntryKey key) {
+		ParsedFileEntry removed = entries.remove(key);
+		if(removed != null) {
+			totalSourceChars -= removed.getWeight();
+		}
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+		totalSourceChars = 0;
+	}
+	
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+	
+	public synchronized long getTotalSourceChars() {
+		return totalSourceChars;
+	}
+	
+	/* -----------------  ----------------- */
+	
+	protected static class EntryKey {
+		
+		protected final String path;
+		protected final boolean isBuffer;
+		
+		public EntryKey(String path, boolean isBuffer) {
+			this.path = path;
+			this.isBuffer = isBuffer;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof EntryKey)) {
+				return false;
+			}
+			EntryKey other = (EntryKey) obj;
+			return isBuffer == other.isBuffer && path.equals(other.path);
+		}
+		
+		@Override
+		public int hashCode() {
+			return path.hashCode() * 31 + (isBuffer ? 1 : 0);
+		}
+		
+	}
+	
+	protected static class ParsedFileEntry extends FileCachingEntry<ParsedSourceFile> {
+		
+		/** The text an editor buffer entry was parsed from, null for entries of on-disk files. */
+		protected final String sourceText;
+		
+		public ParsedFileEntry(Location location, String sourceText) {
+			super(location);
+			this.sourceText = sourceText;
+		}
+		
+		/** Update the value, recording given file attributes, read before the value was derived from the file. */
+		public synchronized void updateValue(ParsedSourceFile value, BasicFileAttributes fileAttributes) {
+			updateValue(value);
+			fileSyncAttributes = fileAttributes;
+		}
+		
+		public int getWeight() {
+			ParsedSourceFile value = getValue();
+			return value == null ? 0 : value.sourceLength;
+		}
+		
+		@Override
+		protected void handleWarning_ModifiedTimeInTheFuture(FileTime lastModifiedTime) {
+			LangCore.logWarning("File modified time is in the future: " + getFileLocation() +
+				" (" + lastModifiedTime + ")");
+		}
+		
+	}
+	
+}
@@ -0,0 +1,33 @@
+package com.googlecode.goclipse.go.index;
+
+import com.googlecode.goclipse.go.lang.model.ENodeKind;
+
+/**
+ * A top-level declaration of a Go source file: a function, method, type or package variable.
+ * Unlike the {@link com.googlecode.goclipse.go.lang.model.Node} it is created from,
+ * it only keeps what is needed to find and show the declaration, so that it's cheap to keep and persist.
+ */
+public class GoSymbol {
+	
+	public final String name;
+	public final ENodeKind kind;
+	/** The receiver type, for methods. Null otherwise. */
+	public final String receiverType;
+	public final String filePath;
+	/** The 1-based line of the declaration. */
+	public final int line;
+	
+	public GoSymbol(String name, ENodeKind kind, String receiverType, String filePath, int line) {
+		this.name = name;
+		this.kind = kind;
+		this.receiverType = receiverType;
+		this.filePath = filePath;
+		this.line = line;
+	}
+	
+	@Override
+	public String toString() {
+		return (receiverType == null ? "" : receiverType + ".") + name + " (" + kind + ") " + filePath + ":" + line;
+	}
+	
+}
@@ -0,0 +1,469 @@
+package com.googlecode.goclipse.go.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.googlecode.goclipse.go.lang.model.ENodeKind;
+
+/**
+ * An index of the top-level declarations of Go packages, by package directory.
+ * Each package is stored with a fingerprint of its source files, so that it only needs to be parsed again
+ * when the fingerprint changes (see {@link GoSymbolIndexer}).
+ *
+ * Lookups use a table of the distinct symbol names, sorted case-insensitively, built once after each change:
+ * exact and prefix queries are binary searches, camel-case queries only check the names with the same first
+ * letter, and substring queries intersect the lists of names containing each trigram of the pattern.
+ *
+ * This class is thread-safe.
+ */
+public class GoSymbolIndex {
+	
+	protected static final int FORMAT_VERSION = 1;
+	
+	public enum MatchMode {
+		EXACT,
+		PREFIX,
+		/** Pattern humps are prefixes of the name humps, in order: "NBR" matches "NewBufferedReader". */
+		CAMEL_CASE,
+		SUBSTRING,
+	}
+	
+	protected static class PackageEntry {
+		
+		protected final String fingerprint;
+		protected final GoSymbol[] symbols;
+		
+		public PackageEntry(String fingerprint, GoSymbol[] symbols) {
+			this.fingerprint = fingerprint;
+			this.symbols = symbols;
+		}
+		
+	}
+	
+	protected final HashMap<String, PackageEntry> packages = new HashMap<>();
+	protected boolean dirty = false;
+	/** The lookup table for the current packages, or null if it must be rebuilt. */
+	protected LookupTable lookupTable;
+	
+	public GoSymbolIndex() {
+	}
+	
+	/** @return the fingerprint given package directory was indexed with, or null if it's not in the index. */
+	public synchronized String getFingerprint(String packageDir) {
+		PackageEntry entry = packages.get(packageDir);
+		return entry == null ? null : entry.fingerprint;
+	}
+	
+	public synchronized void putPackage(String packageDir, String fingerprint, Collection<GoSymbol> symbols) {
+		packages.put(packageDir, new PackageEntry(fingerprint, symbols.toArray(new GoSymbol[symbols.size()])));
+		changed();
+	}
+	
+	public synchronized void removePackage(String packageDir) {
+		if(packages.remove(packageDir) != null) {
+			changed();
+		}
+	}
+	
+	public synchronized Set<String> getPackageDirs() {
+		return new HashSet<>(packages.keySet());
+	}
+	
+	public synchronized boolean isEmpty() {
+		return packages.isEmpty();
+	}
+	
+	public synchronized void clear() {
+		packages.clear();
+		changed();
+	}
+	
+	protected void changed() {
+		dirty = true;
+		lookupTable = null;
+	}
+	
+	/* ----------------- Lookup ----------------- */
+	
+	/**
+	 * @return the symbols whose name matches given pattern, sorted by name.
+	 * For {@link MatchMode#CAMEL_CASE}, case sensitivity only applies to the first letter,
+	 * the other humps are always matched by case.
+	 */
+	public List<GoSymbol> findSymbols(String pattern, MatchMode matchMode, boolean caseSensitive) {
+		return getLookupTable().findSymbols(pattern, matchMode, caseSensitive);
+	}
+	
+	/** @return the lookup table for the current contents, building it if needed. */
+	public synchronized LookupTable getLookupTable() {
+		if(lookupTable == null) {
+			ArrayList<GoSymbol> symbols = new ArrayList<>();
+			for (PackageEntry entry : packages.values()) {
+				symbols.addAll(Arrays.asList(entry.symbols));
+			}
+			lookupTable = new LookupTable(symbols.toArray(new GoSymbol[symbols.size()]));
+		}
+		return lookupTable;
+	}
+	
+	/** An immutable lookup table over a set of symbols. */
+	public static class LookupTable {
+		
+		protected static class SortEntry implements Comparable<SortEntry> {
+			
+			protected final String lowerName;
+			protected final GoSymbol symbol;
+			
+			public SortEntry(GoSymbol symbol) {
+				this.lowerName = symbol.name.toLowerCase(Locale.ENGLISH);
+				this.symbol = symbol;
+			}
+			
+			@Override
+			public int compareTo(SortEntry other) {
+				int result = lowerName.compareTo(other.lowerName);
+				if(result == 0) {
+					result = symbol.name.compareTo(other.symbol.name);
+				}
+				if(result == 0) {
+					result = symbol.filePath.compareTo(other.symbol.filePath);
+				}
+				return result != 0 ? result : Integer.compare(symbol.line, other.symbol.line);
+			}
+			
+		}
+		
+		/** All symbols, sorted by lower case name, then name, file and line. */
+		protected final GoSymbol[] symbols;
+		/** The distinct lower case names of the symbols, sorted. */
+		protected final String[] names;
+		/** The symbols named names[i] are symbols[nameStarts[i]] up to symbols[nameStarts[i + 1]] (excluded). */
+		protected final int[] nameStarts;
+		/** The distinct trigram keys of the names, sorted. */
+		protected final int[] trigramKeys;
+		/** The names containing trigramKeys[i] are trigramNames[trigramStarts[i]] up to trigramStarts[i + 1]. */
+		protected final int[] trigramStarts;
+		protected final int[] trigramNames;
+		
+		public LookupTable(GoSymbol[] symbols) {
+			SortEntry[] sortEntries = new SortEntry[symbols.length];
+			for (int i = 0; i < symbols.length; i++) {
+				sortEntries[i] = new SortEntry(symbols[i]);
+			}
+			Arrays.sort(sortEntries);
+			this.symbols = new GoSymbol[symbols.length];
+			
+			ArrayList<String> names = new ArrayList<>();
+			int[] nameStarts = new int[symbols.length + 1];
+			int trigramCount = 0;
+			for (int i = 0; i < sortEntries.length; i++) {
+				this.symbols[i] = sortEntries[i].symbol;
+				String name = sortEntries[i].lowerName;
+				if(names.isEmpty() || !names.get(names.size() - 1).equals(name)) {
+					nameStarts[names.size()] = i;
+					names.add(name);
+					trigramCount += Math.max(0, name.length() - 2);
+				}
+			}
+			nameStarts[names.size()] = symbols.length;
+			this.names = names.toArray(new String[names.size()]);
+			this.nameStarts = Arrays.copyOf(nameStarts, names.size() + 1);
+			
+			// Sort all (trigram, name) pairs, packed in a long, to build the posting lists without boxing
+			long[] pairs = new long[trigramCount];
+			int pairCount = 0;
+			for (int nameIx = 0; nameIx < this.names.length; nameIx++) {
+				String name = this.names[nameIx];
+				for (int i = 0; i + 3 <= name.length(); i++) {
+					pairs[pairCount++] = ((long) trigramKey(name, i) << 32) | nameIx;
+				}
+			}
+			Arrays.sort(pairs);
+			
+			int[] trigramKeys = new int[pairs.length];
+			int[] trigramStarts = new int[pairs.length + 1];
+			int[] trigramNames = new int[pairs.length];
+			int keyCount = 0;
+			int postingCount = 0;
+			for (int i = 0; i < pairs.length; i++) {
+				if(i > 0 && pairs[i] == pairs[i - 1]) {
+					continue; // Same trigram more than once in a name
+				}
+				int key = (int) (pairs[i] >>> 32);
+				if(keyCount == 0 || trigramKeys[keyCount - 1] != key) {
+					trigramKeys[keyCount] = key;
+					trigramStarts[keyCount] = postingCount;
+					keyCount++;
+				}
+				trigramNames[postingCount++] = (int) pairs[i];
+			}
+			trigramStarts[keyCount] = postingCount;
+			this.trigramKeys = Arrays.copyOf(trigramKeys, keyCount);
+			this.trigramStarts = Arrays.copyOf(trigramStarts, keyCount + 1);
+			this.trigramNames = Arrays.copyOf(trigramNames, postingCount);
+		}
+		
+		/**
+		 * @return a non-negative key for the trigram at given index. Trigrams of chars below 1024 get distinct keys,
+		 * others are hashed: a key collision only adds candidates, which are checked against the pattern anyway.
+		 */
+		protected static int trigramKey(String string, int index) {
+			char ch0 = string.charAt(index);
+			char ch1 = string.charAt(index + 1);
+			char ch2 = string.charAt(index + 2);
+			if(ch0 < 1024 && ch1 < 1024 && ch2 < 1024) {
+				return (ch0 << 20) | (ch1 << 10) | ch2;
+			}
+			return 0x40000000 | ((ch0 * 31 * 31 + ch1 * 31 + ch2) & 0x3FFFFFFF);
+		}
+		
+		public int getSymbolCount() {
+			return symbols.length;
+		}
+		
+		public List<GoSymbol> findSymbols(String pattern, MatchMode matchMode, boolean caseSensitive) {
+			ArrayList<GoSymbol> result = new ArrayList<>();
+			if(pattern.isEmpty()) {
+				return result;
+			}
+			String lowerPattern = pattern.toLowerCase(Locale.ENGLISH);
+			
+			switch (matchMode) {
+			case EXACT: {
+				int nameIx = Arrays.binarySearch(names, lowerPattern);
+				if(nameIx >= 0) {
+					addSymbols(result, nameIx, pattern, matchMode, caseSensitive);
+				}
+				break;
+			}
+			case PREFIX:
+			case CAMEL_CASE: {
+				// Camel-case matches start with the first letter of the pattern
+				String prefix = matchMode == MatchMode.PREFIX ? lowerPattern : lowerPattern.substring(0, 1);
+				int nameIx = lowerBound(prefix);
+				for (; nameIx < names.length && names[nameIx].startsWith(prefix); nameIx++) {
+					addSymbols(result, nameIx, pattern, matchMode, caseSensitive);
+				}
+				break;
+			}
+			case SUBSTRING: {
+				int[] nameIndexes = findNamesContaining(lowerPattern);
+				if(nameIndexes == null) {
+					for (int nameIx = 0; nameIx < names.length; nameIx++) {
+						if(names[nameIx].contains(lowerPattern)) {
+							addSymbols(result, nameIx, pattern, matchMode, caseSensitive);
+						}
+					}
+				} else {
+					for (int nameIx : nameIndexes) {
+						if(names[nameIx].contains(lowerPattern)) {
+							addSymbols(result, nameIx, pattern, matchMode, caseSensitive);
+						}
+					}
+				}
+				break;
+			}
+			}
+			return result;
+		}
+		
+		protected int lowerBound(String key) {
+			int nameIx = Arrays.binarySearch(names, key);
+			return nameIx >= 0 ? nameIx : -(nameIx + 1);
+		}
+		
+		/**
+		 * @return the indexes of the names that contain all the trigrams of given pattern
+		 * (a superset of the names containing the pattern), or null if the pattern is too short to have trigrams.
+		 */
+		protected int[] findNamesContaining(String lowerPattern) {
+			if(lowerPattern.length() < 3) {
+				return null;
+			}
+			ArrayList<int[]> nameLists = new ArrayList<>();
+			for (int i = 0; i + 3 <= lowerPattern.length(); i++) {
+				int keyIx = Arrays.binarySearch(trigramKeys, trigramKey(lowerPattern, i));
+				if(keyIx < 0) {
+					return new int[0];
+				}
+				nameLists.add(Arrays.copyOfRange(trigramNames, trigramStarts[keyIx], trigramStarts[keyIx + 1]));
+			}
+			// Intersect starting with the shortest lists, so that the result shrinks quickly
+			nameLists.sort(new Comparator<int[]>() {
+				@Override
+				public int compare(int[] list1, int[] list2) {
+					return Integer.compare(list1.length, list2.length);
+				}
+			});
+			int[] result = nameLists.get(0);
+			for (int i = 1; i < nameLists.size() && result.length > 0; i++) {
+				result = intersect(result, nameLists.get(i));
+			}
+			return result;
+		}
+		
+		protected static int[] intersect(int[] sorted1, int[] sorted2) {
+			int[] result = new int[Math.min(sorted1.length, sorted2.length)];
+			int count = 0;
+			int ix2 = 0;
+			for (int value : sorted1) {
+				ix2 = lowerBound(sorted2, ix2, value);
+				if(ix2 == sorted2.length) {
+					break;
+				}
+				if(sorted2[ix2] == value) {
+					result[count++] = value;
+				}
+			}
+			return Arrays.copyOf(result, count);
+		}
+		
+		/** @return the index of the first element of array, from given index, not less than value. */
+		protected static int lowerBound(int[] array, int fromIndex, int value) {
+			int ix = Arrays.binarySearch(array, fromIndex, array.length, value);
+			return ix >= 0 ? ix : -(ix + 1);
+		}
+		
+		protected void addSymbols(ArrayList<GoSymbol> result, int nameIx, String pattern, MatchMode matchMode,
+				boolean caseSensitive) {
+			for (int i = nameStarts[nameIx]; i < nameStarts[nameIx + 1]; i++) {
+				GoSymbol symbol = symbols[i];
+				if(matches(symbol.name, pattern, matchMode, caseSensitive)) {
+					result.add(symbol);
+				}
+			}
+		}
+		
+		/** Check a name already known to match the pattern case-insensitively (except for camel-case). */
+		protected static boolean matches(String name, String pattern, MatchMode matchMode, boolean caseSensitive) {
+			switch (matchMode) {
+			case EXACT: return !caseSensitive || name.equals(pattern);
+			case PREFIX: return !caseSensitive || name.startsWith(pattern);
+			case SUBSTRING: return !caseSensitive || name.contains(pattern);
+			case CAMEL_CASE:
+				if(caseSensitive && name.charAt(0) != pattern.charAt(0)) {
+					return false;
+				}
+				return camelCaseMatch(name, pattern) || (!caseSensitive && name.regionMatches(true, 0, pattern, 0,
+					pattern.length()));
+			}
+			throw new IllegalArgumentException(matchMode.toString());
+		}
+		
+		/**
+		 * @return whether each upper case letter of given pattern starts a hump of name, in order,
+		 * with the pattern letters after it being a prefix of the hump. The first letter is matched ignoring case.
+		 */
+		protected static boolean camelCaseMatch(String name, String pattern) {
+			if(Character.toLowerCase(name.charAt(0)) != Character.toLowerCase(pattern.charAt(0))) {
+				return false;
+			}
+			int nameIx = 1;
+			for (int patternIx = 1; patternIx < pattern.length(); patternIx++) {
+				char ch = pattern.charAt(patternIx);
+				if(Character.isUpperCase(ch)) {
+					// Skip to the next hump starting with ch
+					while(nameIx < name.length() && name.charAt(nameIx) != ch) {
+						nameIx++;
+					}
+				}
+				if(nameIx == name.length() || name.charAt(nameIx) != ch) {
+					return false;
+				}
+				nameIx++;
+			}
+			return true;
+		}
+		
+	}
+	
+	/* ----------------- Persistence ----------------- */
+	
+	/** Load the index from given file. If the file doesn't exist, or is from another version, the index is cleared. */
+	public synchronized void load(Path indexFile) throws IOException {
+		packages.clear();
+		changed();
+		dirty = false;
+		
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if(in.readInt() != FORMAT_VERSION) {
+				return;
+			}
+			int packageCount = in.readInt();
+			for (int i = 0; i < packageCount; i++) {
+				String packageDir = in.readUTF();
+				String fingerprint = in.readUTF();
+				GoSymbol[] symbols = new GoSymbol[in.readInt()];
+				for (int j = 0; j < symbols.length; j++) {
+					String name = in.readUTF();
+					ENodeKind kind = ENodeKind.valueOf(in.readUTF());
+					String receiverType = in.readBoolean() ? in.readUTF() : null;
+					// Files are stored relative to the package directory
+					String filePath = packageDir + File.separator + in.readUTF();
+					int line = in.readInt();
+					symbols[j] = new GoSymbol(name, kind, receiverType, filePath, line);
+				}
+				packages.put(packageDir, new PackageEntry(fingerprint, symbols));
+			}
+		} catch (NoSuchFileException e) {
+			return;
+		} catch (IOException | RuntimeException e) {
+			packages.clear();
+			throw e instanceof IOException ? (IOException) e : new IOException(e);
+		}
+	}
+	
+	/** Save the index to given file, if it changed since it was last loaded or saved. */
+	public synchronized void save(Path indexFile) throws IOException {
+		if(!dirty) {
+			return;
+		}
+		Files.createDirectories(indexFile.getParent());
+		Path tempFile = Files.createTempFile(indexFile.getParent(), "symbolIndex", ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(packages.size());
+				for (Entry<String, PackageEntry> entry : packages.entrySet()) {
+					String packageDir = entry.getKey();
+					out.writeUTF(packageDir);
+					out.writeUTF(entry.getValue().fingerprint);
+					out.writeInt(entry.getValue().symbols.length);
+					for (GoSymbol symbol : entry.getValue().symbols) {
+						out.writeUTF(symbol.name);
+						out.writeUTF(symbol.kind.name());
+						out.writeBoolean(symbol.receiverType != null);
+						if(symbol.receiverType != null) {
+							out.writeUTF(symbol.receiverType);
+						}
+						out.writeUTF(symbol.filePath.substring(packageDir.length() + 1));
+						out.writeInt(symbol.line);
+					}
+				}
+			}
+			Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+		dirty = false;
+	}
+	
+}
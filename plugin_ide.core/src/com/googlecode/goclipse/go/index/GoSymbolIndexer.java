@@ -0,0 +1,260 @@
+package com.googlecode.goclipse.go.index;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+
+import melnorme.lang.ide.core.LangCore;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.googlecode.goclipse.go.CodeContext;
+import com.googlecode.goclipse.go.GoPackageLocations;
+import com.googlecode.goclipse.go.ParsedSourceFile;
+import com.googlecode.goclipse.go.lang.model.Function;
+import com.googlecode.goclipse.go.lang.model.Method;
+import com.googlecode.goclipse.go.lang.model.Node;
+import com.googlecode.goclipse.go.lang.model.Type;
+import com.googlecode.goclipse.go.lang.model.Var;
+import com.googlecode.goclipse.tooling.FileFingerprints;
+
+/**
+ * Keeps a {@link GoSymbolIndex} of the packages of the open Go projects up to date. Only the packages in the
+ * project locations are indexed, not the rest of their GOPATH entries: declaration searches can only show
+ * matches on workspace files.
+ * Updates run in a low priority background job, which is scheduled when Go files of the workspace change,
+ * and which only parses the packages whose source files changed since they were last indexed.
+ * The index is persisted in the plugin state location, so that it's not built from scratch on each start.
+ */
+public class GoSymbolIndexer {
+	
+	/** Delay before updating the index after a change, so that a burst of changes causes a single update. */
+	protected static final long UPDATE_DELAY_MS = 1000;
+	
+	protected final GoSymbolIndex index = new GoSymbolIndex();
+	protected final Path indexFile;
+	protected final UpdateJob updateJob = new UpdateJob();
+	protected final IResourceChangeListener resourceListener = new GoFilesChangeListener();
+	
+	protected volatile boolean loaded = false;
+	protected volatile boolean updatedOnce = false;
+	
+	public GoSymbolIndexer(Path indexFile) {
+		this.indexFile = indexFile;
+	}
+	
+	public GoSymbolIndex getIndex() {
+		return index;
+	}
+	
+	public void start() {
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceListener,
+			IResourceChangeEvent.POST_CHANGE);
+		updateJob.schedule();
+	}
+	
+	public void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceListener);
+		updateJob.cancel();
+		try {
+			updateJob.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		saveIndex();
+	}
+	
+	public void requestUpdate() {
+		updateJob.schedule(UPDATE_DELAY_MS);
+	}
+	
+	/**
+	 * Make sure the index saved by a previous session is loaded. Queries made before the update of this session
+	 * completes use that saved state, so only wait for the update if there was none.
+	 */
+	public void awaitLoaded() throws InterruptedException {
+		ensureLoaded();
+		if(!updatedOnce && index.isEmpty()) {
+			updateJob.schedule();
+			updateJob.join();
+		}
+	}
+	
+	protected synchronized void ensureLoaded() {
+		if(!loaded) {
+			loadIndex();
+			loaded = true;
+		}
+	}
+	
+	protected class GoFilesChangeListener implements IResourceChangeListener {
+		
+		@Override
+		public void resourceChanged(IResourceChangeEvent event) {
+			final boolean[] goFilesChanged = new boolean[1];
+			try {
+				event.getDelta().accept(new IResourceDeltaVisitor() {
+					@Override
+					public boolean visit(IResourceDelta delta) {
+						IResource resource = delta.getResource();
+						if(resource.getType() == IResource.FILE && "go".equals(resource.getFileExtension())) {
+							goFilesChanged[0] = true;
+						}
+						return !goFilesChanged[0];
+					}
+				});
+			} catch (CoreException e) {
+				LangCore.logStatus(e);
+			}
+			if(goFilesChanged[0]) {
+				requestUpdate();
+			}
+		}
+		
+	}
+	
+	protected class UpdateJob extends Job {
+		
+		public UpdateJob() {
+			super("Indexing Go declarations");
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+		
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			ensureLoaded();
+			
+			ArrayList<Path> packageDirs = GoPackageLocations.findProjectPackageDirs();
+			monitor.beginTask(getName(), packageDirs.size());
+			
+			Set<String> removedPackageDirs = index.getPackageDirs();
+			for (Path packageDir : packageDirs) {
+				if(monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				removedPackageDirs.remove(packageDir.toString());
+				updatePackage(packageDir);
+				monitor.worked(1);
+			}
+			for (String removedPackageDir : removedPackageDirs) {
+				index.removePackage(removedPackageDir);
+			}
+			
+			// Build the lookup table now, instead of in the next query
+			index.getLookupTable();
+			saveIndex();
+			updatedOnce = true;
+			monitor.done();
+			return Status.OK_STATUS;
+		}
+		
+	}
+	
+	protected void loadIndex() {
+		try {
+			index.load(indexFile);
+		} catch (IOException e) {
+			LangCore.logWarning("Error loading Go symbol index: ", e);
+		}
+	}
+	
+	protected void saveIndex() {
+		try {
+			index.save(indexFile);
+		} catch (IOException e) {
+			LangCore.logWarning("Error saving Go symbol index: ", e);
+		}
+	}
+	
+	protected void updatePackage(Path packageDir) {
+		ArrayList<Path> files = new ArrayList<>();
+		String fingerprint;
+		try {
+			fingerprint = getPackageFingerprint(packageDir, files);
+		} catch (IOException e) {
+			index.removePackage(packageDir.toString());
+			return;
+		}
+		if(fingerprint.equals(index.getFingerprint(packageDir.toString()))) {
+			return;
+		}
+		
+		ArrayList<GoSymbol> symbols = new ArrayList<>();
+		for (Path file : files) {
+			try {
+				ParsedSourceFile parsedFile = ParsedSourceFile.parse(file.toFile(), CodeContext.readFile(file.toFile()));
+				addSymbols(symbols, file, parsedFile);
+			} catch (IOException | RuntimeException e) {
+				// Skip the file: the index is best-effort, a text search still finds its declarations
+			}
+		}
+		index.putPackage(packageDir.toString(), fingerprint, symbols);
+	}
+	
+	/**
+	 * Add the Go files of given package directory to given list, sorted by name,
+	 * and return a fingerprint of their names, sizes and modification times.
+	 */
+	protected static String getPackageFingerprint(Path packageDir, ArrayList<Path> files) throws IOException {
+		try(DirectoryStream<Path> dirStream = Files.newDirectoryStream(packageDir, "*.go")) {
+			for (Path file : dirStream) {
+				String fileName = file.getFileName().toString();
+				if(!fileName.startsWith(".") && !fileName.startsWith("_") && Files.isRegularFile(file)) {
+					files.add(file);
+				}
+			}
+		}
+		Collections.sort(files);
+		return FileFingerprints.getFilesFingerprint(files);
+	}
+	
+	protected static void addSymbols(ArrayList<GoSymbol> symbols, Path file, ParsedSourceFile parsedFile) {
+		String filePath = file.toString();
+		for (Function function : parsedFile.functions) {
+			addSymbol(symbols, function, null, filePath);
+		}
+		for (Method method : parsedFile.methods) {
+			addSymbol(symbols, method, method.getType(), filePath);
+		}
+		for (Type type : parsedFile.types) {
+			addSymbol(symbols, type, null, filePath);
+		}
+		for (Var var : parsedFile.vars) {
+			// Only package variables, not the local ones
+			if(var.getScope() == null || var.getScope().getParent() == null) {
+				addSymbol(symbols, var, null, filePath);
+			}
+		}
+	}
+	
+	protected static void addSymbol(ArrayList<GoSymbol> symbols, Node node, String receiverType, String filePath) {
+		// The node name is a display string, the insertion text has the plain name (followed by "()" for functions)
+		String name = node.getInsertionText();
+		if(name == null) {
+			return;
+		}
+		if(name.endsWith("()")) {
+			name = name.substring(0, name.length() - 2);
+		}
+		if(name.isEmpty() || name.equals("_")) {
+			return;
+		}
+		symbols.add(new GoSymbol(name, node.getNodeKind(), receiverType, filePath, node.getLine()));
+	}
+	
+}
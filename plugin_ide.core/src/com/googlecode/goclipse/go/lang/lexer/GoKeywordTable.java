@@ -0,0 +1,212 @@
+package com.googlecode.goclipse.go.lang.lexer;
+
+/**
+ * Precomputed lookup table of the Go reserved and predeclared words: keywords, builtin functions,
+ * predeclared values and primitive types.
+ *
+ * Shared by the model {@link Tokenizer} and the editor syntax coloring scanner.
+ * The table is a collision-free (perfect) hash table over the known words, so a lookup costs one hash
+ * computation over the word and at most one comparison against a candidate.
+ */
+public class GoKeywordTable {
+	
+	/** The syntax coloring category of a word. */
+	public enum Category {
+		KEYWORD,
+		BUILTIN_FUNCTION,
+		VALUE,
+		PRIMITIVE,
+	}
+	
+	public static class GoWord {
+		
+		public final String text;
+		/** The {@link TokenType} the {@link Tokenizer} classifies this word as. Null if it remains IDENTIFIER. */
+		public final TokenType tokenType;
+		/** The syntax coloring category. Null if the word is not colored. */
+		public final Category category;
+		
+		protected final char[] chars;
+		
+		public GoWord(String text, TokenType tokenType, Category category) {
+			this.text = text;
+			this.tokenType = tokenType;
+			this.category = category;
+			this.chars = text.toCharArray();
+		}
+		
+		protected boolean matches(CharSequence word) {
+			// Length already known to be equal
+			for (int i = 0; i < chars.length; i++) {
+				if (chars[i] != word.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+	}
+	
+	protected static final GoWord[] WORDS = {
+		// BUILT-IN TYPES
+		new GoWord("uint8",      TokenType.UINT8,      Category.PRIMITIVE),
+		new GoWord("uint16",     TokenType.UINT16,     Category.PRIMITIVE),
+		new GoWord("uint32",     TokenType.UINT32,     Category.PRIMITIVE),
+		new GoWord("uint64",     TokenType.UINT64,     Category.PRIMITIVE),
+		new GoWord("int8",       TokenType.INT8,       Category.PRIMITIVE),
+		new GoWord("int16",      TokenType.INT16,      Category.PRIMITIVE),
+		new GoWord("int32",      TokenType.INT32,      Category.PRIMITIVE),
+		new GoWord("int64",      TokenType.INT64,      Category.PRIMITIVE),
+		new GoWord("float32",    TokenType.FLOAT32,    Category.PRIMITIVE),
+		new GoWord("float64",    TokenType.FLOAT64,    Category.PRIMITIVE),
+		new GoWord("complex64",  TokenType.COMPLEX64,  Category.PRIMITIVE),
+		new GoWord("complex128", TokenType.COMPLEX128, Category.PRIMITIVE),
+		new GoWord("byte",       TokenType.BYTE,       Category.PRIMITIVE),
+		new GoWord("rune",       TokenType.RUNE,       Category.PRIMITIVE),
+		new GoWord("error",      TokenType.ERROR,      Category.PRIMITIVE),
+		new GoWord("uint",       TokenType.UINT,       Category.PRIMITIVE),
+		new GoWord("int",        TokenType.INT,        Category.PRIMITIVE),
+		new GoWord("uintptr",    TokenType.UINTPTR,    Category.PRIMITIVE),
+		new GoWord("string",     TokenType.STRING,     Category.PRIMITIVE),
+		new GoWord("bool",       TokenType.BOOL,       Category.PRIMITIVE),
+		
+		// VALUES
+		new GoWord("nil",   TokenType.NIL,   Category.VALUE),
+		new GoWord("true",  TokenType.TRUE,  Category.VALUE),
+		new GoWord("false", TokenType.FALSE, Category.VALUE),
+		new GoWord("iota",  TokenType.IOTA,  Category.VALUE),
+		
+		// BUILTIN METHODS
+		new GoWord("append",  TokenType.APPEND,  Category.BUILTIN_FUNCTION),
+		new GoWord("cap",     TokenType.CAP,     Category.BUILTIN_FUNCTION),
+		new GoWord("close",   TokenType.CLOSE,   Category.BUILTIN_FUNCTION),
+		new GoWord("closed",  TokenType.CLOSED,  null),
+		new GoWord("complex", null,              Category.BUILTIN_FUNCTION),
+		new GoWord("copy",    TokenType.COPY,    Category.BUILTIN_FUNCTION),
+		new GoWord("delete",  null,              Category.BUILTIN_FUNCTION),
+		new GoWord("imag",    null,              Category.BUILTIN_FUNCTION),
+		new GoWord("len",     TokenType.LEN,     Category.BUILTIN_FUNCTION),
+		new GoWord("make",    TokenType.MAKE,    Category.BUILTIN_FUNCTION),
+		new GoWord("new",     TokenType.NEW,     Category.BUILTIN_FUNCTION),
+		new GoWord("panic",   TokenType.PANIC,   Category.BUILTIN_FUNCTION),
+		new GoWord("print",   TokenType.PRINT,   Category.BUILTIN_FUNCTION),
+		new GoWord("println", TokenType.PRINTLN, Category.BUILTIN_FUNCTION),
+		new GoWord("real",    null,              Category.BUILTIN_FUNCTION),
+		new GoWord("recover", null,              Category.BUILTIN_FUNCTION),
+		
+		// KEYWORDS
+		new GoWord("break",       TokenType.BREAK,       Category.KEYWORD),
+		new GoWord("default",     TokenType.DEFAULT,     Category.KEYWORD),
+		new GoWord("func",        TokenType.FUNC,        Category.KEYWORD),
+		new GoWord("interface",   TokenType.INTERFACE,   Category.KEYWORD),
+		new GoWord("select",      TokenType.SELECT,      Category.KEYWORD),
+		new GoWord("case",        TokenType.CASE,        Category.KEYWORD),
+		new GoWord("defer",       TokenType.DEFER,       Category.KEYWORD),
+		new GoWord("go",          TokenType.GO,          Category.KEYWORD),
+		new GoWord("map",         TokenType.MAP,         Category.KEYWORD),
+		new GoWord("struct",      TokenType.STRUCT,      Category.KEYWORD),
+		new GoWord("chan",        TokenType.CHAN,        Category.KEYWORD),
+		new GoWord("else",        TokenType.ELSE,        Category.KEYWORD),
+		new GoWord("goto",        TokenType.GOTO,        Category.KEYWORD),
+		new GoWord("package",     TokenType.PACKAGE,     Category.KEYWORD),
+		new GoWord("switch",      TokenType.SWITCH,      Category.KEYWORD),
+		new GoWord("const",       TokenType.CONST,       Category.KEYWORD),
+		new GoWord("fallthrough", TokenType.FALLTHROUGH, Category.KEYWORD),
+		new GoWord("if",          TokenType.IF,          Category.KEYWORD),
+		new GoWord("range",       TokenType.RANGE,       Category.KEYWORD),
+		new GoWord("type",        TokenType.TYPE,        Category.KEYWORD),
+		new GoWord("continue",    TokenType.CONTINUE,    Category.KEYWORD),
+		new GoWord("for",         TokenType.FOR,         Category.KEYWORD),
+		new GoWord("import",      TokenType.IMPORT,      Category.KEYWORD),
+		new GoWord("return",      TokenType.RETURN,      Category.KEYWORD),
+		new GoWord("var",         TokenType.VAR,         Category.KEYWORD),
+	};
+	
+	protected static final int MIN_LENGTH;
+	protected static final int MAX_LENGTH;
+	
+	protected static final int TABLE_SIZE = 512;
+	protected static final int TABLE_MASK = TABLE_SIZE - 1;
+	protected static final int HASH_MULTIPLIER;
+	protected static final GoWord[] TABLE = new GoWord[TABLE_SIZE];
+	
+	static {
+		int minLength = Integer.MAX_VALUE;
+		int maxLength = 0;
+		for (GoWord word : WORDS) {
+			minLength = Math.min(minLength, word.chars.length);
+			maxLength = Math.max(maxLength, word.chars.length);
+		}
+		MIN_LENGTH = minLength;
+		MAX_LENGTH = maxLength;
+		HASH_MULTIPLIER = findPerfectHashMultiplier();
+		
+		for (GoWord word : WORDS) {
+			TABLE[hash(word.text, HASH_MULTIPLIER) & TABLE_MASK] = word;
+		}
+	}
+	
+	/** Search for a hash multiplier that places every word in a distinct slot. */
+	protected static int findPerfectHashMultiplier() {
+		for (int multiplier = 31; multiplier < 100_000; multiplier += 2) {
+			boolean[] used = new boolean[TABLE_SIZE];
+			boolean perfect = true;
+			for (GoWord word : WORDS) {
+				int slot = hash(word.text, multiplier) & TABLE_MASK;
+				if (used[slot]) {
+					perfect = false;
+					break;
+				}
+				used[slot] = true;
+			}
+			if (perfect) {
+				return multiplier;
+			}
+		}
+		throw new IllegalStateException("No perfect hash found for Go keyword table.");
+	}
+	
+	protected static int hash(CharSequence word, int multiplier) {
+		int h = word.length();
+		for (int i = 0; i < word.length(); i++) {
+			h = h * multiplier + word.charAt(i);
+		}
+		return h ^ (h >>> 9);
+	}
+	
+	/**
+	 * @return the Go reserved or predeclared word with given text, or null if the text is not one of them.
+	 */
+	public static GoWord lookup(CharSequence word) {
+		int length = word.length();
+		if (length < MIN_LENGTH || length > MAX_LENGTH) {
+			return null;
+		}
+		GoWord candidate = TABLE[hash(word, HASH_MULTIPLIER) & TABLE_MASK];
+		if (candidate == null || candidate.chars.length != length || !candidate.matches(word)) {
+			return null;
+		}
+		return candidate;
+	}
+	
+	/**
+	 * @return the more specific {@link TokenType} for given identifier text,
+	 * or {@link TokenType#IDENTIFIER} if it is not a reserved or predeclared word.
+	 */
+	public static TokenType classifyIdentifier(CharSequence identifier) {
+		GoWord word = lookup(identifier);
+		if (word == null || word.tokenType == null) {
+			return TokenType.IDENTIFIER;
+		}
+		return word.tokenType;
+	}
+	
+	/**
+	 * @return the syntax coloring category of given word, or null if it has none.
+	 */
+	public static Category getCategory(CharSequence word) {
+		GoWord goWord = lookup(word);
+		return goWord == null ? null : goWord.category;
+	}
+	
+}
@@ -0,0 +1,165 @@
+package com.googlecode.goclipse.go.lang.lexer;
+
+import com.googlecode.goclipse.go.lang.lexer.Lexer.ILineStartCheck;
+
+/**
+ * Keeps the classified token stream of a changing document up to date.
+ *
+ * On each edit, lexing resumes at the start of the line containing the edit, using the lexer state
+ * recorded for that line, and stops as soon as a line after the edit starts in the same state as
+ * the corresponding line before the edit. The tokens after that point are reused, shifted.
+ *
+ * Each update creates a new {@link TokenBuffer}, previous buffers are left unmodified, so they can still
+ * be safely read by other threads.
+ */
+public class IncrementalLexer {
+	
+	protected TokenBuffer tokens;
+	protected int lastRelexedLineCount = 0;
+	
+	public IncrementalLexer() {
+	}
+	
+	/**
+	 * @return the current tokens. Null if no text has been lexed yet.
+	 */
+	public synchronized TokenBuffer getTokenBuffer() {
+		return tokens;
+	}
+	
+	/**
+	 * @return the number of lines lexed in the last update. For diagnostics.
+	 */
+	public synchronized int getLastRelexedLineCount() {
+		return lastRelexedLineCount;
+	}
+	
+	/**
+	 * Lex the given text completely.
+	 */
+	public synchronized TokenBuffer reset(String text) {
+		String source = text + '\n';
+		TokenBuffer newTokens = new TokenBuffer();
+		scan(newTokens, source, 1, 0, false, null);
+		lastRelexedLineCount = newTokens.getLineCount();
+		tokens = newTokens;
+		return newTokens;
+	}
+	
+	/**
+	 * Update the tokens for an edit of the previously lexed text.
+	 *
+	 * @param text the new text, with the edit applied.
+	 * @param edit the region of text that changed (which may be the union of several successive edits).
+	 */
+	public synchronized TokenBuffer update(String text, TextDamage edit) {
+		final TokenBuffer oldTokens = tokens;
+		final int offsetDelta = edit.getLengthDelta();
+		
+		if (oldTokens == null || edit.getOffset() < 0 ||
+				edit.getOldEnd() > oldTokens.getSource().length() - 1 ||
+				text.length() != oldTokens.getSource().length() - 1 + offsetDelta) {
+			return reset(text);
+		}
+		
+		String source = text + '\n';
+		final int newEditEnd = edit.getNewEnd();
+		
+		int startLine = oldTokens.getLineOfOffset(edit.getOffset());
+		TokenBuffer newTokens = oldTokens.copyBeforeLine(startLine);
+		
+		final int[] resyncLine = { -1 };
+		ILineStartCheck resyncCheck = new ILineStartCheck() {
+			@Override
+			public boolean shouldStop(int lineNumber, int lineStartOffset, boolean inBlockComment) {
+				if (lineStartOffset < newEditEnd) {
+					return false;
+				}
+				int oldLine = oldTokens.findLineStartingAt(lineStartOffset - offsetDelta);
+				if (oldLine == -1 || oldTokens.isLineInBlockComment(oldLine) != inBlockComment) {
+					return false;
+				}
+				resyncLine[0] = oldLine;
+				return true;
+			}
+		};
+		
+		scan(newTokens, source, startLine, oldTokens.getLineStartOffset(startLine),
+			oldTokens.isLineInBlockComment(startLine), resyncCheck);
+		
+		lastRelexedLineCount = newTokens.getLineCount() - startLine + 1;
+		if (resyncLine[0] != -1) {
+			newTokens.appendFrom(oldTokens, resyncLine[0], offsetDelta);
+		}
+		
+		tokens = newTokens;
+		return newTokens;
+	}
+	
+	protected void scan(TokenBuffer buffer, String source, int lineNumber, int lineStartOffset,
+			boolean inBlockComment, ILineStartCheck stopCheck) {
+		Lexer lexer = new Lexer(buffer);
+		new Tokenizer(lexer);
+		lexer.resumeScan(source, lineStartOffset, lineNumber, inBlockComment, stopCheck);
+	}
+	
+	/**
+	 * The region of a text that changed, possibly accumulated over several successive edits.
+	 */
+	public static class TextDamage {
+		
+		protected int offset = -1;
+		protected int oldEnd;
+		protected int newEnd;
+		
+		public TextDamage() {
+		}
+		
+		public TextDamage(int offset, int removedLength, int insertedLength) {
+			add(offset, removedLength, insertedLength);
+		}
+		
+		public boolean isEmpty() {
+			return offset == -1;
+		}
+		
+		/**
+		 * Add an edit, made after the edits already added, in the coordinates of the text at that point.
+		 */
+		public void add(int editOffset, int removedLength, int insertedLength) {
+			if (offset == -1) {
+				offset = editOffset;
+				oldEnd = editOffset + removedLength;
+				newEnd = editOffset + insertedLength;
+				return;
+			}
+			int editEnd = editOffset + removedLength;
+			int delta = newEnd - oldEnd;
+			
+			// Edit ends after the damaged region: extend it, in original text coordinates
+			oldEnd = Math.max(oldEnd, editEnd - delta);
+			newEnd = Math.max(newEnd, editEnd) + insertedLength - removedLength;
+			offset = Math.min(offset, editOffset);
+		}
+		
+		public int getOffset() {
+			return offset;
+		}
+		
+		/** @return the end of the damaged region, in the original text. */
+		public int getOldEnd() {
+			return oldEnd;
+		}
+		
+		/** @return the end of the damaged region, in the new text. */
+		public int getNewEnd() {
+			return newEnd;
+		}
+		
+		public int getLengthDelta() {
+			return newEnd - oldEnd;
+		}
+		
+	}
+	
+}
@@ -14,7 +14,10 @@ public class Lexer {
 	 * notify interested parties
 	 */
 	private List<LexerListener> listeners = new ArrayList<LexerListener>();
-	private List<TokenUnit> tokenStream   = new ArrayList<TokenUnit>();
+	/**
+	 * The tokens of the last scan. Listeners may re-classify the last token while it is being notified.
+	 */
+	private final TokenBuffer tokenBuffer;
 	
 	private static boolean DEBUG = false;
 
@@ -30,39 +33,29 @@ public class Lexer {
 	private boolean charState 		  = false;
 	
 	/**
-	 * Identifier accumulator;
+	 * Source offset of the character being processed, and of the start of the current line.
+	 */
+	private int     currentOffset     = 0;
+	private int     lineStartOffset   = 0;
+	
+	/**
+	 * Identifier accumulator, and the source offset where the identifier starts;
 	 */
 	private StringBuilder identifier;
+	private int           identifierOffset = 0;
 
 	/**
     * 
     */
 	public Lexer() {
-		addLexerListener(new LexerListener() {
-			
-			@Override
-            public void tokenFound(TokenType type, String value, boolean inComment,
-					int start, int end) {
-				
-				TokenUnit unit = new TokenUnit();
-				unit.tokenType = type;
-				unit.text 	   = value;
-				unit.start     = start;
-				unit.end       = end;
-				tokenStream.add(unit);
-			}
-			
-			@Override
-			public void newline(int lineNumber) {
-				// TODO Auto-generated method stub
-				
-			}
-
-			@Override
-			public boolean isWhitespaceParser() {
-				return false;
-			}
-		});
+		this(new TokenBuffer());
+	}
+	
+	/**
+	 * Create a lexer that records tokens in the given buffer.
+	 */
+	public Lexer(TokenBuffer tokenBuffer) {
+		this.tokenBuffer = tokenBuffer;
 	}
 
 	/**
@@ -87,21 +80,23 @@ public class Lexer {
 	 */
 	public void fireTokenFound(TokenType type, String value) {
 
+		boolean inComment = lineCommentState || blockCommentState;
+		
 		if (type != TokenType.IDENTIFIER) {
 			flush();
 		} else {
+			int start = columnCount - value.length();
+			tokenBuffer.add(type, true, inComment, lineNumber, start, columnCount, identifierOffset);
 			for (LexerListener listener : listeners) {
-				listener.tokenFound(type, value, lineCommentState
-						|| blockCommentState, columnCount - value.length(),
-						columnCount);
+				listener.tokenFound(type, value, inComment, start, columnCount);
 			}
 			return;
 		}
 		
+		int start = columnCount + 1 - value.length();
+		tokenBuffer.add(type, false, inComment, lineNumber, start, columnCount + 1, currentOffset);
 		for (LexerListener listener : listeners) {
-			listener.tokenFound(type, value, lineCommentState
-					|| blockCommentState, columnCount + 1 - value.length(),
-					columnCount + 1);
+			listener.tokenFound(type, value, inComment, start, columnCount + 1);
 		}
 	}
 
@@ -112,6 +107,7 @@ public class Lexer {
 	public void fireNewline() {
 		lineCommentState = false;
 		lineNumber++;
+		tokenBuffer.newline(lineNumber, lineStartOffset, blockCommentState);
 		for (LexerListener listener : listeners) {
 			listener.newline(lineNumber);
 		}
@@ -128,18 +124,21 @@ public class Lexer {
 	
 			char behind = 0, ahead = 0, current = 0;
 			int val;
-			int index = 0;
+			int aheadOffset = -1;
 	
 			boolean eatToken = true;
-			identifier = new StringBuilder();
-			fireNewline();
+			StringBuilder source = new StringBuilder();
+			startScan(source);
 			
 			while ((val = br.read()) != -1) {
 				columnCount++;
+				aheadOffset++;
+				source.append((char) val);
 	
 				behind  = current;
 				current = ahead;
 				ahead   = (char) val;
+				currentOffset = aheadOffset - 1;
 	
 				if (eatToken) {
 					eatToken = false;
@@ -151,6 +150,7 @@ public class Lexer {
 	
 			// process last character
 			current = ahead;
+			currentOffset = aheadOffset;
 			processCharacter(ahead, current);
 		
 		} finally {
@@ -167,38 +167,88 @@ public class Lexer {
 	public void scan(String text) throws IOException {
 		
 		text += '\n';
-		char behind = 0, ahead = 0, current = 0;
-		int index = 0;
-
-		boolean eatToken 		  = true;
-		boolean skipNextCharacter = false;
 		
+		startScan(text);
+		columnCount = 0;
+		scanFrom(text, 0, null);
+	}
+	
+	/**
+	 * Checks, at the start of each line, whether a scan can stop. 
+	 */
+	public interface ILineStartCheck {
+		
+		/**
+		 * @param lineNumber the line about to be scanned.
+		 * @param lineStartOffset the source offset where that line starts.
+		 * @param inBlockComment the lexer state at the start of that line.
+		 * @return true if the scan should stop before that line.
+		 */
+		boolean shouldStop(int lineNumber, int lineStartOffset, boolean inBlockComment);
+		
+	}
+	
+	/**
+	 * Resume scanning the given source (which must end with a newline, like in {@link #scan(String)}) 
+	 * at the start of a line, with the given lexer state. The state at the start of a line is fully described
+	 * by the line number and whether the line starts inside a block comment.
+	 * 
+	 * The token buffer is not reset, tokens are appended to it.
+	 * 
+	 * @param stopCheck if non-null, checked at the start of each subsequent line, to stop the scan early.
+	 */
+	public void resumeScan(String source, int lineStartOffset, int lineNumber, boolean inBlockComment, 
+			ILineStartCheck stopCheck) {
+		tokenBuffer.setSource(source);
 		identifier = new StringBuilder();
+		this.lineNumber = lineNumber - 1;
+		this.lineStartOffset = lineStartOffset;
+		this.blockCommentState = inBlockComment;
 		fireNewline();
 		
-		for (char val : text.toCharArray()) {
-			columnCount++;
-
-			behind  = current;
-			current = ahead;
-			ahead   = val;
-
-			if (eatToken) {
-				eatToken = false;
-				continue;
+		columnCount = 0;
+		scanFrom(source, lineStartOffset, stopCheck);
+	}
+	
+	private void scanFrom(String text, int fromOffset, ILineStartCheck stopCheck) {
+		int length = text.length();
+		boolean skipNextCharacter = false;
+		
+		for (int i = fromOffset; i < length; i++) {
+			char current = text.charAt(i);
+			currentOffset = i;
+			
+			if (i == length - 1) {
+				// process last character
+				processCharacter(current, current);
+				break;
 			}
 			
+			columnCount++;
+			
 			if(skipNextCharacter){
 				skipNextCharacter = false;
+				continue;
+			}
 			
-			} else {
-				skipNextCharacter = processCharacter(ahead, current);
+			skipNextCharacter = processCharacter(text.charAt(i + 1), current);
+			
+			if (current == '\n' && stopCheck != null && 
+					stopCheck.shouldStop(lineNumber, lineStartOffset, blockCommentState)) {
+				return;
 			}
 		}
-
-		// process last character
-		current = ahead;
-		processCharacter(ahead, current);
+	}
+	
+	/**
+	 * Prepare the scan of given source. The token buffer is reset, it only holds the tokens of the last scan.
+	 */
+	private void startScan(CharSequence source) {
+		tokenBuffer.reset();
+		tokenBuffer.setSource(source);
+		lineStartOffset = 0;
+		identifier = new StringBuilder();
+		fireNewline();
 	}
 
 	/**
@@ -317,7 +367,7 @@ public class Lexer {
 
 		case '_':
 			if (Character.isJavaIdentifierPart(ahead)) {
-				identifier.append(current);
+				appendIdentifierChar(current);
 			} else {
 				fireTokenFound(TokenType.UNDERSCORE, TokenType.UNDERSCORE.op);
 			}
@@ -451,6 +501,7 @@ public class Lexer {
 		case '\n':
 			flush();
 			fireTokenFound(TokenType.NEWLINE, TokenType.NEWLINE.op);
+			lineStartOffset = currentOffset + 1;
 			fireNewline();
 			columnCount = 0;
 			break;
@@ -468,17 +519,24 @@ public class Lexer {
 			break;
 
 		default:
-			identifier.append(current);
+			appendIdentifierChar(current);
 			break;
 		}
 		
 		return false;
 	}
+	
+	private void appendIdentifierChar(char ch) {
+		if (identifier.length() == 0) {
+			identifierOffset = currentOffset;
+		}
+		identifier.append(ch);
+	}
 
 	public void flush() {
 		if (identifier.length() > 0) {
 			fireTokenFound(TokenType.IDENTIFIER, identifier.toString());
-			identifier = new StringBuilder();
+			identifier.setLength(0);
 		}
 	}
 
@@ -520,10 +578,18 @@ public class Lexer {
 	}
 
 	/**
-	 * @return the tokenStream
+	 * @return the tokens of the last scan, as a list of {@link TokenUnit}s. 
+	 * Prefer {@link #getTokenBuffer()}, which does not allocate per token.
 	 */
 	public List<TokenUnit> getTokenStream() {
-		return tokenStream;
+		return tokenBuffer.toTokenUnits();
+	}
+	
+	/**
+	 * @return the tokens of the last scan.
+	 */
+	public TokenBuffer getTokenBuffer() {
+		return tokenBuffer;
 	}
 
 	public void reset() {
@@ -0,0 +1,324 @@
+package com.googlecode.goclipse.go.lang.lexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, array-backed stream of tokens.
+ *
+ * Token types, flags, lines, columns and source offsets are stored in parallel int arrays, 
+ * so that recording a token does not allocate. The text of a token is materialized lazily: 
+ * either it is the fixed text of its {@link TokenType}, or it is a view on the lexed source.
+ *
+ * Start and end columns are the ones reported by the {@link Lexer} to its listeners.
+ */
+public class TokenBuffer {
+	
+	protected static final TokenType[] TOKEN_TYPES = TokenType.values();
+	
+	protected static final int TYPE_MASK        = 0xFFFF;
+	/** The token text is taken from the source, rather than from the token type. */
+	protected static final int FLAG_SOURCE_TEXT = 1 << 16;
+	protected static final int FLAG_IN_COMMENT  = 1 << 17;
+	
+	protected CharSequence source = "";
+	
+	protected int   size     = 0;
+	protected int[] kinds    = new int[256];
+	protected int[] lines    = new int[256];
+	protected int[] starts   = new int[256];
+	protected int[] ends     = new int[256];
+	protected int[] offsets  = new int[256];
+	
+	/** Source offset of the start of each line, indexed by (1-based) line number. */
+	protected int   lineCount      = 0;
+	protected int[] lineStarts     = new int[64];
+	/** Index of the first token of each line, indexed by (1-based) line number. */
+	protected int[] lineFirstToken = new int[64];
+	/** Lexer state at the start of each line, indexed by (1-based) line number. */
+	protected boolean[] lineInBlockComment = new boolean[64];
+	
+	public TokenBuffer() {
+	}
+	
+	public void reset() {
+		size = 0;
+		lineCount = 0;
+		source = "";
+	}
+	
+	public void setSource(CharSequence source) {
+		this.source = source;
+	}
+	
+	public CharSequence getSource() {
+		return source;
+	}
+	
+	/**
+	 * Record the start of a new line.
+	 * @param lineNumber 1-based line number.
+	 * @param lineStartOffset source offset where the line starts.
+	 * @param inBlockComment whether the line starts inside a block comment.
+	 */
+	public void newline(int lineNumber, int lineStartOffset, boolean inBlockComment) {
+		ensureLineCapacity(lineNumber + 1);
+		// Lines skipped (if the lexer line count was not reset) are recorded as empty.
+		for (int line = lineCount + 1; line <= lineNumber; line++) {
+			lineStarts[line]         = lineStartOffset;
+			lineFirstToken[line]     = size;
+			lineInBlockComment[line] = inBlockComment;
+		}
+		lineCount = lineNumber;
+	}
+	
+	protected void ensureLineCapacity(int capacity) {
+		if (capacity > lineStarts.length) {
+			int newLength = Math.max(lineStarts.length * 2, capacity);
+			lineStarts         = Arrays.copyOf(lineStarts, newLength);
+			lineFirstToken     = Arrays.copyOf(lineFirstToken, newLength);
+			lineInBlockComment = Arrays.copyOf(lineInBlockComment, newLength);
+		}
+	}
+	
+	protected void ensureTokenCapacity(int capacity) {
+		if (capacity > kinds.length) {
+			int newLength = Math.max(kinds.length * 2, capacity);
+			kinds   = Arrays.copyOf(kinds, newLength);
+			lines   = Arrays.copyOf(lines, newLength);
+			starts  = Arrays.copyOf(starts, newLength);
+			ends    = Arrays.copyOf(ends, newLength);
+			offsets = Arrays.copyOf(offsets, newLength);
+		}
+	}
+	
+	/**
+	 * Record a token.
+	 * @param fromSource whether the token's text is to be taken from the source,
+	 * as opposed to the fixed text of the token type.
+	 * @param offset the source offset of the token text.
+	 */
+	public void add(TokenType type, boolean fromSource, boolean inComment, int line, int start, int end, 
+			int offset) {
+		ensureTokenCapacity(size + 1);
+		int kind = type.ordinal();
+		if (fromSource) {
+			kind |= FLAG_SOURCE_TEXT;
+		}
+		if (inComment) {
+			kind |= FLAG_IN_COMMENT;
+		}
+		kinds[size]  = kind;
+		lines[size]  = line;
+		starts[size] = start;
+		ends[size]   = end;
+		offsets[size] = offset;
+		size++;
+	}
+	
+	/**
+	 * Re-classify the type of the token at given index. The token text is not affected.
+	 */
+	public void setType(int index, TokenType type) {
+		kinds[index] = (kinds[index] & ~TYPE_MASK) | type.ordinal();
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public int getLineCount() {
+		return lineCount;
+	}
+	
+	public TokenType getType(int index) {
+		return TOKEN_TYPES[kinds[index] & TYPE_MASK];
+	}
+	
+	public boolean isInComment(int index) {
+		return (kinds[index] & FLAG_IN_COMMENT) != 0;
+	}
+	
+	public int getLine(int index) {
+		return lines[index];
+	}
+	
+	public int getStart(int index) {
+		return starts[index];
+	}
+	
+	public int getEnd(int index) {
+		return ends[index];
+	}
+	
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+	
+	/**
+	 * @return the source offset where given (1-based) line starts.
+	 */
+	public int getLineStartOffset(int lineNumber) {
+		return lineStarts[lineNumber];
+	}
+	
+	/**
+	 * @return whether given (1-based) line starts inside a block comment.
+	 */
+	public boolean isLineInBlockComment(int lineNumber) {
+		return lineInBlockComment[lineNumber];
+	}
+	
+	/**
+	 * @return the (1-based) number of the line containing given source offset. 
+	 * Offsets past the last line start belong to the last line.
+	 */
+	public int getLineOfOffset(int offset) {
+		int low = 1;
+		int high = lineCount;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (lineStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * @return the number of the line starting exactly at given offset, or -1 if there is none.
+	 */
+	public int findLineStartingAt(int offset) {
+		if (lineCount == 0) {
+			return -1;
+		}
+		int line = getLineOfOffset(offset);
+		return lineStarts[line] == offset ? line : -1;
+	}
+	
+	/**
+	 * @return a copy of this buffer, with only the lines before given line, and their tokens.
+	 */
+	public TokenBuffer copyBeforeLine(int lineNumber) {
+		int keptLines = Math.min(lineNumber - 1, lineCount);
+		int tokens = keptLines < lineCount ? lineFirstToken[keptLines + 1] : size;
+		
+		TokenBuffer copy = new TokenBuffer();
+		copy.source = source;
+		copy.ensureTokenCapacity(tokens);
+		System.arraycopy(this.kinds, 0, copy.kinds, 0, tokens);
+		System.arraycopy(this.lines, 0, copy.lines, 0, tokens);
+		System.arraycopy(this.starts, 0, copy.starts, 0, tokens);
+		System.arraycopy(this.ends, 0, copy.ends, 0, tokens);
+		System.arraycopy(this.offsets, 0, copy.offsets, 0, tokens);
+		copy.size = tokens;
+		
+		copy.ensureLineCapacity(keptLines + 1);
+		System.arraycopy(this.lineStarts, 0, copy.lineStarts, 0, keptLines + 1);
+		System.arraycopy(this.lineFirstToken, 0, copy.lineFirstToken, 0, keptLines + 1);
+		System.arraycopy(this.lineInBlockComment, 0, copy.lineInBlockComment, 0, keptLines + 1);
+		copy.lineCount = keptLines;
+		return copy;
+	}
+	
+	/**
+	 * Append the tokens of the given buffer from given line onwards, to the line last recorded in this buffer
+	 * (which must correspond to the given line). Line numbers and offsets are adjusted with given deltas.
+	 */
+	public void appendFrom(TokenBuffer other, int fromLine, int offsetDelta) {
+		int lineDelta = this.lineCount - fromLine;
+		int fromToken = other.lineFirstToken[fromLine];
+		int count = other.size - fromToken;
+		
+		ensureTokenCapacity(size + count);
+		System.arraycopy(other.kinds, fromToken, kinds, size, count);
+		System.arraycopy(other.starts, fromToken, starts, size, count);
+		System.arraycopy(other.ends, fromToken, ends, size, count);
+		for (int i = 0; i < count; i++) {
+			lines[size + i]   = other.lines[fromToken + i] + lineDelta;
+			offsets[size + i] = other.offsets[fromToken + i] + offsetDelta;
+		}
+		int tokenDelta = size - fromToken;
+		size += count;
+		
+		int newLineCount = other.lineCount + lineDelta;
+		ensureLineCapacity(newLineCount + 1);
+		for (int line = fromLine + 1; line <= other.lineCount; line++) {
+			lineStarts[line + lineDelta]         = other.lineStarts[line] + offsetDelta;
+			lineFirstToken[line + lineDelta]     = other.lineFirstToken[line] + tokenDelta;
+			lineInBlockComment[line + lineDelta] = other.lineInBlockComment[line];
+		}
+		lineCount = newLineCount;
+	}
+	
+	/**
+	 * @return the text of the token at given index, as a view on the source (no copy is made).
+	 */
+	public CharSequence getTextView(int index) {
+		int kind = kinds[index];
+		if ((kind & FLAG_SOURCE_TEXT) == 0) {
+			return TOKEN_TYPES[kind & TYPE_MASK].op;
+		}
+		return source.subSequence(offsets[index], offsets[index] + ends[index] - starts[index]);
+	}
+	
+	/**
+	 * @return the text of the token at given index.
+	 */
+	public String getText(int index) {
+		return getTextView(index).toString();
+	}
+	
+	/**
+	 * @return the index of the first token of given (1-based) line, or {@link #size()} if there is no such line.
+	 */
+	public int getLineFirstTokenIndex(int lineNumber) {
+		if (lineNumber < 1 || lineNumber > lineCount) {
+			return size;
+		}
+		return lineFirstToken[lineNumber];
+	}
+	
+	/**
+	 * @return the index after the last token of given (1-based) line.
+	 */
+	public int getLineEndTokenIndex(int lineNumber) {
+		if (lineNumber < 1 || lineNumber >= lineCount) {
+			return size;
+		}
+		return lineFirstToken[lineNumber + 1];
+	}
+	
+	/**
+	 * Feed all tokens to given listener, in order, as if they were being lexed.
+	 */
+	public void replay(TokenListener listener) {
+		for (int i = 0; i < size; i++) {
+			listener.tokenFound(getType(i), getText(i), isInComment(i), lines[i], starts[i], ends[i]);
+		}
+	}
+	
+	/**
+	 * @return a {@link TokenUnit} for each token in given index range.
+	 */
+	public List<TokenUnit> toTokenUnits(int fromIndex, int toIndex) {
+		ArrayList<TokenUnit> units = new ArrayList<TokenUnit>(Math.max(toIndex - fromIndex, 0));
+		for (int i = fromIndex; i < toIndex; i++) {
+			TokenUnit unit = new TokenUnit();
+			unit.tokenType = getType(i);
+			unit.text      = getText(i);
+			unit.start     = starts[i];
+			unit.end       = ends[i];
+			units.add(unit);
+		}
+		return units;
+	}
+	
+	public List<TokenUnit> toTokenUnits() {
+		return toTokenUnits(0, size);
+	}
+	
+}
@@ -1,37 +1,29 @@
 package com.googlecode.goclipse.go.lang.parser;
 
-import java.util.ArrayList;
 import java.util.List;
 
-import com.googlecode.goclipse.go.lang.lexer.TokenType;
+import com.googlecode.goclipse.go.lang.lexer.TokenBuffer;
 import com.googlecode.goclipse.go.lang.lexer.TokenUnit;
 
 /**
+ * A line-indexed view of the tokens of a source file.
  * 
  * @author steel
  */
 public class TokenizedPage {
 	
-	ArrayList<ArrayList<TokenUnit>> page = 
-		new ArrayList<ArrayList<TokenUnit>>();
+	protected final TokenBuffer tokens;
 	
 	/**
 	 * 
 	 * @param tokens
 	 */
-	public TokenizedPage(List<TokenUnit> tokens) {
-		ArrayList<TokenUnit> list = new ArrayList<TokenUnit>();
-		
-		for(TokenUnit unit:tokens){
-			if(unit.tokenType.equals(TokenType.NEWLINE)){
-				list.add(unit);
-				page.add(list);
-				list = new ArrayList<TokenUnit>();
-			}
-			else{
-				list.add(unit);
-			}
-		}
+	public TokenizedPage(TokenBuffer tokens) {
+		this.tokens = tokens;
+	}
+	
+	public TokenBuffer getTokenBuffer() {
+		return tokens;
 	}
 	
 	/**
@@ -40,11 +32,7 @@ public class TokenizedPage {
 	 * @return
 	 */
 	public List<TokenUnit> getTokensForLine(int linenumber){
-		int zeroIndexedLineNumber = linenumber-1;
-		if(page.size() > zeroIndexedLineNumber){
-			return page.get(zeroIndexedLineNumber);
-		}
-		return new ArrayList<TokenUnit>();
+		return tokens.toTokenUnits(tokens.getLineFirstTokenIndex(linenumber), tokens.getLineEndTokenIndex(linenumber));
 	}
 
 }
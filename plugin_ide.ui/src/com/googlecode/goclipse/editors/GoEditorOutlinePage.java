@@ -1,15 +1,21 @@
 package com.googlecode.goclipse.editors;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import melnorme.utilbox.core.CoreUtil;
+import melnorme.utilbox.core.CommonException;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.viewers.DelegatingStyledCellLabelProvider;
@@ -46,8 +52,16 @@ import com.googlecode.goclipse.ui.views.GoImageProvider;
  * The outline page for the Go editor.
  */
 public class GoEditorOutlinePage extends ContentOutlinePage {
+	/** Delay used to coalesce bursts of refresh requests (reconciles, saves) into a single refresh. */
+	private static final long REFRESH_DELAY_MILLIS = 300;
+	
 	private IDocumentProvider documentProvider;
 	private GoEditor editor;
+	private IElementStateListener elementStateListener;
+	
+	private final OutlineRefreshJob refreshJob = new OutlineRefreshJob();
+	/** Incremented on each refresh request, so that results of earlier requests can be recognized as stale. */
+	private final AtomicInteger refreshRequestCount = new AtomicInteger();
 
 	/**
 	 * Create a new GoEditorOutlinePage.
@@ -74,16 +88,26 @@ public class GoEditorOutlinePage extends ContentOutlinePage {
 			}
 		});
 		
-		documentProvider.addElementStateListener(new AbstractElementStateListener() {
+		elementStateListener = new AbstractElementStateListener() {
 			@Override
 			public void elementDirtyStateChanged(Object element, boolean isDirty) {
 				if (!isDirty) {
 					refreshAsync();
 				}
 			}
-		});
+		};
+		documentProvider.addElementStateListener(elementStateListener);
 		
-		refresh();
+		refreshAsync();
+	}
+	
+	@Override
+	public void dispose() {
+		refreshJob.cancel();
+		if (elementStateListener != null) {
+			documentProvider.removeElementStateListener(elementStateListener);
+		}
+		super.dispose();
 	}
 
 	protected void handleEditorReconcilation() {
@@ -112,58 +136,177 @@ public class GoEditorOutlinePage extends ContentOutlinePage {
 		}
 	}
 
+	/**
+	 * Request a refresh of the outline. Can be called from any thread.
+	 * 
+	 * The outline is computed in a background job, after a short delay, so that a burst of requests 
+	 * results in a single computation. A computation in progress is cancelled, since its result would be stale.
+	 */
 	private void refreshAsync() {
-		Display.getDefault().asyncExec(new Runnable() {
-			@Override
-            public void run() {
-				refresh();
-			}
-		});
+		refreshRequestCount.incrementAndGet();
+		refreshJob.cancel();
+		refreshJob.schedule(REFRESH_DELAY_MILLIS);
 	}
 	
-	private void refresh() {
-		try {
-			if (!getTreeViewer().getControl().isDisposed()) {
-				IDocument document = documentProvider.getDocument(editor.getEditorInput());
-				
-				if (document != null) {
-					CodeContext codeContext = null;
-					
-					IEditorInput input = editor.getEditorInput();
-					
-					if (input instanceof IFileEditorInput) {
-						IFile file = ((IFileEditorInput)input).getFile();
-						
-						codeContext = CodeContext.getCodeContext(
-								file.getProject(),
-								file.getLocation().toOSString(),
-								document.get(), false);
-						
-					} else if (input instanceof FileStoreEditorInput) {
-						URI uri = ((FileStoreEditorInput)input).getURI();
-						
-						codeContext = CodeContext.getCodeContext(
-								new File(uri).getPath(), document.get(), false);
-					}
-					
-					if (codeContext != null) {
-						if (getTreeViewer().getInput() == null) {
-							getTreeViewer().setInput(codeContext);
-						} else {
-							OutlinePageContentProvider contentProvider =
-								(OutlinePageContentProvider)getTreeViewer().getContentProvider();
-							
-							contentProvider.setCodeContext(codeContext);
-						}
+	private boolean isControlDisposed() {
+		return getTreeViewer() == null || getTreeViewer().getControl().isDisposed();
+	}
+	
+	private class OutlineRefreshJob extends Job {
+		
+		public OutlineRefreshJob() {
+			super("Go outline refresh");
+			setSystem(true);
+		}
+		
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			final int requestCount = refreshRequestCount.get();
+			
+			// The document must be read in the UI thread, the parsing is done in this job.
+			final IEditorInput input = editor.getEditorInput();
+			final String[] documentText = new String[1];
+			Display.getDefault().syncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (!isControlDisposed()) {
+						IDocument document = documentProvider.getDocument(input);
+						documentText[0] = document == null ? null : document.get();
 					}
 				}
+			});
+			
+			if (documentText[0] == null || monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			
+			OutlineContents contents;
+			try {
+				CodeContext codeContext = createCodeContext(input, documentText[0]);
+				contents = codeContext == null ? null : new OutlineContents(codeContext);
+			} catch (Throwable exception) {
+				Activator.logError(exception);
+				contents = null;
+			}
+			
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
 			}
+			
+			final OutlineContents newContents = contents;
+			Display.getDefault().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					// Drop the result if another refresh was requested in the meanwhile.
+					if (requestCount == refreshRequestCount.get() && !isControlDisposed()) {
+						applyContents(newContents);
+					}
+				}
+			});
+			return Status.OK_STATUS;
 		}
-		catch (Throwable exception) {
-			Activator.logError(exception);
+		
+	}
+	
+	private static CodeContext createCodeContext(IEditorInput input, String documentText) 
+			throws IOException, CommonException {
+		if (input instanceof IFileEditorInput) {
+			IFile file = ((IFileEditorInput)input).getFile();
+			
+			return CodeContext.getCodeContext(
+					file.getProject(),
+					file.getLocation().toOSString(),
+					documentText, false);
+			
+		} else if (input instanceof FileStoreEditorInput) {
+			URI uri = ((FileStoreEditorInput)input).getURI();
 			
+			return CodeContext.getCodeContext(
+					new File(uri).getPath(), documentText, false);
+		}
+		return null;
+	}
+	
+	/** Apply new outline contents to the tree, in the UI thread. Null contents clear the tree. */
+	private void applyContents(OutlineContents contents) {
+		if (contents == null) {
 			getTreeViewer().setInput(null);
+			return;
+		}
+		
+		if (getTreeViewer().getInput() == null) {
+			getTreeViewer().setInput(contents);
+		} else {
+			OutlinePageContentProvider contentProvider =
+				(OutlinePageContentProvider)getTreeViewer().getContentProvider();
+			
+			contentProvider.setContents(contents);
+		}
+	}
+	
+	/**
+	 * The outline elements of a {@link CodeContext}, computed outside the UI thread.
+	 */
+	private static class OutlineContents {
+		
+		private final Object[] elements;
+		private final Object[] imports;
+		
+		public OutlineContents(CodeContext codeContext) {
+			List<Node> nodes = new ArrayList<Node>();
+			
+			nodes.addAll(codeContext.methods);
+			nodes.addAll(codeContext.types);
+			nodes.addAll(codeContext.functions);
+			//nodes.addAll(codeContext.vars);
+			
+			Collections.sort(nodes, new LineBasedComparator());
+			
+			List<Object> children = new ArrayList<Object>();
+			
+			if (codeContext.pkg != null) {
+				children.add(codeContext.pkg);
+			}
+			
+			if (codeContext.imports.size() > 0) {
+				children.add(IMPORT_CONTAINER);
+			}
+			
+			children.addAll(nodes);
+			
+			this.elements = children.toArray();
+			this.imports = codeContext.imports.toArray();
 		}
+		
+		/**
+		 * @return whether the outline shown for this and given contents would be the same:
+		 * same elements, with the same names and lines.
+		 */
+		public boolean isSameOutline(OutlineContents other) {
+			return isSameNodes(elements, other.elements) && isSameNodes(imports, other.imports);
+		}
+		
+		private static boolean isSameNodes(Object[] nodes, Object[] otherNodes) {
+			if (nodes.length != otherNodes.length) {
+				return false;
+			}
+			for (int i = 0; i < nodes.length; i++) {
+				Object node = nodes[i];
+				Object otherNode = otherNodes[i];
+				if (node instanceof Node && otherNode instanceof Node) {
+					if (!node.equals(otherNode) || ((Node)node).getLine() != ((Node)otherNode).getLine()) {
+						return false;
+					}
+					if (node instanceof Type && ((Type)node).getTypeClass() != ((Type)otherNode).getTypeClass()) {
+						return false; // Shown in the label
+					}
+				} else if (node != otherNode) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
 	}
 	
 	private static String[] splitFunctionName(String name) {
@@ -259,7 +402,7 @@ public class GoEditorOutlinePage extends ContentOutlinePage {
 		private Object[] NO_CHILDREN = new Object[0];
 		
 		private TreeViewer viewer;
-		private CodeContext codeContext;
+		private OutlineContents contents;
 		
 		public OutlinePageContentProvider() {
 			
@@ -268,44 +411,22 @@ public class GoEditorOutlinePage extends ContentOutlinePage {
 		@Override
 		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
 			this.viewer = (TreeViewer)viewer;
-			codeContext = (CodeContext)newInput;
+			contents = (OutlineContents)newInput;
 		}
 
-		public void setCodeContext(CodeContext inCodeContext) {
-			this.codeContext = inCodeContext;
-			
-			if (CoreUtil.areEqual(this.codeContext, inCodeContext)) {
-				viewer.refresh();
-			} else {
-				viewer.setInput(this.codeContext);
+		public void setContents(OutlineContents newContents) {
+			if (contents != null && contents.isSameOutline(newContents)) {
+				// Nothing visible changed, avoid refreshing the tree.
+				return;
 			}
+			this.contents = newContents;
+			viewer.refresh();
 		}
 
 		@Override
 		public Object[] getElements(Object inputElement) {
-			if (codeContext != null) {
-				List<Node> nodes = new ArrayList<Node>();
-
-				nodes.addAll(codeContext.methods);
-				nodes.addAll(codeContext.types);
-				nodes.addAll(codeContext.functions);
-				//nodes.addAll(codeContext.vars);
-				
-				Collections.sort(nodes, new LineBasedComparator());
-				
-				List<Object> children = new ArrayList<Object>();
-				
-				if (codeContext.pkg != null) {
-					children.add(codeContext.pkg);
-				}
-				
-				if (codeContext.imports.size() > 0) {
-					children.add(IMPORT_CONTAINER);
-				}
-
-				children.addAll(nodes);
-				
-				return children.toArray();
+			if (contents != null) {
+				return contents.elements;
 			} else {
 				return NO_CHILDREN;
 			}
@@ -318,8 +439,8 @@ public class GoEditorOutlinePage extends ContentOutlinePage {
 		
 		@Override
 		public Object[] getChildren(Object parentElement) {
-			if (parentElement == IMPORT_CONTAINER) {
-				return codeContext.imports.toArray();
+			if (parentElement == IMPORT_CONTAINER && contents != null) {
+				return contents.imports;
 			} else {
 				return NO_CHILDREN;
 			}
@@ -329,10 +450,10 @@ public class GoEditorOutlinePage extends ContentOutlinePage {
 		public Object getParent(Object element) {
 			if (element instanceof Import) {
 				return IMPORT_CONTAINER;
-			} else if (element instanceof CodeContext) {
+			} else if (element instanceof OutlineContents) {
 				return null;
 			} else {
-				return codeContext;
+				return contents;
 			}
 		}
 
@@ -0,0 +1,210 @@
+package com.googlecode.goclipse.search;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.search.internal.ui.text.FileMatch;
+import org.eclipse.search.internal.ui.text.FileSearchQuery;
+import org.eclipse.search.internal.ui.text.FileSearchResult;
+import org.eclipse.search.internal.ui.text.LineElement;
+import org.eclipse.search.ui.text.FileTextSearchScope;
+
+import com.googlecode.goclipse.core.GoCore;
+import com.googlecode.goclipse.go.index.GoSymbol;
+import com.googlecode.goclipse.go.index.GoSymbolIndex.MatchMode;
+import com.googlecode.goclipse.go.index.GoSymbolIndexer;
+
+/**
+ * A search for Go declarations by name, using the symbol index instead of scanning the files.
+ * Results are shown the same way as the ones of a text search.
+ * Search matches must be on workspace resources, so the index only covers the packages of the
+ * workspace projects.
+ */
+@SuppressWarnings("restriction")
+public class GoDeclarationSearchQuery extends FileSearchQuery {
+
+  private final String fPattern;
+  private final MatchMode fMatchMode;
+  private final boolean fIsCaseSensitive;
+  private final FileTextSearchScope fScope;
+
+  public GoDeclarationSearchQuery(String pattern, MatchMode matchMode, boolean isCaseSensitive,
+      FileTextSearchScope scope) {
+    super(pattern, false, isCaseSensitive, scope);
+    fPattern = pattern;
+    fMatchMode = matchMode;
+    fIsCaseSensitive = isCaseSensitive;
+    fScope = scope;
+  }
+
+  @Override
+  public String getLabel() {
+    return "Go Declaration Search";
+  }
+
+  @Override
+  public IStatus run(IProgressMonitor monitor) {
+    FileSearchResult searchResult = (FileSearchResult) getSearchResult();
+    searchResult.removeAll();
+
+    GoSymbolIndexer indexer = GoCore.getSymbolIndexer();
+    try {
+      indexer.awaitLoaded();
+    } catch (InterruptedException e) {
+      return Status.CANCEL_STATUS;
+    }
+    List<GoSymbol> symbols = indexer.getIndex().findSymbols(fPattern, fMatchMode, fIsCaseSensitive);
+    // Pick up files changed outside of Eclipse for the next search
+    indexer.requestUpdate();
+
+    // Group the symbols by file, so that each file is resolved and read once
+    LinkedHashMap<String, List<GoSymbol>> pathSymbols = new LinkedHashMap<String, List<GoSymbol>>();
+    for (GoSymbol symbol : symbols) {
+      List<GoSymbol> list = pathSymbols.get(symbol.filePath);
+      if (list == null) {
+        list = new ArrayList<GoSymbol>();
+        pathSymbols.put(symbol.filePath, list);
+      }
+      list.add(symbol);
+    }
+    LinkedHashMap<IFile, List<GoSymbol>> fileSymbols = new LinkedHashMap<IFile, List<GoSymbol>>();
+    for (Entry<String, List<GoSymbol>> entry : pathSymbols.entrySet()) {
+      IFile file = findFileInScope(entry.getKey());
+      if (file != null) {
+        fileSymbols.put(file, entry.getValue());
+      }
+    }
+
+    monitor.beginTask(getLabel(), fileSymbols.size());
+    for (Entry<IFile, List<GoSymbol>> entry : fileSymbols.entrySet()) {
+      if (monitor.isCanceled()) {
+        return Status.CANCEL_STATUS;
+      }
+      addMatches(searchResult, entry.getKey(), entry.getValue());
+      monitor.worked(1);
+    }
+    monitor.done();
+    return Status.OK_STATUS;
+  }
+
+  private IFile findFileInScope(String filePath) {
+    IFile[] files = ResourcesPlugin.getWorkspace().getRoot()
+        .findFilesForLocationURI(new File(filePath).toURI());
+    for (IFile file : files) {
+      if (file.isAccessible() && isInScope(file)) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  private boolean isInScope(IFile file) {
+    if (!fScope.matchesFileName(file.getName())) {
+      return false;
+    }
+    for (IResource root : fScope.getRoots()) {
+      if (root.getFullPath().isPrefixOf(file.getFullPath())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void addMatches(FileSearchResult searchResult, IFile file, List<GoSymbol> symbols) {
+    ArrayList<String> lines = new ArrayList<String>();
+    ArrayList<Integer> lineOffsets = new ArrayList<Integer>();
+    try {
+      readLines(file, lines, lineOffsets);
+    } catch (IOException e) {
+      return; // File was removed or can't be read, skip it
+    } catch (CoreException e) {
+      return;
+    }
+
+    for (GoSymbol symbol : symbols) {
+      int lineIndex = symbol.line - 1;
+      if (lineIndex < 0 || lineIndex >= lines.size()) {
+        continue; // The index is out of date
+      }
+      String line = lines.get(lineIndex);
+      int lineOffset = lineOffsets.get(lineIndex);
+      LineElement lineElement = new LineElement(file, symbol.line, lineOffset, line);
+
+      int nameIndex = indexOfIdentifier(line, symbol.name);
+      if (nameIndex == -1) {
+        searchResult.addMatch(new FileMatch(file, lineOffset, 0, lineElement));
+      } else {
+        searchResult.addMatch(new FileMatch(file, lineOffset + nameIndex, symbol.name.length(),
+            lineElement));
+      }
+    }
+  }
+
+  /**
+   * Reads the lines of given file (without line terminators) and the offsets where they start.
+   */
+  private static void readLines(IFile file, List<String> lines, List<Integer> lineOffsets)
+      throws IOException, CoreException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(file.getContents(true),
+        file.getCharset()));
+    try {
+      StringBuilder line = new StringBuilder();
+      int offset = 0;
+      int lineOffset = 0;
+      boolean skipLineFeed = false;
+      int ch;
+      while ((ch = reader.read()) != -1) {
+        offset++;
+        if (skipLineFeed) {
+          skipLineFeed = false;
+          if (ch == '\n') {
+            lineOffset = offset;
+            continue;
+          }
+        }
+        if (ch == '\r' || ch == '\n') {
+          skipLineFeed = ch == '\r';
+          lines.add(line.toString());
+          lineOffsets.add(lineOffset);
+          line.setLength(0);
+          lineOffset = offset;
+        } else {
+          line.append((char) ch);
+        }
+      }
+      lines.add(line.toString());
+      lineOffsets.add(lineOffset);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /** Returns the index of the first occurrence of name in line as a whole identifier, or -1. */
+  private static int indexOfIdentifier(String line, String name) {
+    int index = line.indexOf(name);
+    while (index != -1) {
+      int end = index + name.length();
+      boolean startsIdentifier = index == 0 || !Character.isJavaIdentifierPart(line.charAt(index - 1));
+      boolean endsIdentifier = end == line.length() || !Character.isJavaIdentifierPart(line.charAt(end));
+      if (startsIdentifier && endsIdentifier) {
+        return index;
+      }
+      index = line.indexOf(name, index + 1);
+    }
+    return -1;
+  }
+
+}
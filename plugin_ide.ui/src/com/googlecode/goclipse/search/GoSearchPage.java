@@ -48,6 +48,7 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
@@ -60,6 +61,8 @@ import org.eclipse.ui.fieldassist.ContentAssistCommandAdapter;
 import org.eclipse.ui.part.MultiPageEditorPart;
 import org.eclipse.ui.texteditor.ITextEditorActionDefinitionIds;
 
+import com.googlecode.goclipse.go.index.GoSymbolIndex.MatchMode;
+
 @SuppressWarnings("restriction")
 public class GoSearchPage extends DialogPage implements ISearchPage {
 
@@ -174,6 +177,8 @@ public class GoSearchPage extends DialogPage implements ISearchPage {
   private static final String PAGE_NAME = "GoSearchPage"; //$NON-NLS-1$
   private static final String STORE_CASE_SENSITIVE = "CASE_SENSITIVE"; //$NON-NLS-1$
   private static final String STORE_IS_REG_EX_SEARCH = "REG_EX_SEARCH"; //$NON-NLS-1$
+  private static final String STORE_IS_DECLARATION_SEARCH = "DECLARATION_SEARCH"; //$NON-NLS-1$
+  private static final String STORE_MATCH_MODE = "MATCH_MODE"; //$NON-NLS-1$
 
   private static final String STORE_HISTORY = "HISTORY"; //$NON-NLS-1$
 
@@ -185,9 +190,14 @@ public class GoSearchPage extends DialogPage implements ISearchPage {
   private boolean fIsCaseSensitive;
 
   private boolean fIsRegExSearch;
+  private boolean fIsDeclarationSearch;
+  private MatchMode fMatchMode = MatchMode.CAMEL_CASE;
   private Combo fPattern;
   private Button fIsCaseSensitiveCheckbox;
   private Button fIsRegExCheckbox;
+  private Button fTextSearchRadio;
+  private Button fDeclarationSearchRadio;
+  private Combo fMatchModeCombo;
 
   private CLabel fStatusLabel;
 
@@ -208,6 +218,8 @@ public class GoSearchPage extends DialogPage implements ISearchPage {
     result.setLayout(layout);
 
     addTextPatternControls(result);
+    addSearchForControls(result);
+    updateSearchForControls();
 
     setControl(result);
     Dialog.applyDialogFont(result);
@@ -321,7 +333,7 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
   }
   
   final void updateOKStatus() {
-    boolean regexStatus = validateRegex();
+    boolean regexStatus = fIsDeclarationSearch ? validateDeclarationPattern() : validateRegex();
 
     getContainer().setPerformActionEnabled(regexStatus);
   }
@@ -403,6 +415,60 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
     fIsRegExCheckbox.setFont(group.getFont());
   }
 
+  private void addSearchForControls(Composite parent) {
+    Group group = new Group(parent, SWT.NONE);
+    group.setText("Search for");
+    group.setLayout(new GridLayout(4, false));
+    group.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+    group.setFont(parent.getFont());
+
+    SelectionAdapter searchForListener = new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent e) {
+        fIsDeclarationSearch = fDeclarationSearchRadio.getSelection();
+        updateSearchForControls();
+        updateOKStatus();
+      }
+    };
+
+    fTextSearchRadio = new Button(group, SWT.RADIO);
+    fTextSearchRadio.setText("T&ext");
+    fTextSearchRadio.setSelection(!fIsDeclarationSearch);
+    fTextSearchRadio.addSelectionListener(searchForListener);
+    fTextSearchRadio.setFont(parent.getFont());
+
+    fDeclarationSearchRadio = new Button(group, SWT.RADIO);
+    fDeclarationSearchRadio.setText("Go &declarations");
+    fDeclarationSearchRadio.setSelection(fIsDeclarationSearch);
+    fDeclarationSearchRadio.addSelectionListener(searchForListener);
+    fDeclarationSearchRadio.setFont(parent.getFont());
+
+    Label label = new Label(group, SWT.LEAD);
+    label.setText("&Match:");
+    label.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false, 1, 1));
+    label.setFont(parent.getFont());
+
+    fMatchModeCombo = new Combo(group, SWT.READ_ONLY);
+    fMatchModeCombo.setItems(new String[] {"Exact name", "Name prefix", "Camel case", "Substring"});
+    fMatchModeCombo.select(fMatchMode.ordinal());
+    fMatchModeCombo.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent e) {
+        fMatchMode = MatchMode.values()[fMatchModeCombo.getSelectionIndex()];
+      }
+    });
+    fMatchModeCombo.setFont(parent.getFont());
+  }
+
+  /**
+   * Declaration searches match names with the selected match mode: regular expressions don't apply.
+   */
+  private void updateSearchForControls() {
+    fMatchModeCombo.setEnabled(fIsDeclarationSearch);
+    fIsRegExCheckbox.setEnabled(!fIsDeclarationSearch);
+    fPatterFieldContentAssist.setEnabled(fIsRegExSearch && !fIsDeclarationSearch);
+  }
+
   private SearchPatternData findInPrevious(String pattern) {
     for (SearchPatternData element : fPreviousSearchPatterns) {
       if (pattern.equals(element.textPattern)) {
@@ -538,7 +604,7 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
     fIsRegExSearch = patternData.isRegExSearch;
     fIsRegExCheckbox.setSelection(fIsRegExSearch);
     fPattern.setText(patternData.textPattern);
-    fPatterFieldContentAssist.setEnabled(fIsRegExSearch);
+    fPatterFieldContentAssist.setEnabled(fIsRegExSearch && !fIsDeclarationSearch);
     if (patternData.workingSets != null) {
       getContainer().setSelectedWorkingSets(patternData.workingSets);
     } else {
@@ -596,6 +662,10 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
 
   private ISearchQuery newQuery() throws CoreException {
     SearchPatternData data = getPatternData();
+    if (fIsDeclarationSearch) {
+      return new GoDeclarationSearchQuery(data.textPattern.trim(), fMatchMode, data.isCaseSensitive,
+          createTextSearchScope());
+    }
     TextSearchPageInput input = new TextSearchPageInput(data.textPattern, data.isCaseSensitive,
         data.isRegExSearch, createTextSearchScope());
     return TextSearchQueryProvider.getPreferred().createQuery(input);
@@ -608,6 +678,15 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
     IDialogSettings s = getDialogSettings();
     fIsCaseSensitive = s.getBoolean(STORE_CASE_SENSITIVE);
     fIsRegExSearch = s.getBoolean(STORE_IS_REG_EX_SEARCH);
+    fIsDeclarationSearch = s.getBoolean(STORE_IS_DECLARATION_SEARCH);
+    try {
+      String matchMode = s.get(STORE_MATCH_MODE);
+      if (matchMode != null) {
+        fMatchMode = MatchMode.valueOf(matchMode);
+      }
+    } catch (IllegalArgumentException e) {
+      // ignore
+    }
 
     try {
       int historySize = s.getInt(STORE_HISTORY_SIZE);
@@ -634,6 +713,15 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
     }
   }
 
+  private boolean validateDeclarationPattern() {
+    if (fPattern.getText().trim().isEmpty()) {
+      statusMessage(false, "(Enter a declaration name)");
+      return false;
+    }
+    statusMessage(false, "(Camel case: NBR matches NewBufferedReader)");
+    return true;
+  }
+
   private boolean validateRegex() {
     if (fIsRegExCheckbox.getSelection()) {
       try {
@@ -661,6 +749,8 @@ private static boolean isOldSearchView(IWorkbenchPart part) {
     IDialogSettings s = getDialogSettings();
     s.put(STORE_CASE_SENSITIVE, fIsCaseSensitive);
     s.put(STORE_IS_REG_EX_SEARCH, fIsRegExSearch);
+    s.put(STORE_IS_DECLARATION_SEARCH, fIsDeclarationSearch);
+    s.put(STORE_MATCH_MODE, fMatchMode.name());
 
     int historySize = Math.min(fPreviousSearchPatterns.size(), HISTORY_SIZE);
     s.put(STORE_HISTORY_SIZE, historySize);
@@ -8,6 +8,7 @@ import java.util.List;
 
 import melnorme.lang.ide.core.LangCore;
 import melnorme.lang.ide.core.operations.TimeoutProgressMonitor;
+import melnorme.lang.ide.core.utils.process.EclipseCancelMonitor;
 import melnorme.lang.ide.ui.LangImageProvider;
 import melnorme.lang.ide.ui.editor.EditorUtils;
 import melnorme.lang.ide.ui.editor.actions.SourceOperationContext;
@@ -23,6 +24,7 @@ import melnorme.utilbox.process.ExternalProcessHelper.ExternalProcessResult;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.contentassist.CompletionProposal;
@@ -35,6 +37,8 @@ import com.googlecode.goclipse.core.GoProjectEnvironment;
 import com.googlecode.goclipse.core.tools.GocodeServerManager;
 import com.googlecode.goclipse.tooling.env.GoEnvironment;
 import com.googlecode.goclipse.tooling.gocode.GocodeCompletionOperation;
+import com.googlecode.goclipse.tooling.gocode.GocodeDaemonClient;
+import com.googlecode.goclipse.tooling.gocode.GocodeLibPathTracker;
 import com.googlecode.goclipse.ui.GoPluginImages;
 import com.googlecode.goclipse.ui.GoUIPlugin;
 
@@ -50,32 +54,72 @@ public class GocodeCompletionProposalComputer extends LangCompletionProposalComp
 		
 		String prefix = lastWord(document, offset);
 		
-		GoUIPlugin.prepareGocodeManager_inUI();
+		GocodeServerManager gocodeServerManager = GoUIPlugin.prepareGocodeManager_inUI();
 		IPath gocodePath = GocodeServerManager.getGocodePath();
 		if (gocodePath == null) {
 			throw LangCore.createCoreException("Error: gocode path not provided.", null);
 		}
 		IProject project = getProjectFor(editor);
 		
-		GoEnvironment goEnvironment = GoProjectEnvironment.getGoEnvironment(project);
+		final GoEnvironment goEnvironment = GoProjectEnvironment.getGoEnvironment(project);
+		final String filePath = fileLoc.toPathString();
+		final String bufferText = document.get();
+		final String gocodePathString = gocodePath.toOSString();
+		final GocodeLibPathTracker libPathTracker = gocodeServerManager.getLibPathTracker();
+		final GocodeDaemonClient daemonClient = gocodeServerManager.getDaemonClient();
 		
-		// TODO: we should run this operation outside the UI thread.
-		GocodeCompletionOperation client = new GocodeCompletionOperation(
-			getProcessRunner(pm), goEnvironment, gocodePath.toOSString());
-		
-		ExternalProcessResult processResult = client.execute(fileLoc.toPathString(), document.get(), offset);
-		String stdout = processResult.getStdOutBytes().toString(StringUtil.UTF8);
-		List<String> completions = new ArrayList2<>(GocodeCompletionOperation.LINE_SPLITTER.split(stdout));
+		// gocode runs in a worker thread. A previous request is reused if the user only extended the prefix,
+		// otherwise it is cancelled.
+		GocodeCompletionRequest request = GocodeCompletionRequest.obtainRequest(filePath, bufferText, offset, prefix,
+			new GocodeCompletionRequest.ICompletionFunction() {
+				@Override
+				public List<String> computeCompletions(IProgressMonitor requestPM) 
+						throws CommonException, OperationCancellation {
+					GocodeCompletionOperation client = new GocodeCompletionOperation(
+						getProcessRunner(requestPM), goEnvironment, gocodePathString, libPathTracker);
+					
+					try {
+						return client.executeWithDaemon(daemonClient, filePath, bufferText, offset, 
+							new EclipseCancelMonitor(requestPM));
+					} catch(CommonException ce) {
+						// The daemon might not be running yet (the gocode client starts it), 
+						// or be of an incompatible version: use the gocode client.
+					}
+					
+					ExternalProcessResult processResult = client.execute(filePath, bufferText, offset);
+					// Split the output into lines without making a String copy of the whole output
+					ArrayList2<String> completions = new ArrayList2<>();
+					for (String line : processResult.getStdOutBytes().lines(StringUtil.UTF8)) {
+						completions.add(line);
+					}
+					return completions;
+				}
+			});
+		List<String> completions = request.awaitResult(pm);
+		boolean isReusedRequest = !request.getPrefix().equals(prefix);
 		
 		ArrayList<ICompletionProposal> results = new ArrayList<ICompletionProposal>();
 		
 		for (String completionEntry : completions) {
+			if (isReusedRequest && !matchesPrefix(completionEntry, prefix)) {
+				continue;
+			}
 			handleResult(offset, /*codeContext,*/ results, prefix, completionEntry);
 		}
 		
 		return results;
 	}
 	
+	/** @return whether the identifier of given gocode completion entry starts with given prefix. */
+	protected static boolean matchesPrefix(String completionEntry, String prefix) {
+		int firstComma = completionEntry.indexOf(",,");
+		if (firstComma == -1) {
+			return false;
+		}
+		int identifierStart = firstComma + 2;
+		return completionEntry.regionMatches(true, identifierStart, prefix, 0, prefix.length());
+	}
+	
 	@Override
 	protected LangCompletionResult doComputeProposals(SourceOperationContext context, int offset,
 			TimeoutProgressMonitor pm) throws CoreException, CommonException, OperationCancellation {
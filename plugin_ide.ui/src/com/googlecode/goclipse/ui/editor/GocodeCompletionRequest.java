@@ -0,0 +1,152 @@
+package com.googlecode.goclipse.ui.editor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import melnorme.lang.ide.core.operations.TimeoutProgressMonitor;
+import melnorme.utilbox.concurrency.NamingThreadFactory;
+import melnorme.utilbox.concurrency.OperationCancellation;
+import melnorme.utilbox.core.CommonException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A gocode completion request, run in a worker thread.
+ *
+ * The result of a request can be reused for a later completion at the same position, if the only change
+ * to the buffer is the completion prefix being extended (the user kept typing the identifier).
+ * A request that cannot be reused is stale: it is cancelled, killing the gocode process if it is still running.
+ */
+public class GocodeCompletionRequest {
+	
+	/** Limit for a request running in the background, after the UI has stopped waiting for it. */
+	public static final int MAX_REQUEST_MILLIS = 30_000;
+	
+	protected static final ExecutorService executor = Executors.newCachedThreadPool(
+		new NamingThreadFactory("Gocode completion"));
+	
+	/** The latest request, possibly still running. Shared by all editors. */
+	protected static GocodeCompletionRequest latestRequest;
+	
+	/** Worker function of a request. */
+	public interface ICompletionFunction {
+		
+		/** @return the gocode completion entries, one per line of output. */
+		List<String> computeCompletions(IProgressMonitor pm) throws CommonException, OperationCancellation;
+		
+	}
+	
+	/**
+	 * @return a request for a completion at given offset of given buffer, with given prefix before the offset.
+	 * This is the latest request if it can be reused, otherwise a new request, started with given function.
+	 */
+	public static synchronized GocodeCompletionRequest obtainRequest(String filePath, String bufferText,
+			int offset, String prefix, ICompletionFunction completionFunction) {
+		if(latestRequest != null) {
+			if(latestRequest.canBeReusedFor(filePath, bufferText, offset, prefix)) {
+				return latestRequest;
+			}
+			latestRequest.cancel();
+		}
+		latestRequest = new GocodeCompletionRequest(filePath, bufferText, offset, prefix, completionFunction);
+		executor.execute(latestRequest.future);
+		return latestRequest;
+	}
+	
+	protected final String filePath;
+	protected final String bufferText;
+	protected final int offset;
+	protected final String prefix;
+	protected final TimeoutProgressMonitor requestMonitor = new TimeoutProgressMonitor(MAX_REQUEST_MILLIS);
+	protected final FutureTask<List<String>> future;
+	
+	protected GocodeCompletionRequest(String filePath, String bufferText, int offset, String prefix,
+			final ICompletionFunction completionFunction) {
+		this.filePath = filePath;
+		this.bufferText = bufferText;
+		this.offset = offset;
+		this.prefix = prefix;
+		this.future = new FutureTask<>(new Callable<List<String>>() {
+			@Override
+			public List<String> call() throws Exception {
+				return completionFunction.computeCompletions(requestMonitor);
+			}
+		});
+	}
+	
+	public String getPrefix() {
+		return prefix;
+	}
+	
+	protected boolean canBeReusedFor(String otherFilePath, String otherBufferText, int otherOffset,
+			String otherPrefix) {
+		if(future.isCancelled() || isFailed()) {
+			return false;
+		}
+		int start = offset - prefix.length();
+		if(otherOffset - otherPrefix.length() != start || !otherPrefix.startsWith(prefix) ||
+				!filePath.equals(otherFilePath)) {
+			return false;
+		}
+		int tailLength = bufferText.length() - offset;
+		return otherBufferText.length() - otherOffset == tailLength &&
+				otherBufferText.regionMatches(0, bufferText, 0, start) &&
+				otherBufferText.regionMatches(otherOffset, bufferText, offset, tailLength);
+	}
+	
+	protected boolean isFailed() {
+		if(!future.isDone()) {
+			return false;
+		}
+		try {
+			future.get();
+			return false;
+		} catch(InterruptedException | ExecutionException e) {
+			return true;
+		}
+	}
+	
+	public void cancel() {
+		requestMonitor.setCanceled(true);
+		future.cancel(false);
+	}
+	
+	/**
+	 * Wait for the result of this request. If given monitor is cancelled, stop waiting,
+	 * but leave the request running, so that its result can still be reused by a later completion.
+	 */
+	public List<String> awaitResult(IProgressMonitor pm) throws CommonException, OperationCancellation {
+		while(true) {
+			if(pm.isCanceled()) {
+				throw new OperationCancellation();
+			}
+			try {
+				return future.get(50, TimeUnit.MILLISECONDS);
+			} catch(TimeoutException e) {
+				continue;
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCancellation();
+			} catch(CancellationException e) {
+				throw new OperationCancellation();
+			} catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof CommonException) {
+					throw (CommonException) cause;
+				}
+				if(cause instanceof OperationCancellation) {
+					throw (OperationCancellation) cause;
+				}
+				throw new CommonException("Error running gocode: " + cause, cause);
+			}
+		}
+	}
+	
+}
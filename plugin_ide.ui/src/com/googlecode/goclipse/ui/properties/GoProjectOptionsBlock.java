@@ -13,6 +13,8 @@ package com.googlecode.goclipse.ui.properties;
 import melnorme.lang.ide.ui.fields.ArgumentsGroupField;
 import melnorme.lang.ide.ui.utils.UIOperationExceptionHandler;
 import melnorme.util.swt.components.AbstractComponentExt;
+import melnorme.util.swt.components.fields.CheckBoxField;
+import melnorme.util.swt.components.fields.SpinnerNumberField;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jface.layout.GridDataFactory;
@@ -28,6 +30,10 @@ public class GoProjectOptionsBlock extends AbstractComponentExt {
 	
 	protected final ArgumentsGroupField buildExtraOptionsField = new ArgumentsGroupField(
 		"Arguments for 'go build'");
+	protected final CheckBoxField parallelBuildField = new CheckBoxField(
+		"Build each package in a separate job, running jobs in parallel");
+	protected final SpinnerNumberField parallelJobsField = new SpinnerNumberField(
+		"Maximum parallel jobs (0 for the number of processors):");
 	
 	public GoProjectOptionsBlock() {
 	}
@@ -41,12 +47,19 @@ public class GoProjectOptionsBlock extends AbstractComponentExt {
 	protected void createContents(Composite topControl) {
 		buildExtraOptionsField.createComponent(topControl,
 			GridDataFactory.fillDefaults().grab(true, false).hint(200, SWT.DEFAULT).create());
+		parallelBuildField.createComponent(topControl,
+			GridDataFactory.fillDefaults().grab(true, false).create());
+		parallelJobsField.createComponent(topControl,
+			GridDataFactory.fillDefaults().grab(true, false).indent(20, 0).create());
+		parallelJobsField.setValueMinimum(0).setValueMaximum(256);
 	}
 	
 	@Override
 	public void updateComponentFromInput() {
 		if(project != null) {
 			buildExtraOptionsField.setFieldValue(GoProjectPrefConstants.GO_BUILD_OPTIONS.get(project));
+			parallelBuildField.setFieldValue(GoProjectPrefConstants.PARALLEL_PACKAGE_BUILD.get(project));
+			parallelJobsField.setFieldValue(GoProjectPrefConstants.PARALLEL_BUILD_JOBS.get(project));
 		}
 	}
 	
@@ -62,6 +75,8 @@ public class GoProjectOptionsBlock extends AbstractComponentExt {
 		}
 		try {
 			GoProjectPrefConstants.GO_BUILD_OPTIONS.set(project, buildExtraOptionsField.getFieldValue());
+			GoProjectPrefConstants.PARALLEL_PACKAGE_BUILD.set(project, parallelBuildField.getFieldValue());
+			GoProjectPrefConstants.PARALLEL_BUILD_JOBS.set(project, parallelJobsField.getFieldValue());
 		} catch (BackingStoreException e) {
 			UIOperationExceptionHandler.handleError("Error saving preferences.", e);
 		}
@@ -70,6 +85,8 @@ public class GoProjectOptionsBlock extends AbstractComponentExt {
 	
 	public void restoreDefaults() {
 		buildExtraOptionsField.setFieldValue(GoProjectPrefConstants.GO_BUILD_OPTIONS.getDefault());
+		parallelBuildField.setFieldValue(GoProjectPrefConstants.PARALLEL_PACKAGE_BUILD.getDefault());
+		parallelJobsField.setFieldValue(GoProjectPrefConstants.PARALLEL_BUILD_JOBS.getDefault());
 	}
 	
 }
\ No newline at end of file
@@ -11,10 +11,11 @@ import org.eclipse.jface.text.rules.IRule;
 import org.eclipse.jface.text.rules.IToken;
 import org.eclipse.jface.text.rules.Token;
 import org.eclipse.jface.text.rules.WhitespaceRule;
-import org.eclipse.jface.text.rules.WordRule;
 
 import _org.eclipse.cdt.ui.text.ITokenStoreFactory;
 
+import com.googlecode.goclipse.go.lang.lexer.GoKeywordTable;
+import com.googlecode.goclipse.go.lang.lexer.GoKeywordTable.Category;
 import com.googlecode.goclipse.ui.GoUIPreferenceConstants;
 
 public class GoScanner extends AbstractLangScanner {
@@ -40,8 +41,6 @@ public class GoScanner extends AbstractLangScanner {
 		
 		final IToken tkDefault = getToken(GoUIPreferenceConstants.SYNTAX_COLORING__TEXT.key);
 		
-		WordRule wordRule = new WordRule(new JavaWordDetector(), tkDefault);
-		
 		final IToken keyword         = getToken(GoUIPreferenceConstants.SYNTAX_COLORING__KEYWORD.key);
 		final IToken value           = getToken(GoUIPreferenceConstants.SYNTAX_COLORING__VALUE.key);
 		final IToken primitive       = getToken(GoUIPreferenceConstants.SYNTAX_COLORING__PRIMITIVE.key);
@@ -49,75 +48,8 @@ public class GoScanner extends AbstractLangScanner {
 		final IToken textToken       = getToken(GoUIPreferenceConstants.SYNTAX_COLORING__TEXT.key);
 		setDefaultReturnToken(textToken);
 		
-		// add tokens for each reserved word
-		wordRule.addWord("break",       keyword);
-		wordRule.addWord("default",     keyword);
-		wordRule.addWord("func",        keyword);
-		wordRule.addWord("interface",   keyword);
-		wordRule.addWord("select",      keyword);
-		wordRule.addWord("case",        keyword);
-		wordRule.addWord("defer",       keyword);
-		wordRule.addWord("go",          keyword);
-		wordRule.addWord("map",         keyword);
-		wordRule.addWord("struct",      keyword);
-		wordRule.addWord("chan",        keyword);
-		wordRule.addWord("else",        keyword);
-		wordRule.addWord("goto",        keyword);
-		wordRule.addWord("package",     keyword);
-		wordRule.addWord("switch",      keyword);
-		wordRule.addWord("const",       keyword);
-		wordRule.addWord("fallthrough", keyword);
-		wordRule.addWord("if",          keyword);
-		wordRule.addWord("range",       keyword);
-		wordRule.addWord("type",        keyword);
-		wordRule.addWord("continue",    keyword);
-		wordRule.addWord("for",         keyword);
-		wordRule.addWord("import",      keyword);
-		wordRule.addWord("return",      keyword);
-		wordRule.addWord("var",         keyword);
-		
-		wordRule.addWord("append",  builtinFunction);
-		wordRule.addWord("cap",     builtinFunction);
-		wordRule.addWord("close",   builtinFunction);
-		wordRule.addWord("complex", builtinFunction);
-		wordRule.addWord("copy",    builtinFunction);
-		wordRule.addWord("delete",  builtinFunction);
-		wordRule.addWord("imag",    builtinFunction);
-		wordRule.addWord("len",     builtinFunction);
-		wordRule.addWord("make",    builtinFunction);
-		wordRule.addWord("new",     builtinFunction);
-		wordRule.addWord("panic",   builtinFunction);
-		wordRule.addWord("print",   builtinFunction);
-		wordRule.addWord("println", builtinFunction);
-		wordRule.addWord("real",    builtinFunction);
-		wordRule.addWord("recover", builtinFunction);
-		
-		wordRule.addWord("nil",   value);
-		wordRule.addWord("true",  value);
-		wordRule.addWord("false", value);
-		wordRule.addWord("iota",  value);
-		
-		wordRule.addWord("uint8", primitive);
-		wordRule.addWord("uint16", primitive);
-		wordRule.addWord("uint32", primitive);
-		wordRule.addWord("uint64", primitive);
-		wordRule.addWord("int8", primitive);
-		wordRule.addWord("int16", primitive);
-		wordRule.addWord("int32", primitive);
-		wordRule.addWord("int64", primitive);
-		wordRule.addWord("float32", primitive);
-		wordRule.addWord("float64", primitive);
-		wordRule.addWord("complex64",  primitive);
-		wordRule.addWord("complex128", primitive);
-		wordRule.addWord("rune",       primitive);
-		wordRule.addWord("byte",       primitive);
-		wordRule.addWord("uint",       primitive);
-		wordRule.addWord("int",        primitive);
-		wordRule.addWord("uintptr",    primitive);
-		
-		wordRule.addWord("string", primitive);
-		wordRule.addWord("bool",   primitive);
-		wordRule.addWord("error",  primitive);
+		// reserved words are classified through the table shared with the model tokenizer
+		GoWordRule wordRule = new GoWordRule(tkDefault, keyword, builtinFunction, value, primitive);
 		
 		rules.add(wordRule);
 		
@@ -127,6 +59,59 @@ public class GoScanner extends AbstractLangScanner {
 		setRules(rules);
 	}
 	
+	/**
+	 * Word rule that classifies words with {@link GoKeywordTable}.
+	 * Like a {@link org.eclipse.jface.text.rules.WordRule} with a default token: every word is consumed.
+	 */
+	public static class GoWordRule implements IRule {
+		
+		protected final IToken defaultToken;
+		protected final IToken keywordToken;
+		protected final IToken builtinFunctionToken;
+		protected final IToken valueToken;
+		protected final IToken primitiveToken;
+		
+		protected final StringBuilder buffer = new StringBuilder();
+		
+		public GoWordRule(IToken defaultToken, IToken keywordToken, IToken builtinFunctionToken, 
+				IToken valueToken, IToken primitiveToken) {
+			this.defaultToken = defaultToken;
+			this.keywordToken = keywordToken;
+			this.builtinFunctionToken = builtinFunctionToken;
+			this.valueToken = valueToken;
+			this.primitiveToken = primitiveToken;
+		}
+		
+		@Override
+		public IToken evaluate(ICharacterScanner scanner) {
+			int ch = scanner.read();
+			if(ch == ICharacterScanner.EOF || !Character.isJavaIdentifierPart(ch)) {
+				scanner.unread();
+				return Token.UNDEFINED;
+			}
+			
+			buffer.setLength(0);
+			do {
+				buffer.append((char) ch);
+				ch = scanner.read();
+			} while(ch != ICharacterScanner.EOF && Character.isJavaIdentifierPart(ch));
+			scanner.unread();
+			
+			Category category = GoKeywordTable.getCategory(buffer);
+			if(category == null) {
+				return defaultToken;
+			}
+			switch (category) {
+			case KEYWORD: return keywordToken;
+			case BUILTIN_FUNCTION: return builtinFunctionToken;
+			case VALUE: return valueToken;
+			case PRIMITIVE: return primitiveToken;
+			}
+			return defaultToken;
+		}
+		
+	}
+	
 	public static class GoOperatorRule extends DefaultPredicateRule {
 		
 		public GoOperatorRule(IToken token) {
@@ -12,6 +12,7 @@ package com.googlecode.goclipse.tooling;
 
 import static melnorme.lang.tests.LangToolingTestResources.getTestResourcePath;
 import static melnorme.utilbox.core.Assert.AssertNamespace.assertFail;
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
 import static melnorme.utilbox.core.CoreUtil.listFrom;
 
 import java.nio.file.Path;
@@ -22,10 +23,14 @@ import java.util.regex.Pattern;
 import melnorme.lang.tooling.data.StatusLevel;
 import melnorme.lang.tooling.ops.SourceLineColumnRange;
 import melnorme.lang.tooling.ops.ToolSourceMessage;
+import melnorme.utilbox.collections.ArrayList2;
 import melnorme.utilbox.core.CommonException;
+import melnorme.utilbox.misc.StringUtil;
 
 import org.junit.Test;
 
+import com.googlecode.goclipse.tooling.GoBuildOutputProcessor.IncrementalParser;
+
 
 public class GoBuildOutputProcessorTest extends CommonGoToolingTest {
 	
@@ -83,12 +88,34 @@ public class GoBuildOutputProcessorTest extends CommonGoToolingTest {
 		testParseError(buildProcessor,
 			OUTPUT_B,
 			OUTPUTB_Errors);
+		
+		testParseError(buildProcessor, 
+			"# pack\r\nC:\\dev\\foo.go:12:3: undefined: x\r\n\tmore\nfoo.go:7: é\n\tmore: 1", 
+			listFrom(
+				error(path("C:\\dev\\foo.go"), 12, 3, "undefined: x\n\tmore"),
+				error(path("foo.go"), 7, -1, "é\n\tmore: 1")
+			)
+		);
 	}
 	
 	protected void testParseError(GoBuildOutputProcessor buildProcessor, String stderr, List<?> expected) 
 			throws CommonException {
 		buildProcessor.parseMessages(stderr);
 		assertEquals(buildProcessor.getBuildErrors(), expected);
+		
+		// Test incremental parsing, with chunks that split lines and multi-byte characters
+		byte[] stderrBytes = stderr.getBytes(StringUtil.UTF8);
+		for (int chunkSize : new int[] { 1, 3, 64 }) {
+			IncrementalParser parser = buildProcessor.createIncrementalParser();
+			ArrayList2<ToolSourceMessage> messages = new ArrayList2<>();
+			for (int offset = 0; offset < stderrBytes.length; offset += chunkSize) {
+				parser.notifyStdErrListeners(stderrBytes, offset, Math.min(chunkSize, stderrBytes.length - offset));
+				messages.addAll(parser.takeNewMessages());
+			}
+			parser.finish();
+			messages.addAll(parser.takeNewMessages());
+			assertEquals(messages, expected);
+		}
 	}
 	
 	protected String readTemplatedFiled(Path filePath) {
@@ -107,6 +134,8 @@ public class GoBuildOutputProcessorTest extends CommonGoToolingTest {
 		};
 		
 		buildProcessor.parseMessages("libbar\blah.go:");
+		buildProcessor.parseMessages("libbar/blah.go:12:5:x");
+		assertTrue(buildProcessor.getBuildErrors().isEmpty());
 	}
 	
 }
\ No newline at end of file
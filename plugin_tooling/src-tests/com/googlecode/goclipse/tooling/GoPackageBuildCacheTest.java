@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import static com.googlecode.goclipse.tooling.GoPackageDependencyGraphTest.writePackage;
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import melnorme.lang.tooling.data.StatusLevel;
+import melnorme.lang.tooling.ops.SourceLineColumnRange;
+import melnorme.lang.tooling.ops.ToolSourceMessage;
+import melnorme.utilbox.misc.FileUtil;
+import melnorme.utilbox.misc.Location;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.tooling.env.GoPath;
+
+public class GoPackageBuildCacheTest extends CommonGoToolingTest {
+	
+	protected static final Location TEST_DIR = TESTS_WORKDIR.resolve_valid("GoPackageBuildCacheTest");
+	protected static final Location SRC_DIR = TEST_DIR.resolve_valid("src");
+	protected static final Location EXTERNAL_SRC_DIR = TEST_DIR.resolve_valid("external/src");
+	protected static final GoPath GO_PATH = 
+			new GoPath(TEST_DIR.toString() + File.pathSeparator + TEST_DIR.resolve_valid("external").toString());
+	
+	protected static final GoPackageName BASE = new GoPackageName("base");
+	protected static final GoPackageName MID = new GoPackageName("mid");
+	protected static final GoPackageName OTHER = new GoPackageName("other");
+	
+	protected static GoPackageDependencyGraph createGraph() throws Exception {
+		return GoPackageDependencyGraph.create(GO_PATH, SRC_DIR);
+	}
+	
+	@Test
+	public void testFingerprint() throws Exception { testFingerprint$(); }
+	public void testFingerprint$() throws Exception {
+		FileUtil.deleteDir(TEST_DIR);
+		writePackage(SRC_DIR, "base", "package base\n");
+		writePackage(SRC_DIR, "mid", "package mid\nimport \"base\"\n");
+		writePackage(SRC_DIR, "other", "package other\n");
+		
+		GoPackageBuildCache cache = new GoPackageBuildCache();
+		GoPackageDependencyGraph graph = createGraph();
+		String baseFp = cache.createFingerprintCalculator(graph, GO_PATH, "settings").getFingerprint(BASE);
+		String midFp = cache.createFingerprintCalculator(graph, GO_PATH, "settings").getFingerprint(MID);
+		String otherFp = cache.createFingerprintCalculator(graph, GO_PATH, "settings").getFingerprint(OTHER);
+		
+		// Unchanged package
+		assertEquals(cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings").getFingerprint(MID), midFp);
+		// Other build settings
+		assertTrue(!cache.createFingerprintCalculator(graph, GO_PATH, "settings2").getFingerprint(BASE).equals(baseFp));
+		
+		// A file of base changes: base and its importer change, other doesn't
+		writePackage(SRC_DIR, "base", "package base\n\nfunc F() {}\n");
+		graph = createGraph();
+		GoPackageBuildCache.FingerprintCalculator calculator = cache.createFingerprintCalculator(graph, GO_PATH, "settings");
+		String baseFp2 = calculator.getFingerprint(BASE);
+		assertTrue(!baseFp2.equals(baseFp));
+		assertTrue(!calculator.getFingerprint(MID).equals(midFp));
+		assertEquals(calculator.getFingerprint(OTHER), otherFp);
+		midFp = calculator.getFingerprint(MID);
+		
+		// A file is added to base
+		writeStringToFile(SRC_DIR.resolve_valid("base/extra.go"), "package base\n");
+		calculator = cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings");
+		assertTrue(!calculator.getFingerprint(BASE).equals(baseFp2));
+		assertTrue(!calculator.getFingerprint(MID).equals(midFp));
+		midFp = calculator.getFingerprint(MID);
+		
+		// mid no longer imports base: a change to base doesn't affect it anymore
+		writePackage(SRC_DIR, "mid", "package mid\nimport \"fmt\"\n");
+		String midFp2 = cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings").getFingerprint(MID);
+		assertTrue(!midFp2.equals(midFp));
+		Files.delete(SRC_DIR.resolve_valid("base/extra.go").toPath());
+		assertEquals(cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings").getFingerprint(MID), midFp2);
+	}
+	
+	@Test
+	public void testExternalImports() throws Exception { testExternalImports$(); }
+	public void testExternalImports$() throws Exception {
+		FileUtil.deleteDir(TEST_DIR);
+		writePackage(SRC_DIR, "mid", "package mid\nimport \"ext\"\nimport \"fmt\"\n");
+		writePackage(SRC_DIR, "other", "package other\n");
+		writePackage(EXTERNAL_SRC_DIR, "ext", "package ext\nimport \"ext2\"\n");
+		writePackage(EXTERNAL_SRC_DIR, "ext2", "package ext2\n");
+		
+		GoPackageBuildCache cache = new GoPackageBuildCache();
+		GoPackageDependencyGraph graph = createGraph();
+		assertTrue(!graph.containsPackage(new GoPackageName("ext")));
+		String midFp = cache.createFingerprintCalculator(graph, GO_PATH, "settings").getFingerprint(MID);
+		String otherFp = cache.createFingerprintCalculator(graph, GO_PATH, "settings").getFingerprint(OTHER);
+		assertEquals(cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings").getFingerprint(MID), midFp);
+		
+		// A GOPATH package imported indirectly changes
+		writePackage(EXTERNAL_SRC_DIR, "ext2", "package ext2\n\nfunc F() {}\n");
+		GoPackageBuildCache.FingerprintCalculator calculator = 
+				cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings");
+		String midFp2 = calculator.getFingerprint(MID);
+		assertTrue(!midFp2.equals(midFp));
+		assertEquals(calculator.getFingerprint(OTHER), otherFp);
+		
+		// A file is added to the directly imported package
+		writeStringToFile(EXTERNAL_SRC_DIR.resolve_valid("ext/extra.go"), "package ext\n");
+		String midFp3 = cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings").getFingerprint(MID);
+		assertTrue(!midFp3.equals(midFp2));
+		
+		// Import cycles between external packages are ignored
+		writePackage(EXTERNAL_SRC_DIR, "ext2", "package ext2\nimport \"ext\"\n");
+		assertTrue(!cache.createFingerprintCalculator(createGraph(), GO_PATH, "settings").getFingerprint(MID)
+			.equals(midFp3));
+	}
+	
+	@Test
+	public void testSaveLoad() throws Exception { testSaveLoad$(); }
+	public void testSaveLoad$() throws Exception {
+		FileUtil.deleteDir(TEST_DIR);
+		Location cacheFile = TEST_DIR.resolve_valid("state/buildCache.dat");
+		
+		ArrayList<ToolSourceMessage> messages = new ArrayList<>();
+		messages.add(new ToolSourceMessage(new SourceLineColumnRange(Paths.get("src/mid/mid.go"), 3, 2, 3, 10),
+			StatusLevel.ERROR, "undefined: x"));
+		messages.add(new ToolSourceMessage(new SourceLineColumnRange(Paths.get("src/mid/b.go"), 1, -1, -1, -1),
+			StatusLevel.WARNING, "héllo"));
+		
+		GoPackageBuildCache cache = new GoPackageBuildCache();
+		cache.putEntry(MID, "fp1", messages);
+		cache.putEntry(BASE, "fp2", new ArrayList<ToolSourceMessage>());
+		cache.save(cacheFile);
+		
+		GoPackageBuildCache loadedCache = new GoPackageBuildCache();
+		loadedCache.load(cacheFile);
+		assertEquals(loadedCache.getCachedMessages(MID, "fp1"), messages);
+		assertTrue(loadedCache.getCachedMessages(BASE, "fp2").isEmpty());
+		assertTrue(loadedCache.getCachedMessages(MID, "fp2") == null);
+		assertTrue(loadedCache.getCachedMessages(OTHER, "fp1") == null);
+		
+		// Returned messages are copies
+		loadedCache.getCachedMessages(MID, "fp1").clear();
+		assertEquals(loadedCache.getCachedMessages(MID, "fp1"), messages);
+		
+		// A missing file, or one from another version, gives an empty cache
+		loadedCache.load(TEST_DIR.resolve_valid("state/missing.dat"));
+		assertTrue(loadedCache.getCachedMessages(MID, "fp1") == null);
+		Files.write(cacheFile.toPath(), new byte[] { 0, 0, 0, 99 });
+		loadedCache.load(cacheFile);
+		assertTrue(loadedCache.getCachedMessages(MID, "fp1") == null);
+	}
+	
+}
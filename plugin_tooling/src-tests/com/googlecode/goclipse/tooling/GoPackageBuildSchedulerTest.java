@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import static com.googlecode.goclipse.tooling.GoPackageDependencyGraphTest.pkgs;
+import static com.googlecode.goclipse.tooling.GoPackageDependencyGraphTest.writePackage;
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import melnorme.utilbox.concurrency.ICancelMonitor;
+import melnorme.utilbox.concurrency.OperationCancellation;
+import melnorme.utilbox.misc.FileUtil;
+import melnorme.utilbox.misc.Location;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.tooling.GoPackageBuildScheduler.IPackageBuildJob;
+import com.googlecode.goclipse.tooling.env.GoPath;
+
+public class GoPackageBuildSchedulerTest extends CommonGoToolingTest {
+	
+	protected static final ICancelMonitor NULL_MONITOR = ICancelMonitor._Util.NULL_MONITOR;
+	
+	protected static final Location SRC_DIR = TESTS_WORKDIR.resolve_valid("GoPackageBuildSchedulerTest/src");
+	
+	/** Records the packages built, and checks each one is built after the ones it imports. */
+	protected static class RecordingBuildJob implements IPackageBuildJob {
+		
+		protected final GoPackageDependencyGraph graph;
+		protected final HashSet<GoPackageName> failingPackages;
+		protected final List<GoPackageName> builtPackages = Collections.synchronizedList(new ArrayList<GoPackageName>());
+		protected volatile boolean orderViolated = false;
+		
+		public RecordingBuildJob(GoPackageDependencyGraph graph, String... failingPackages) {
+			this.graph = graph;
+			this.failingPackages = new HashSet<>(pkgs(failingPackages));
+		}
+		
+		@Override
+		public boolean buildPackage(GoPackageName goPackage) throws OperationCancellation {
+			for (GoPackageName importedPackage : graph.getImports(goPackage)) {
+				if(graph.containsPackage(importedPackage) && !builtPackages.contains(importedPackage)) {
+					orderViolated = true;
+				}
+			}
+			try {
+				Thread.sleep(10); // Give other jobs a chance to run meanwhile
+			} catch (InterruptedException e) {
+				throw new OperationCancellation();
+			}
+			builtPackages.add(goPackage);
+			return !failingPackages.contains(goPackage);
+		}
+		
+	}
+	
+	protected static GoPackageDependencyGraph createGraph() throws Exception {
+		return GoPackageDependencyGraph.create(new GoPath(SRC_DIR.getParent().toString()), SRC_DIR);
+	}
+	
+	@Test
+	public void testDependencyOrder() throws Exception { testDependencyOrder$(); }
+	public void testDependencyOrder$() throws Exception {
+		FileUtil.deleteDir(SRC_DIR.getParent());
+		writePackage(SRC_DIR, "base", "package base\n");
+		writePackage(SRC_DIR, "util", "package util\nimport \"fmt\"\n");
+		writePackage(SRC_DIR, "mid", "package mid\nimport (\"base\"\n\"util\")\n");
+		writePackage(SRC_DIR, "top", "package main\nimport (\"mid\"\n\"base\")\n");
+		writePackage(SRC_DIR, "other", "package other\n");
+		GoPackageDependencyGraph graph = createGraph();
+		
+		for (int poolSize = 1; poolSize <= 4; poolSize++) {
+			RecordingBuildJob job = new RecordingBuildJob(graph);
+			ArrayList<GoPackageName> built = new GoPackageBuildScheduler(poolSize).run(
+				pkgs("top", "other", "mid", "util", "base"), graph, job, NULL_MONITOR);
+			
+			assertTrue(!job.orderViolated);
+			assertEquals(new HashSet<>(built), new HashSet<>(pkgs("base", "util", "mid", "top", "other")));
+			assertTrue(built.size() == 5);
+			assertTrue(built.indexOf(new GoPackageName("mid")) < built.indexOf(new GoPackageName("top")));
+		}
+		
+		// Only the given packages are built, imports outside of them don't delay the build
+		RecordingBuildJob job = new RecordingBuildJob(graph);
+		ArrayList<GoPackageName> built = new GoPackageBuildScheduler(2).run(pkgs("top"), graph, job, NULL_MONITOR);
+		assertEquals(built, new ArrayList<>(pkgs("top")));
+	}
+	
+	@Test
+	public void testFailedImport() throws Exception { testFailedImport$(); }
+	public void testFailedImport$() throws Exception {
+		FileUtil.deleteDir(SRC_DIR.getParent());
+		writePackage(SRC_DIR, "base", "package base\n");
+		writePackage(SRC_DIR, "mid", "package mid\nimport \"base\"\n");
+		writePackage(SRC_DIR, "top", "package main\nimport \"mid\"\n");
+		writePackage(SRC_DIR, "sibling", "package sibling\nimport \"base\"\n");
+		writePackage(SRC_DIR, "other", "package other\n");
+		GoPackageDependencyGraph graph = createGraph();
+		
+		// The importers of a failed package are skipped, directly or indirectly
+		RecordingBuildJob job = new RecordingBuildJob(graph, "base");
+		ArrayList<GoPackageName> built = new GoPackageBuildScheduler(2).run(
+			pkgs("base", "mid", "top", "sibling", "other"), graph, job, NULL_MONITOR);
+		assertEquals(new HashSet<>(built), new HashSet<>(pkgs("base", "other")));
+		
+		job = new RecordingBuildJob(graph, "mid");
+		built = new GoPackageBuildScheduler(2).run(
+			pkgs("base", "mid", "top", "sibling", "other"), graph, job, NULL_MONITOR);
+		assertEquals(new HashSet<>(built), new HashSet<>(pkgs("base", "mid", "sibling", "other")));
+	}
+	
+	@Test
+	public void testImportCycle() throws Exception { testImportCycle$(); }
+	public void testImportCycle$() throws Exception {
+		FileUtil.deleteDir(SRC_DIR.getParent());
+		writePackage(SRC_DIR, "a", "package a\nimport \"b\"\n");
+		writePackage(SRC_DIR, "b", "package b\nimport \"a\"\n");
+		writePackage(SRC_DIR, "c", "package c\nimport \"a\"\n");
+		writePackage(SRC_DIR, "self", "package self\nimport \"self\"\n");
+		writePackage(SRC_DIR, "free", "package free\n");
+		GoPackageDependencyGraph graph = createGraph();
+		
+		// Packages in (or after) a cycle are still all built, so that their errors are reported
+		RecordingBuildJob job = new RecordingBuildJob(graph);
+		ArrayList<GoPackageName> built = new GoPackageBuildScheduler(2).run(
+			pkgs("a", "b", "c", "self", "free"), graph, job, NULL_MONITOR);
+		assertEquals(new HashSet<>(built), new HashSet<>(pkgs("a", "b", "c", "self", "free")));
+		assertTrue(built.size() == 5);
+	}
+	
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import melnorme.utilbox.misc.FileUtil;
+import melnorme.utilbox.misc.Location;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.tooling.env.GoPath;
+
+public class GoPackageDependencyGraphTest extends CommonGoToolingTest {
+	
+	@Test
+	public void testParseImports() throws Exception { testParseImports$(); }
+	public void testParseImports$() throws Exception {
+		checkImports("package foo; import \"fmt\"", "fmt");
+		checkImports("package foo\n\nfunc main() {}\n");
+		checkImports("import \"fmt\"\n");
+		checkImports("");
+		
+		// Aliases, blank and dot imports, raw strings
+		checkImports(
+			"package foo\n" +
+			"import alias \"github.com/a/b\"\n" +
+			"import _ \"net/http/pprof\"\n" +
+			"import . \"math\"\n" +
+			"import `strings`\n",
+			"github.com/a/b", "net/http/pprof", "math", "strings");
+		
+		// Grouped imports, with comments
+		checkImports(
+			"// Copyright notice\n" +
+			"/* Package foo\n" +
+			"   does things. import \"not/an/import\" */\n" +
+			"package foo // import \"example.com/foo\"\n" +
+			"\n" +
+			"import (\n" +
+			"\t\"os\" // comment\n" +
+			"\tstr `strings`\n" +
+			"\t_ \"image/png\"\n" +
+			"\t/* \"commented/block\" */\n" +
+			"\t// \"commented/line\"\n" +
+			"\t. \"math\"; \"io\"\n" +
+			")\n" +
+			"import \"after/group\"\n" +
+			"\n" +
+			"var x = \"not/an/import\"\n" +
+			"import \"misplaced\"\n",
+			"os", "strings", "image/png", "math", "io", "after/group");
+		
+		// Escapes, and duplicates
+		checkImports("package foo\nimport (\"a\\\"b\"\n\"fmt\"\n\"fmt\")\n", "a\"b", "fmt");
+		
+		// Unterminated source
+		checkImports("package foo\nimport (\"fmt\"\n\"o", "fmt", "o");
+		checkImports("package foo\nimport /* \"fmt\"");
+	}
+	
+	protected static void checkImports(String source, String... expectedImports) {
+		LinkedHashSet<String> imports = GoPackageDependencyGraph.parseImports(source);
+		assertEquals(new ArrayList<>(imports), Arrays.asList(expectedImports));
+	}
+	
+	@Test
+	public void testDependents() throws Exception { testDependents$(); }
+	public void testDependents$() throws Exception {
+		Location srcDir = TESTS_WORKDIR.resolve_valid("GoPackageDependencyGraphTest/src");
+		FileUtil.deleteDir(srcDir.getParent());
+		writePackage(srcDir, "base", "package base\n");
+		writePackage(srcDir, "mid", "package mid\nimport (\"base\"\n\"fmt\")\n");
+		writePackage(srcDir, "top", "package main\nimport \"mid\"\n");
+		writePackage(srcDir, "other", "package other\nimport \"fmt\"\n");
+		
+		GoPackageDependencyGraph graph = GoPackageDependencyGraph.create(
+			new GoPath(srcDir.getParent().toString()), srcDir);
+		assertEquals(graph.getPackages(), new HashSet<>(pkgs("base", "mid", "top", "other")));
+		assertEquals(graph.getImports(new GoPackageName("mid")), new HashSet<>(pkgs("base", "fmt")));
+		assertEquals(graph.getPackageLocation(new GoPackageName("top")), srcDir.resolve_valid("top"));
+		
+		assertEquals(graph.getPackagesAndDependents(pkgs("base")), new LinkedHashSet<>(pkgs("base", "mid", "top")));
+		assertEquals(graph.getPackagesAndDependents(pkgs("top")), new LinkedHashSet<>(pkgs("top")));
+		assertEquals(graph.getPackagesAndDependents(pkgs("fmt")), new LinkedHashSet<>(pkgs("fmt", "mid", "other",
+			"top")));
+		
+		// Package removed from disk
+		FileUtil.deleteDir(srcDir.resolve_valid("mid"));
+		graph.updatePackage(new GoPackageName("mid"), srcDir.resolve_valid("mid"));
+		assertTrue(!graph.containsPackage(new GoPackageName("mid")));
+		assertEquals(graph.getPackagesAndDependents(pkgs("base")), new LinkedHashSet<>(pkgs("base")));
+	}
+	
+	protected static void writePackage(Location srcDir, String packagePath, String source) throws IOException {
+		Location packageDir = srcDir.resolve_valid(packagePath);
+		Files.createDirectories(packageDir.toPath());
+		writeStringToFile(packageDir.resolve_valid(packageDir.getPath().getFileName() + ".go"), source);
+	}
+	
+	protected static Collection<GoPackageName> pkgs(String... packageNames) {
+		ArrayList<GoPackageName> packages = new ArrayList<>();
+		for (String packageName : packageNames) {
+			packages.add(new GoPackageName(packageName));
+		}
+		return packages;
+	}
+	
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling.gocode;
+
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.INT;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.STRING;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.UINT;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.field;
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertFail;
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import melnorme.utilbox.concurrency.ICancelMonitor;
+import melnorme.utilbox.core.CommonException;
+
+import org.junit.Test;
+
+import com.googlecode.goclipse.tooling.CommonGoToolingTest;
+import com.googlecode.goclipse.tooling.gocode.GobCodec.SliceType;
+import com.googlecode.goclipse.tooling.gocode.GobCodec.StructType;
+import com.googlecode.goclipse.tooling.gocode.GocodeDaemonClient.PendingCall;
+
+public class GocodeDaemonClientTest extends CommonGoToolingTest {
+	
+	protected static final ICancelMonitor NULL_MONITOR = ICancelMonitor._Util.NULL_MONITOR;
+	
+	@Test
+	public void testGobCodec() throws Exception { testGobCodec$(); }
+	public void testGobCodec$() throws Exception {
+		// Example from the encoding/gob package documentation: Point{22, 33}
+		StructType pointType = new StructType("Point", field("X", INT), field("Y", INT));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GobCodec.Encoder(out).encode(pointType, new Object[] { 22, 33 });
+		
+		byte[] expected = bytes(
+			0x1f, 0xff, 0x81, 0x03, 0x01, 0x01, 0x05, 0x50, 0x6f, 0x69, 0x6e, 0x74, 0x01, 0xff, 0x82, 0x00,
+			0x01, 0x02, 0x01, 0x01, 0x58, 0x01, 0x04, 0x00, 0x01, 0x01, 0x59, 0x01, 0x04, 0x00, 0x00, 0x00,
+			0x07, 0xff, 0x82, 0x01, 0x2c, 0x01, 0x42, 0x00
+		);
+		assertTrue(Arrays.equals(out.toByteArray(), expected));
+		
+		Map<String, Object> point = GobCodec.asStruct(
+			new GobCodec.Decoder(new ByteArrayInputStream(expected)).decode());
+		assertEquals(point.get("X"), 22L);
+		assertEquals(point.get("Y"), 33L);
+		
+		// Singletons, negative and large numbers
+		out = new ByteArrayOutputStream();
+		GobCodec.Encoder encoder = new GobCodec.Encoder(out);
+		encoder.encode(INT, -1_000_000_000_000L);
+		encoder.encode(UINT, -1L);
+		encoder.encode(STRING, "héllo");
+		GobCodec.Decoder decoder = new GobCodec.Decoder(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(decoder.decode(), -1_000_000_000_000L);
+		assertEquals(decoder.decode(), -1L);
+		assertEquals(decoder.decode(), "héllo");
+	}
+	
+	protected static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+	
+	/* -----------------  ----------------- */
+	
+	protected static final StructType RPC_RESPONSE = new StructType("Response",
+		field("ServiceMethod", STRING),
+		field("Seq", UINT),
+		field("Error", STRING)
+	);
+	protected static final StructType CANDIDATE = new StructType("candidate",
+		field("Name", STRING),
+		field("Type", STRING),
+		field("Class", INT)
+	);
+	protected static final StructType REPLY_AUTO_COMPLETE = new StructType("Reply_auto_complete",
+		field("Arg0", new SliceType("[]candidate", CANDIDATE)),
+		field("Arg1", INT)
+	);
+	
+	/**
+	 * A fake gocode daemon, serving one connection at a time.
+	 * Replies to requests in batches of given size, in reverse order.
+	 */
+	protected static class FakeDaemon extends Thread {
+		
+		protected final ServerSocket serverSocket;
+		protected final int batchSize;
+		protected final ArrayList<Map<String, Object>> receivedArgs = new ArrayList<>();
+		protected volatile int connectionCount = 0;
+		
+		public FakeDaemon(int batchSize) throws IOException {
+			this.serverSocket = new ServerSocket(0, 10, InetAddress.getLoopbackAddress());
+			this.batchSize = batchSize;
+			setDaemon(true);
+		}
+		
+		public int getPort() {
+			return serverSocket.getLocalPort();
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while(true) {
+					try(Socket socket = serverSocket.accept()) {
+						connectionCount++;
+						serve(socket);
+					} catch(IOException e) {
+						if(serverSocket.isClosed()) {
+							return;
+						}
+					}
+				}
+			} finally {
+				close();
+			}
+		}
+		
+		protected void serve(Socket socket) throws IOException {
+			GobCodec.Decoder decoder = new GobCodec.Decoder(socket.getInputStream());
+			OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			GobCodec.Encoder encoder = new GobCodec.Encoder(out);
+			
+			while(true) {
+				ArrayList<Map<String, Object>> batch = new ArrayList<>();
+				for (int i = 0; i < batchSize; i++) {
+					batch.add(GobCodec.asStruct(decoder.decode()));
+					Map<String, Object> args = GobCodec.asStruct(decoder.decode());
+					synchronized(receivedArgs) {
+						receivedArgs.add(args);
+					}
+				}
+				for (int i = batch.size() - 1; i >= 0; i--) {
+					Map<String, Object> request = batch.get(i);
+					String method = GobCodec.getString(request, "ServiceMethod");
+					encoder.encode(RPC_RESPONSE, new Object[] { method, GobCodec.getLong(request, "Seq"), null });
+					encoder.encode(REPLY_AUTO_COMPLETE, new Object[] { Arrays.asList(
+						new Object[] { "Println", "func(a ...interface{}) (n int, err error)", 1 },
+						new Object[] { method, "", 4 }
+					), 0 });
+				}
+				out.flush();
+			}
+		}
+		
+		public void close() {
+			try {
+				serverSocket.close();
+			} catch(IOException e) {
+			}
+		}
+		
+	}
+	
+	@Test
+	public void testDaemonClient() throws Exception { testDaemonClient$(); }
+	public void testDaemonClient$() throws Exception {
+		FakeDaemon daemon = new FakeDaemon(2);
+		daemon.start();
+		try {
+			GocodeDaemonClient client = new GocodeDaemonClient("127.0.0.1", daemon.getPort());
+			
+			// Pipelined requests, replied in reverse order
+			PendingCall call1 = client.call("RPC.Method1", GocodeDaemonClient.ARGS_SET, new Object[] { "a", "b" });
+			PendingCall call2 = client.call("RPC.Method2", GocodeDaemonClient.ARGS_SET, new Object[] { "c", "d" });
+			assertTrue(getCandidateNames(call2.awaitReply(NULL_MONITOR)).equals("Println RPC.Method2 "));
+			assertTrue(getCandidateNames(call1.awaitReply(NULL_MONITOR)).equals("Println RPC.Method1 "));
+			assertTrue(daemon.connectionCount == 1);
+			
+			// Restart of the daemon: the client reconnects
+			client.reset();
+			PendingCall setCall = client.call("RPC.RPC_set", GocodeDaemonClient.ARGS_SET, 
+				new Object[] { "lib-path", "/gopath" }); // Replied after the next request
+			
+			String source = "package main\nfunc é() { fmt. }";
+			ArrayList<String> completions = client.autoComplete("/gopath/src/main.go", source,
+				source.indexOf("fmt.") + 4, SAMPLE_GOEnv_1, NULL_MONITOR);
+			assertEquals(completions, Arrays.asList(
+				"func,,Println,,func(a ...interface{}) (n int, err error)",
+				"type,,RPC.RPC_auto_complete,,"));
+			setCall.awaitReply(NULL_MONITOR);
+			assertTrue(daemon.connectionCount == 2);
+			
+			Map<String, Object> args;
+			synchronized(daemon.receivedArgs) {
+				args = daemon.receivedArgs.get(daemon.receivedArgs.size() - 1);
+			}
+			assertEquals(GobCodec.getString(args, "Arg1"), "/gopath/src/main.go");
+			// Cursor is a byte offset
+			assertEquals(GobCodec.getLong(args, "Arg2"), (long) source.indexOf("fmt.") + 4 + 1);
+			Map<String, Object> buildContext = GobCodec.asStruct(args.get("Arg3"));
+			assertEquals(GobCodec.getString(buildContext, "GOOS"), "windows");
+			
+			// Daemon not running
+			daemon.close();
+			client.reset();
+			try {
+				client.setLibPath("/gopath", NULL_MONITOR);
+				assertFail();
+			} catch(CommonException ce) {
+			}
+		} finally {
+			daemon.close();
+		}
+	}
+	
+	protected static String getCandidateNames(Object reply) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (Object candidate : GobCodec.getList(GobCodec.asStruct(reply), "Arg0")) {
+			sb.append(GobCodec.getString(GobCodec.asStruct(candidate), "Name")).append(" ");
+		}
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package melnorme.utilbox.misc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An append-only byte buffer, storing its contents in a list of chunks, so that growing it
+ * never copies the bytes already written. The first chunk has the size of the given size hint,
+ * the size of following chunks doubles, up to {@link #MAX_CHUNK_SIZE}.
+ *
+ * This class is not synchronized: it must be written by a single thread,
+ * and read only after writing has finished (with the proper happens-before relation,
+ * such as the one given by awaiting a latch counted down by the writer).
+ */
+public class ChunkedByteBuffer extends OutputStream implements IByteSequence {
+	
+	public static final int DEFAULT_SIZE_HINT = 1024;
+	public static final int MAX_CHUNK_SIZE = 1024 * 1024;
+	
+	/** All chunks but the last one are full. */
+	protected final ArrayList<byte[]> chunks = new ArrayList<>();
+	protected byte[] lastChunk;
+	protected int lastChunkCount = 0;
+	protected int count = 0;
+	
+	public ChunkedByteBuffer() {
+		this(DEFAULT_SIZE_HINT);
+	}
+	
+	public ChunkedByteBuffer(int sizeHint) {
+		lastChunk = new byte[Math.max(16, Math.min(sizeHint, MAX_CHUNK_SIZE))];
+		chunks.add(lastChunk);
+	}
+	
+	protected void addChunk() {
+		lastChunk = new byte[Math.min(lastChunk.length * 2, MAX_CHUNK_SIZE)];
+		lastChunkCount = 0;
+		chunks.add(lastChunk);
+	}
+	
+	protected int getChunkCount(int chunkIndex) {
+		return chunkIndex == chunks.size() - 1 ? lastChunkCount : chunks.get(chunkIndex).length;
+	}
+	
+	@Override
+	public void write(int b) {
+		if(lastChunkCount == lastChunk.length) {
+			addChunk();
+		}
+		lastChunk[lastChunkCount++] = (byte) b;
+		count++;
+	}
+	
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		if(offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		while(length > 0) {
+			if(lastChunkCount == lastChunk.length) {
+				addChunk();
+			}
+			int copyCount = Math.min(length, lastChunk.length - lastChunkCount);
+			System.arraycopy(bytes, offset, lastChunk, lastChunkCount, copyCount);
+			lastChunkCount += copyCount;
+			count += copyCount;
+			offset += copyCount;
+			length -= copyCount;
+		}
+	}
+	
+	@Override
+	public int getCount() {
+		return count;
+	}
+	
+	@Override
+	public int byteAt(int index) {
+		if(index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException();
+		}
+		for (byte[] chunk : chunks) {
+			if(index < chunk.length) {
+				return chunk[index];
+			}
+			index -= chunk.length;
+		}
+		throw new IndexOutOfBoundsException();
+	}
+	
+	@Override
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[count];
+		int offset = 0;
+		for (int i = 0; i < chunks.size(); i++) {
+			int chunkCount = getChunkCount(i);
+			System.arraycopy(chunks.get(i), 0, bytes, offset, chunkCount);
+			offset += chunkCount;
+		}
+		return bytes;
+	}
+	
+	public void writeTo(OutputStream out) throws IOException {
+		for (int i = 0; i < chunks.size(); i++) {
+			out.write(chunks.get(i), 0, getChunkCount(i));
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return toString(StringUtil.UTF8);
+	}
+	
+	@Override
+	public String toString(Charset charset) {
+		if(chunks.size() == 1) {
+			return new String(lastChunk, 0, lastChunkCount, charset);
+		}
+		return asCharSequence(charset).toString();
+	}
+	
+	/* -----------------  ----------------- */
+	
+	/** @return an input stream reading the contents of this buffer, without copying them. */
+	public InputStream asInputStream() {
+		return new InputStream() {
+			
+			protected int chunkIndex = 0;
+			protected int chunkOffset = 0;
+			
+			@Override
+			public int read() {
+				if(!advanceToAvailableChunk()) {
+					return StreamUtil.EOF;
+				}
+				return chunks.get(chunkIndex)[chunkOffset++] & 0xFF;
+			}
+			
+			@Override
+			public int read(byte[] bytes, int offset, int length) {
+				if(length == 0) {
+					return 0;
+				}
+				if(!advanceToAvailableChunk()) {
+					return StreamUtil.EOF;
+				}
+				int readCount = Math.min(length, getChunkCount(chunkIndex) - chunkOffset);
+				System.arraycopy(chunks.get(chunkIndex), chunkOffset, bytes, offset, readCount);
+				chunkOffset += readCount;
+				return readCount;
+			}
+			
+			protected boolean advanceToAvailableChunk() {
+				while(chunkOffset == getChunkCount(chunkIndex)) {
+					if(chunkIndex == chunks.size() - 1) {
+						return false;
+					}
+					chunkIndex++;
+					chunkOffset = 0;
+				}
+				return true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * @return the contents of this buffer decoded with given charset, into a single char buffer
+	 * (without an intermediate byte array or String copy). Malformed input is replaced.
+	 */
+	public CharBuffer asCharSequence(Charset charset) {
+		float maxCharsPerByte = charset.newDecoder().maxCharsPerByte();
+		CharBuffer chars = CharBuffer.allocate((int) Math.ceil(count * (double) maxCharsPerByte) + 1);
+		try(Reader reader = new InputStreamReader(asInputStream(), charset)) {
+			while(true) {
+				if(!chars.hasRemaining()) {
+					chars.flip();
+					chars = CharBuffer.allocate(chars.capacity() * 2).put(chars);
+				}
+				if(reader.read(chars) == StreamUtil.EOF) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // Can't happen, the contents are in memory
+		}
+		chars.flip();
+		return chars;
+	}
+	
+	/**
+	 * @return the lines of the contents of this buffer, decoded with given charset.
+	 * Lines are terminated by "\n", "\r\n", or "\r". A last empty line is not included.
+	 */
+	public Iterable<String> lines(Charset charset) {
+		final CharBuffer chars = asCharSequence(charset);
+		return new Iterable<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new LineIterator(chars);
+			}
+		};
+	}
+	
+	public static class LineIterator implements Iterator<String> {
+		
+		protected final CharSequence chars;
+		protected int position = 0;
+		
+		public LineIterator(CharSequence chars) {
+			this.chars = chars;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return position < chars.length();
+		}
+		
+		@Override
+		public String next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int lineStart = position;
+			int length = chars.length();
+			while(position < length) {
+				char ch = chars.charAt(position);
+				if(ch == '\n' || ch == '\r') {
+					String line = chars.subSequence(lineStart, position).toString();
+					position++;
+					if(ch == '\r' && position < length && chars.charAt(position) == '\n') {
+						position++;
+					}
+					return line;
+				}
+				position++;
+			}
+			return chars.subSequence(lineStart, position).toString();
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+	}
+	
+}
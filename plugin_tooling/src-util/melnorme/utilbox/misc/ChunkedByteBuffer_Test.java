@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package melnorme.utilbox.misc;
+
+import static melnorme.utilbox.core.Assert.AssertNamespace.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ChunkedByteBuffer_Test {
+	
+	@Test
+	public void test() throws Exception { test$(); }
+	public void test$() throws Exception {
+		String contents = "abcé€-line1\nline2\r\nline3\r\rline5\n";
+		byte[] bytes = contents.getBytes(StringUtil.UTF8);
+		
+		// Write in small pieces to a small buffer, so that chunk boundaries split the multi-byte characters
+		ChunkedByteBuffer buffer = new ChunkedByteBuffer(0);
+		for (int i = 0; i < bytes.length; i += 3) {
+			buffer.write(bytes, i, Math.min(3, bytes.length - i));
+		}
+		assertTrue(buffer.chunks.size() > 1);
+		assertTrue(buffer.getCount() == bytes.length);
+		assertTrue(Arrays.equals(buffer.toByteArray(), bytes));
+		for (int i = 0; i < bytes.length; i++) {
+			assertTrue(buffer.byteAt(i) == bytes[i]);
+		}
+		assertTrue(Arrays.equals(StreamUtil.readAllBytesFromStream(buffer.asInputStream()).toByteArray(), bytes));
+		
+		assertTrue(buffer.toString(StringUtil.UTF8).equals(contents));
+		assertTrue(buffer.asCharSequence(StringUtil.UTF8).toString().equals(contents));
+		
+		ArrayList<String> lines = new ArrayList<>();
+		for (String line : buffer.lines(StringUtil.UTF8)) {
+			lines.add(line);
+		}
+		assertTrue(lines.equals(Arrays.asList("abcé€-line1", "line2", "line3", "", "line5")));
+		
+		ChunkedByteBuffer emptyBuffer = new ChunkedByteBuffer();
+		assertTrue(emptyBuffer.toString().equals(""));
+		assertTrue(emptyBuffer.lines(StringUtil.UTF8).iterator().hasNext() == false);
+		assertTrue(emptyBuffer.asInputStream().read() == StreamUtil.EOF);
+	}
+	
+}
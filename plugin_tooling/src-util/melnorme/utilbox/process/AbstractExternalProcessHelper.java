@@ -12,29 +12,91 @@ package melnorme.utilbox.process;
 
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import melnorme.utilbox.concurrency.NamingThreadFactory;
 
 /**
  * Abstract helper class to start an external process and read its output concurrently,
- * using one or two reader threads (for stdout and stderr).
+ * using one or two reader tasks (for stdout and stderr), run by a thread pool shared by all helpers.
  * It also supports waiting for process termination with timeouts.
  * 
- * Subclasses must specify Runnable's for the worker threads reading the process stdout and stderr streams.
+ * While the process runs, its cancel monitor (if it can be canceled at all) is checked periodically 
+ * by a shared watchdog thread: once cancellation is requested, the process (and its descendants) is destroyed, 
+ * and any waiting threads are released, regardless of whether a caller is waiting for the process.
+ * 
+ * Subclasses must specify Runnable's for the worker tasks reading the process stdout and stderr streams.
  */
 public abstract class AbstractExternalProcessHelper {
 	
 	public static final int NO_TIMEOUT = -1;
 	
+	/** The maximum number of pooled reader threads. */
+	public static final int READER_POOL_MAX_SIZE = 64;
+	
+	/** 
+	 * The executor running the reader tasks, reusing idle threads, so that short-lived processes 
+	 * don't pay for the creation of new threads.
+	 * A reader task runs until its process output ends, so it must never be queued: 
+	 * if all pooled threads are busy, the task is run in a new thread instead.
+	 */
+	protected static final ExecutorService readerExecutor = new ThreadPoolExecutor(0, READER_POOL_MAX_SIZE, 
+		60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
+		new DaemonThreadFactory("ProcessHelper.PooledReader", true), 
+		new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+				Thread thread = new Thread(runnable, "ProcessHelper.Reader");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		});
+	
+	/** The executor checking the cancel monitors of the running processes. */
+	protected static final ScheduledThreadPoolExecutor cancelWatchdog = new ScheduledThreadPoolExecutor(1, 
+		new DaemonThreadFactory("ProcessHelper.CancelWatchdog", false));
+	
+	static {
+		cancelWatchdog.setRemoveOnCancelPolicy(true);
+	}
+	
+	protected static class DaemonThreadFactory extends NamingThreadFactory {
+		
+		public DaemonThreadFactory(String poolName, boolean useThreadNumber) {
+			super(poolName, useThreadNumber);
+		}
+		
+		@Override
+		public Thread newThread(Runnable runable) {
+			Thread thread = super.newThread(runable);
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+	}
+	
 	protected final Process process;
 	protected final boolean readStdErr;
 	
-	/** This latch exists to signal that the process has terminated, and also that the reader threads 
+	/** This latch exists to signal that the process has terminated, and also that the reader tasks 
 	 * have finished reading all input. This last aspect is very important. */
 	protected final CountDownLatch fullTerminationLatch;
+	/** Signaled on full termination, or when the process is destroyed because cancellation was requested. */
+	protected final CountDownLatch awaitLatch = new CountDownLatch(1);
+	protected volatile boolean destroyedOnCancel = false;
 	
-	protected final Thread mainReaderThread;
-	protected final Thread stderrReaderThread; // Can be null
+	protected final Runnable mainReaderTask;
+	protected final Runnable stderrReaderTask; // Can be null
+	protected boolean readersStarted = false;
+	protected ScheduledFuture<?> cancelWatch;
 	
 	public AbstractExternalProcessHelper(ProcessBuilder pb) throws IOException {
 		this(pb.start(), pb.redirectErrorStream() == false, true);
@@ -46,23 +108,93 @@ public abstract class AbstractExternalProcessHelper {
 		
 		fullTerminationLatch = new CountDownLatch(2);
 		
-		mainReaderThread = new ProcessHelperMainThread(createMainReaderTask());
+		mainReaderTask = new ProcessHelperMainTask(createMainReaderTask());
 		
 		if(readStdErr) {
-			stderrReaderThread = new ProcessHelperStdErrThread(createStdErrReaderTask());
+			stderrReaderTask = new ProcessHelperStdErrTask(createStdErrReaderTask());
 		} else {
-			fullTerminationLatch.countDown(); // dont start stderr thread, so update latch
-			stderrReaderThread = null;
+			readerTaskTerminated(); // dont start stderr task, so update latch
+			stderrReaderTask = null;
 		}
 		if(startReaders) {
 			startReaderThreads();
 		}
 	}
 	
-	public void startReaderThreads() {
-		mainReaderThread.start();
-		if(stderrReaderThread != null) {
-			stderrReaderThread.start();
+	public synchronized void startReaderThreads() {
+		if(readersStarted) {
+			throw new IllegalStateException("Reader tasks already started.");
+		}
+		readersStarted = true;
+		readerExecutor.execute(mainReaderTask);
+		if(stderrReaderTask != null) {
+			readerExecutor.execute(stderrReaderTask);
+		}
+		startCancelWatch();
+	}
+	
+	protected synchronized void startCancelWatch() {
+		if(isFullyTerminated() || !isCancelable()) {
+			return;
+		}
+		int periodMs = getCancelPollingPeriodMs();
+		cancelWatch = cancelWatchdog.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				if(isCanceled()) {
+					destroyOnCancel();
+				}
+			}
+		}, periodMs, periodMs, TimeUnit.MILLISECONDS);
+	}
+	
+	protected synchronized void stopCancelWatch() {
+		if(cancelWatch != null) {
+			cancelWatch.cancel(false);
+			cancelWatch = null;
+		}
+	}
+	
+	protected void destroyOnCancel() {
+		stopCancelWatch();
+		destroyedOnCancel = true;
+		destroyProcessTree();
+		awaitLatch.countDown();
+	}
+	
+	/** Count down the full termination latch, for a reader task that terminated. */
+	protected void readerTaskTerminated() {
+		fullTerminationLatch.countDown();
+		if(fullTerminationLatch.getCount() == 0) {
+			stopCancelWatch();
+			awaitLatch.countDown();
+		}
+	}
+	
+	/** 
+	 * Destroy the process, as well as its descendant processes, if the JVM supports it (Java 9 or later), 
+	 * since those might keep running (and keep the output streams open) otherwise.
+	 */
+	public void destroyProcessTree() {
+		Object[] descendants = getDescendantProcesses();
+		process.destroy();
+		for (Object descendant : descendants) {
+			try {
+				Class.forName("java.lang.ProcessHandle").getMethod("destroy").invoke(descendant);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// Ignore, the process might have terminated already
+			}
+		}
+	}
+	
+	/** @return the ProcessHandle's of the descendants of the process, or an empty array if not supported. */
+	protected Object[] getDescendantProcesses() {
+		try {
+			// Use reflection, since ProcessHandle was only introduced in Java 9
+			Stream<?> descendants = (Stream<?>) Process.class.getMethod("descendants").invoke(process);
+			return descendants.toArray();
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return new Object[0];
 		}
 	}
 	
@@ -86,55 +218,74 @@ public abstract class AbstractExternalProcessHelper {
 		return getClass().getSimpleName();
 	}
 	
-	protected class ProcessHelperMainThread extends Thread {
+	/** Run given runnable with the current thread renamed to given name, for the sake of debugging. */
+	protected static void runWithThreadName(Runnable runnable, String threadName) {
+		Thread thread = Thread.currentThread();
+		String poolThreadName = thread.getName();
+		thread.setName(threadName);
+		try {
+			runnable.run();
+		} finally {
+			thread.setName(poolThreadName);
+		}
+	}
+	
+	protected class ProcessHelperMainTask implements Runnable {
 		
-		public ProcessHelperMainThread(Runnable runnable) {
-			super(runnable, getBaseNameForWorkerThreads() + ".MainWorker");
-			setDaemon(true);
+		protected final Runnable runnable;
+		
+		public ProcessHelperMainTask(Runnable runnable) {
+			this.runnable = runnable;
 		}
 		
 		@Override
 		public void run() {
 			try {
-				super.run();
+				runWithThreadName(runnable, getBaseNameForWorkerThreads() + ".MainWorker");
 			} finally {
 				waitForProcessIndefinitely();
-				fullTerminationLatch.countDown();
+				readerTaskTerminated();
 				
 				mainReaderThread_Terminated();
 			}
 		}
 		
 		protected void waitForProcessIndefinitely() {
+			boolean interrupted = false;
 			while(true) {
 				try {
 					process.waitFor();
-					return;
+					break;
 				} catch (InterruptedException e) {
 					// retry waitfor, we must ensure process is terminated.
+					interrupted = true;
 				}
 			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
 		
 	}
 	
-	/** Callback method for when main reader thread is about to terminate. Subclasses can extend. */
+	/** Callback method for when main reader task is about to terminate. Subclasses can extend. */
 	public void mainReaderThread_Terminated() {
 	}
 	
-	protected class ProcessHelperStdErrThread extends Thread {
+	protected class ProcessHelperStdErrTask implements Runnable {
+		
+		protected final Runnable runnable;
 		
-		public ProcessHelperStdErrThread(Runnable runnable) {
-			super(runnable, getBaseNameForWorkerThreads() + ".StdErrWorker");
-			setDaemon(true);
+		public ProcessHelperStdErrTask(Runnable runnable) {
+			this.runnable = runnable;
 		}
 		
 		@Override
 		public void run() {
 			try {
-				super.run();
+				runWithThreadName(runnable, getBaseNameForWorkerThreads() + ".StdErrWorker");
 			} finally {
-				fullTerminationLatch.countDown();
+				readerTaskTerminated();
 			}
 		}
 		
@@ -144,35 +295,29 @@ public abstract class AbstractExternalProcessHelper {
 	
 	/**
 	 * Await termination of process, with given timeoutMs timeout. Can use -1 for no timeout.
-	 * Periodically polls cancel monitor, if one exists.
+	 * Returns as soon as the process is destroyed because cancellation was requested.
 	 * @return true if termination reached, false if timeout reached, or cancel requested.
 	 * @throws InterruptedException if interrupted.
 	 */
 	protected boolean tryAwaitTermination(int timeoutMs) throws InterruptedException {
-		int waitedTime = 0;
-		
-		while(true) {
-			int cancelPollPeriodMs = getCancelPollingPeriodMs();
-			boolean latchSuccess = fullTerminationLatch.await(cancelPollPeriodMs, TimeUnit.MILLISECONDS);
-			if(latchSuccess) {
-				return true;
-			}
-			if(isCanceled()) {
-				return false;
-			}
-			if(timeoutMs != NO_TIMEOUT && waitedTime >= timeoutMs) {
-				return false;
-			}
-			waitedTime += cancelPollPeriodMs;
+		if(timeoutMs == NO_TIMEOUT) {
+			awaitLatch.await();
+		} else {
+			awaitLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
 		}
+		return isFullyTerminated() && !destroyedOnCancel;
 	}
 	
+	/** @return the period with which the cancel monitor is checked, while the process runs. */
 	protected int getCancelPollingPeriodMs() {
-		return 200;
+		return 20;
 	}
 	
 	protected abstract boolean isCanceled();
 	
+	/** @return whether the cancel monitor can ever be canceled. If not, it is not polled. */
+	protected abstract boolean isCancelable();
+	
 	/** 
 	 * Same as {@link #tryAwaitTermination(int)} but throws TimeoutException if timeout occurs, or cancel is requested.
 	 * @return The process exit value.
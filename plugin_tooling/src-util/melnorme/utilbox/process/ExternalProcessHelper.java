@@ -22,15 +22,14 @@ import melnorme.utilbox.concurrency.ICancelMonitor;
 import melnorme.utilbox.concurrency.ICancelMonitor.NullCancelMonitor;
 import melnorme.utilbox.concurrency.OperationCancellation;
 import melnorme.utilbox.core.CommonException;
-import melnorme.utilbox.misc.ByteArrayOutputStreamExt;
+import melnorme.utilbox.misc.ChunkedByteBuffer;
 import melnorme.utilbox.misc.ExceptionTrackingRunnable;
-import melnorme.utilbox.misc.IByteSequence;
 import melnorme.utilbox.misc.StreamUtil;
 import melnorme.utilbox.misc.StringUtil;
 
 /**
  * Helper for running external processes.
- * Reads all stdout and stderr output into a byte array (using worker threads)
+ * Reads all stdout and stderr output into a {@link ChunkedByteBuffer} (using worker threads)
  * 
  * @see AbstractExternalProcessHelper
  */
@@ -50,8 +49,12 @@ public class ExternalProcessHelper extends AbstractExternalProcessHelper {
 	
 	public ExternalProcessHelper(Process process, boolean readStdErr, boolean startReaders, 
 			ICancelMonitor cancelMonitor) {
-		super(process, readStdErr, startReaders);
+		super(process, readStdErr, false);
 		this.cancelMonitor = cancelMonitor == null ? new NullCancelMonitor() : cancelMonitor;
+		// Start the readers, and the cancel watch, only once the cancel monitor is set
+		if(startReaders) {
+			startReaderThreads();
+		}
 	}
 	
 	@Override
@@ -59,35 +62,61 @@ public class ExternalProcessHelper extends AbstractExternalProcessHelper {
 		return cancelMonitor.isCanceled();
 	}
 	
+	@Override
+	protected boolean isCancelable() {
+		return !(cancelMonitor instanceof NullCancelMonitor);
+	}
+	
 	@Override
 	protected ReadAllBytesTask createMainReaderTask() {
-		return mainReader = new ReadAllBytesTask(process.getInputStream());
+		return mainReader = new ReadAllBytesTask(process.getInputStream(), getOutputSizeHint());
 	}
 	
 	@Override
 	protected ReadAllBytesTask createStdErrReaderTask() {
-		return stderrReader = new ReadAllBytesTask(process.getErrorStream());
+		return stderrReader = new ReadAllBytesTask(process.getErrorStream(), getOutputSizeHint());
+	}
+	
+	/** 
+	 * @return the expected size of the output of the process, used to size the output buffers. 
+	 * Called during construction. 
+	 */
+	protected int getOutputSizeHint() {
+		return ChunkedByteBuffer.DEFAULT_SIZE_HINT;
 	}
 	
-	protected static class ReadAllBytesTask extends ExceptionTrackingRunnable<ByteArrayOutputStreamExt, IOException> {
+	protected static class ReadAllBytesTask extends ExceptionTrackingRunnable<ChunkedByteBuffer, IOException> {
 		
 		protected final InputStream is;
-		protected final ByteArrayOutputStreamExt byteArray = new ByteArrayOutputStreamExt(32);
+		protected final ChunkedByteBuffer byteArray;
+		protected volatile boolean retainBytes = true;
 		
 		public ReadAllBytesTask(InputStream is) {
+			this(is, ChunkedByteBuffer.DEFAULT_SIZE_HINT);
+		}
+		
+		public ReadAllBytesTask(InputStream is, int sizeHint) {
 			this.is = is;
+			this.byteArray = new ChunkedByteBuffer(sizeHint);
+		}
+		
+		/** Set whether the read bytes are kept. If not, they are only passed to {@link #notifyReadChunk}. */
+		public void setRetainBytes(boolean retainBytes) {
+			this.retainBytes = retainBytes;
 		}
 		
 		@Override
-		public ByteArrayOutputStreamExt doRun() throws IOException {
+		public ChunkedByteBuffer doRun() throws IOException {
 			// BM: Hum, should we treat an IOException not as an error, but just like an EOF?
 			try {
-				final int BUFFER_SIZE = 1024;
+				final int BUFFER_SIZE = 8192;
 				byte[] buffer = new byte[BUFFER_SIZE];
 				
 				int read;
 				while((read = is.read(buffer)) != StreamUtil.EOF) {
-					byteArray.write(buffer, 0, read);
+					if(retainBytes) {
+						byteArray.write(buffer, 0, read);
+					}
 					notifyReadChunk(buffer, 0, read);
 				}
 				return byteArray;
@@ -103,6 +132,16 @@ public class ExternalProcessHelper extends AbstractExternalProcessHelper {
 		
 	}
 	
+	/**
+	 * Set whether the stderr output is kept, to be available in the process result. 
+	 * Must be called before the reader threads are started.
+	 */
+	public void setRetainStdErr(boolean retainStdErr) {
+		if(stderrReader != null) {
+			stderrReader.setRetainBytes(retainStdErr);
+		}
+	}
+	
 	/* ----------------- ----------------- */
 	
 	protected CommonException createCommonException(String message, Throwable cause) {
@@ -145,12 +184,12 @@ public class ExternalProcessHelper extends AbstractExternalProcessHelper {
 	
 	/* ----------------- result helpers ----------------- */
 	
-	protected ByteArrayOutputStreamExt getStdOutBytes() {
+	protected ChunkedByteBuffer getStdOutBytes() {
 		assertTrue(isFullyTerminated());
 		return mainReader.byteArray;
 	}
 	
-	protected ByteArrayOutputStreamExt getStdErrBytes() {
+	protected ChunkedByteBuffer getStdErrBytes() {
 		assertTrue(isFullyTerminated());
 		assertTrue(readStdErr);
 		return stderrReader.byteArray;
@@ -159,20 +198,20 @@ public class ExternalProcessHelper extends AbstractExternalProcessHelper {
 	public class ExternalProcessResult {
 		
 		public final int exitValue;
-		public final ByteArrayOutputStreamExt stdout;
-		public final ByteArrayOutputStreamExt stderr;
+		public final ChunkedByteBuffer stdout;
+		public final ChunkedByteBuffer stderr;
 		
-		public ExternalProcessResult(int exitValue, ByteArrayOutputStreamExt stdout, ByteArrayOutputStreamExt stderr) {
+		public ExternalProcessResult(int exitValue, ChunkedByteBuffer stdout, ChunkedByteBuffer stderr) {
 			this.exitValue = exitValue;
 			this.stdout = stdout;
 			this.stderr = stderr;
 		}
 		
-		public IByteSequence getStdOutBytes() {
+		public ChunkedByteBuffer getStdOutBytes() {
 			return stdout;
 		}
 		
-		public IByteSequence getStdErrBytes() {
+		public ChunkedByteBuffer getStdErrBytes() {
 			return stderr;
 		}
 		
@@ -197,7 +236,7 @@ public class ExternalProcessHelper extends AbstractExternalProcessHelper {
 		try {
 			tryStrictAwaitTermination(timeoutMs);
 		} catch (Exception e) {
-			process.destroy();
+			destroyProcessTree();
 			throw e;
 		}
 		return new ExternalProcessResult(process.exitValue(), getStdOutBytes(), getStdErrBytes());
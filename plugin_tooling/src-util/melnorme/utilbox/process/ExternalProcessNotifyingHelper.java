@@ -50,7 +50,7 @@ public class ExternalProcessNotifyingHelper extends ExternalProcessHelper {
 	
 	@Override
 	protected ReadAllBytesTask createMainReaderTask() {
-		return mainReader = new ReadAllBytesTask(process.getInputStream()) {
+		return mainReader = new ReadAllBytesTask(process.getInputStream(), getOutputSizeHint()) {
 			@Override
 			protected void notifyReadChunk(byte[] buffer, int offset, int readCount) {
 				notifyDataRead(buffer, offset, readCount, true);
@@ -60,7 +60,7 @@ public class ExternalProcessNotifyingHelper extends ExternalProcessHelper {
 	
 	@Override
 	protected ReadAllBytesTask createStdErrReaderTask() {
-		return stderrReader = new ReadAllBytesTask(process.getErrorStream()) {
+		return stderrReader = new ReadAllBytesTask(process.getErrorStream(), getOutputSizeHint()) {
 			@Override
 			protected void notifyReadChunk(byte[] buffer, int offset, int readCount) {
 				notifyDataRead(buffer, offset, readCount, false);
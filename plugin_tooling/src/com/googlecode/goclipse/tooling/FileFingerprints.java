@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Digest helpers for the caches keyed by the state of package files:
+ * the package build cache, and the symbol index and package model store of the IDE.
+ */
+public class FileFingerprints {
+	
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // Every Java platform supports SHA-1
+		}
+	}
+	
+	/** Add given string to given digest, followed by a separator. */
+	public static void update(MessageDigest digest, String string) {
+		digest.update(string.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+	
+	public static String toHexString(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @return a fingerprint of the names, sizes and modification times of given files, in the given order.
+	 * It changes when a file is added, removed or modified, without reading the file contents.
+	 */
+	public static String getFilesFingerprint(Iterable<Path> files) throws IOException {
+		MessageDigest digest = newDigest();
+		for (Path file : files) {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			update(digest, file.getFileName().toString());
+			update(digest, Long.toString(attributes.size()));
+			update(digest, Long.toString(attributes.lastModifiedTime().toMillis()));
+		}
+		return toHexString(digest.digest());
+	}
+	
+}
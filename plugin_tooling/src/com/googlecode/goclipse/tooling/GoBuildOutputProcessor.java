@@ -12,9 +12,14 @@ package com.googlecode.goclipse.tooling;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Path;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
 
 import melnorme.lang.tooling.data.StatusLevel;
 import melnorme.lang.tooling.ops.BuildOutputParser;
@@ -22,6 +27,11 @@ import melnorme.lang.tooling.ops.SourceLineColumnRange;
 import melnorme.lang.tooling.ops.ToolSourceMessage;
 import melnorme.utilbox.collections.ArrayList2;
 import melnorme.utilbox.core.CommonException;
+import melnorme.utilbox.misc.ChunkedByteBuffer;
+import melnorme.utilbox.misc.StreamUtil;
+import melnorme.utilbox.misc.StringUtil;
+import melnorme.utilbox.process.ExternalProcessHelper.ExternalProcessResult;
+import melnorme.utilbox.process.ExternalProcessNotifyingHelper.IProcessOutputListener;
 
 public abstract class GoBuildOutputProcessor extends BuildOutputParser {
 	
@@ -32,65 +42,129 @@ public abstract class GoBuildOutputProcessor extends BuildOutputParser {
 		return buildMessages;
 	}
 	
-	protected static final Pattern ERROR_LINE_Regex = Pattern.compile(
-			"^([^:\\n]*):" + // file
-			"(\\d*):" + // line
-			"((\\d*):)?" + // column
-			"\\s(.*)$" // error message
-	);
+	/* The last error line read: its message may continue in the following lines, indented with a tab. */
+	protected String pendingPathString;
+	protected String pendingLineString;
+	protected String pendingColumnString;
+	protected StringBuilder pendingErrorMessage;
 	
-	public static final Pattern WINDOWS_DRIVE_LETTER = Pattern.compile("[a-zA-Z]:\\\\.*", Pattern.DOTALL);
+	@Override
+	protected ArrayList<ToolSourceMessage> parseMessages(StringReader sr) throws IOException {
+		pendingErrorMessage = null;
+		super.parseMessages(sr);
+		flushPendingError();
+		return buildMessages;
+	}
+	
+	@Override
+	protected ArrayList<ToolSourceMessage> doParse(ExternalProcessResult result) {
+		return parseMessages(result.getStdErrBytes());
+	}
+	
+	/** Parse given output bytes (in UTF-8), without decoding them into a single string. */
+	public ArrayList2<ToolSourceMessage> parseMessages(ChunkedByteBuffer output) {
+		IncrementalParser parser = createIncrementalParser();
+		parser.parseCompleteOutput(output);
+		parser.finish();
+		return buildMessages;
+	}
 	
 	@Override
 	protected void doParseLine(String outputLine, BufferedReader br) throws IOException {
-			if(outputLine.startsWith("# ")) {
-				// Not necessary for now
-				return;
-			}
-			
-			String pathDevicePrefix = "";
-			
-			if(WINDOWS_DRIVE_LETTER.matcher(outputLine).matches()) {
-				// Remove Windows drive letter from path, cause it will mess up regex
-				pathDevicePrefix = outputLine.substring(0, 2);
-				outputLine = outputLine.substring(2);
-			}
-			
-			if(!outputLine.contains(":")) {
-				return; // Ignore line
-			}
-			
-			Matcher matcher = ERROR_LINE_Regex.matcher(outputLine);
-			if(!matcher.matches()) {
-				handleUnknownLineSyntax(outputLine);
-				return;
-			}
-			
-			String pathString = pathDevicePrefix + matcher.group(1);
-			String lineString = matcher.group(2);
-			String columnString = matcher.group(4);
-			String errorMessage = matcher.group(5);
-			
-			while(true) {
-				br.mark(1);
-				int readChar = br.read();
-				if(readChar == '\t') {
-					br.reset();
-					errorMessage = errorMessage + "\n" + br.readLine(); 
-				} else {
-					if(readChar != -1) {
-						br.reset(); // reset not supported on EOF
-					}
-					break;
-				}
-			}
-			
-			try {
-				addBuildError(parseError(pathString, lineString, columnString, errorMessage));
-			} catch (CommonException ce) {
-				handleLineParseError(ce);
-				return;
+		handleOutputLine(outputLine);
+	}
+	
+	/**
+	 * Parse given output line. The line is scanned by hand for the error line syntax: 
+	 * <code>file:line:[column:] message</code>, where file may start with a Windows drive letter.
+	 * Given line is not retained (it may be a reused buffer). 
+	 */
+	protected void handleOutputLine(CharSequence outputLine) {
+		int length = outputLine.length();
+		
+		if(pendingErrorMessage != null && length > 0 && outputLine.charAt(0) == '\t') {
+			pendingErrorMessage.append('\n').append(outputLine);
+			return;
+		}
+		flushPendingError();
+		
+		if(length >= 2 && outputLine.charAt(0) == '#' && outputLine.charAt(1) == ' ') {
+			// Not necessary for now
+			return;
+		}
+		
+		// Skip the Windows drive letter of the path, if any, since it contains a ':'
+		int pathEnd = indexOf(outputLine, ':', startsWithDriveLetter(outputLine) ? 2 : 0);
+		if(pathEnd == -1) {
+			return; // Ignore line
+		}
+		
+		int lineEnd = skipDigits(outputLine, pathEnd + 1);
+		if(lineEnd == length || outputLine.charAt(lineEnd) != ':') {
+			handleUnknownLineSyntax(outputLine.toString());
+			return;
+		}
+		
+		int pos = lineEnd + 1;
+		String columnString = null;
+		int columnEnd = skipDigits(outputLine, pos);
+		if(columnEnd + 1 < length && outputLine.charAt(columnEnd) == ':' && 
+				isWhitespace(outputLine.charAt(columnEnd + 1))) {
+			columnString = outputLine.subSequence(pos, columnEnd).toString();
+			pos = columnEnd + 1;
+		}
+		if(pos == length || !isWhitespace(outputLine.charAt(pos))) {
+			handleUnknownLineSyntax(outputLine.toString());
+			return;
+		}
+		
+		pendingPathString = outputLine.subSequence(0, pathEnd).toString();
+		pendingLineString = outputLine.subSequence(pathEnd + 1, lineEnd).toString();
+		pendingColumnString = columnString;
+		pendingErrorMessage = new StringBuilder(length - pos).append(outputLine, pos + 1, length);
+	}
+	
+	protected static boolean startsWithDriveLetter(CharSequence chars) {
+		if(chars.length() < 3 || chars.charAt(1) != ':' || chars.charAt(2) != '\\') {
+			return false;
+		}
+		char drive = chars.charAt(0);
+		return (drive >= 'a' && drive <= 'z') || (drive >= 'A' && drive <= 'Z');
+	}
+	
+	protected static int indexOf(CharSequence chars, char ch, int fromIndex) {
+		for (int i = fromIndex; i < chars.length(); i++) {
+			if(chars.charAt(i) == ch) {
+				return i;
 			}
+		}
+		return -1;
+	}
+	
+	protected static int skipDigits(CharSequence chars, int pos) {
+		while(pos < chars.length() && chars.charAt(pos) >= '0' && chars.charAt(pos) <= '9') {
+			pos++;
+		}
+		return pos;
+	}
+	
+	/** Same as the regex \s character class. */
+	protected static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+	}
+	
+	protected void flushPendingError() {
+		if(pendingErrorMessage == null) {
+			return;
+		}
+		String errorMessage = pendingErrorMessage.toString();
+		pendingErrorMessage = null;
+		
+		try {
+			addBuildError(parseError(pendingPathString, pendingLineString, pendingColumnString, errorMessage));
+		} catch (CommonException ce) {
+			handleLineParseError(ce);
+		}
 	}
 	
 	protected ToolSourceMessage parseError(String pathString, String lineString,
@@ -107,4 +181,131 @@ public abstract class GoBuildOutputProcessor extends BuildOutputParser {
 		buildMessages.add(be);
 	}
 	
+	/* -----------------  ----------------- */
+	
+	/**
+	 * Create a listener that parses the stderr output of a build process as it is read, 
+	 * so that the whole output doesn't need to be kept. 
+	 * Parsing starts anew, the messages are available from {@link IncrementalParser#takeNewMessages()}.
+	 */
+	public IncrementalParser createIncrementalParser() {
+		synchronized(this) {
+			buildMessages = new ArrayList2<>();
+			pendingErrorMessage = null;
+		}
+		return new IncrementalParser();
+	}
+	
+	public class IncrementalParser implements IProcessOutputListener {
+		
+		protected final CharsetDecoder decoder = StringUtil.UTF8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		/** Bytes of an incomplete character, at the end of the last chunk. */
+		protected ByteBuffer pendingBytes = ByteBuffer.allocate(0);
+		protected final StringBuilder currentLine = new StringBuilder();
+		protected boolean skipLineFeed = false;
+		protected int takenMessagesCount = 0;
+		
+		@Override
+		public void notifyStdOutListeners(byte[] buffer, int offset, int readCount) {
+			// Go build messages are written to stderr only
+		}
+		
+		@Override
+		public void notifyStdErrListeners(byte[] buffer, int offset, int readCount) {
+			ByteBuffer input = ByteBuffer.allocate(pendingBytes.remaining() + readCount);
+			input.put(pendingBytes).put(buffer, offset, readCount).flip();
+			
+			CharBuffer chars = CharBuffer.allocate(input.remaining());
+			decoder.decode(input, chars, false);
+			pendingBytes = input.slice();
+			chars.flip();
+			
+			synchronized(GoBuildOutputProcessor.this) {
+				handleChars(chars);
+			}
+		}
+		
+		/** Split given chars into lines, the same way as {@link BufferedReader#readLine()}. */
+		protected void handleChars(CharBuffer chars) {
+			while(chars.hasRemaining()) {
+				char ch = chars.get();
+				if(skipLineFeed) {
+					skipLineFeed = false;
+					if(ch == '\n') {
+						continue;
+					}
+				}
+				if(ch == '\r' || ch == '\n') {
+					skipLineFeed = ch == '\r';
+					handleOutputLine(currentLine);
+					currentLine.setLength(0);
+				} else {
+					currentLine.append(ch);
+				}
+			}
+		}
+		
+		/**
+		 * Parse the complete output of a process. Used to parse the output of several processes in sequence.
+		 */
+		public void parseCompleteOutput(ChunkedByteBuffer output) {
+			byte[] buffer = new byte[8192];
+			InputStream is = output.asInputStream();
+			try {
+				int count;
+				while((count = is.read(buffer, 0, buffer.length)) != StreamUtil.EOF) {
+					notifyStdErrListeners(buffer, 0, count);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e); // Can't happen, the output is in memory
+			}
+			endOutput();
+		}
+		
+		@Override
+		public void notifyProcessTerminatedAndRead(int exitCode) {
+			// Use finish() instead: this is notified after process termination is signaled to waiting threads.
+		}
+		
+		/** Parse the remaining output. To be called once all output was read. */
+		public void finish() {
+			endOutput();
+			synchronized(GoBuildOutputProcessor.this) {
+				flushPendingError();
+			}
+		}
+		
+		/** Parse the remaining bytes, and the last line even if not terminated. */
+		protected void endOutput() {
+			CharBuffer chars = CharBuffer.allocate(pendingBytes.remaining() * 2 + 2);
+			decoder.decode(pendingBytes, chars, true);
+			decoder.flush(chars);
+			decoder.reset();
+			pendingBytes = ByteBuffer.allocate(0);
+			chars.flip();
+			
+			synchronized(GoBuildOutputProcessor.this) {
+				handleChars(chars);
+				if(currentLine.length() > 0) {
+					handleOutputLine(currentLine);
+					currentLine.setLength(0);
+				}
+				skipLineFeed = false;
+			}
+		}
+		
+		/** @return the messages parsed since the last call. */
+		public ArrayList2<ToolSourceMessage> takeNewMessages() {
+			synchronized(GoBuildOutputProcessor.this) {
+				ArrayList2<ToolSourceMessage> newMessages = new ArrayList2<>();
+				newMessages.addAll(buildMessages.subList(takenMessagesCount, buildMessages.size()));
+				takenMessagesCount = buildMessages.size();
+				return newMessages;
+			}
+		}
+		
+	}
+	
 }
\ No newline at end of file
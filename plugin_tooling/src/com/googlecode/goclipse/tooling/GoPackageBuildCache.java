@@ -0,0 +1,345 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import static com.googlecode.goclipse.tooling.FileFingerprints.newDigest;
+import static com.googlecode.goclipse.tooling.FileFingerprints.toHexString;
+import static com.googlecode.goclipse.tooling.FileFingerprints.update;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import melnorme.lang.tooling.data.StatusLevel;
+import melnorme.lang.tooling.ops.SourceLineColumnRange;
+import melnorme.lang.tooling.ops.ToolSourceMessage;
+import melnorme.utilbox.collections.ArrayList2;
+import melnorme.utilbox.misc.Location;
+import melnorme.utilbox.misc.PathUtil;
+
+import com.googlecode.goclipse.tooling.env.GoPath;
+
+/**
+ * A cache of the build messages of each package, keyed by a fingerprint of the package:
+ * its files, the fingerprints of the project packages it imports, and the build settings.
+ * A package whose fingerprint didn't change since it was last built successfully doesn't need to be built again.
+ */
+public class GoPackageBuildCache {
+	
+	protected static final int FORMAT_VERSION = 1;
+	
+	protected static class CacheEntry {
+		
+		protected final String fingerprint;
+		protected final ArrayList<ToolSourceMessage> messages;
+		
+		public CacheEntry(String fingerprint, ArrayList<ToolSourceMessage> messages) {
+			this.fingerprint = fingerprint;
+			this.messages = messages;
+		}
+		
+	}
+	
+	protected final HashMap<GoPackageName, CacheEntry> entries = new HashMap<>();
+	/** Digests of file contents, with the file size and modification time they were computed for. Not persisted. */
+	protected final HashMap<Path, FileDigest> fileDigests = new HashMap<>();
+	protected boolean dirty = false;
+	
+	public GoPackageBuildCache() {
+	}
+	
+	/** @return the build messages of given package if its fingerprint matches the cached one, null otherwise. */
+	public synchronized ArrayList2<ToolSourceMessage> getCachedMessages(GoPackageName goPackage,
+			String fingerprint) {
+		CacheEntry entry = entries.get(goPackage);
+		if(entry == null || !entry.fingerprint.equals(fingerprint)) {
+			return null;
+		}
+		return new ArrayList2<>(entry.messages);
+	}
+	
+	public synchronized void putEntry(GoPackageName goPackage, String fingerprint,
+			Collection<ToolSourceMessage> messages) {
+		entries.put(goPackage, new CacheEntry(fingerprint, new ArrayList<>(messages)));
+		dirty = true;
+	}
+	
+	public synchronized void removeEntry(GoPackageName goPackage) {
+		if(entries.remove(goPackage) != null) {
+			dirty = true;
+		}
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+		fileDigests.clear();
+		dirty = true;
+	}
+	
+	/* ----------------- Fingerprints ----------------- */
+	
+	public FingerprintCalculator createFingerprintCalculator(GoPackageDependencyGraph graph, GoPath goPath,
+			String buildSettings) {
+		return new FingerprintCalculator(graph, goPath, buildSettings);
+	}
+	
+	/**
+	 * Computes the fingerprints of the packages of a dependency graph, for given build settings.
+	 * The fingerprint of a package covers the packages it imports, directly or indirectly: the packages of the graph, 
+	 * and the other packages of the GOPATH, whose files are only fingerprinted by name, size and modification time.
+	 * GOROOT packages only change along with the toolchain, which the build settings must cover.
+	 */
+	public class FingerprintCalculator {
+		
+		protected final GoPackageDependencyGraph graph;
+		protected final GoPath goPath;
+		protected final String buildSettings;
+		protected final HashMap<GoPackageName, String> fingerprints = new HashMap<>();
+		/** The fingerprints of the GOPATH packages outside of the graph. Null for packages not in the GOPATH. */
+		protected final HashMap<GoPackageName, String> externalFingerprints = new HashMap<>();
+		
+		public FingerprintCalculator(GoPackageDependencyGraph graph, GoPath goPath, String buildSettings) {
+			this.graph = graph;
+			this.goPath = goPath;
+			this.buildSettings = buildSettings;
+		}
+		
+		public String getFingerprint(GoPackageName goPackage) throws IOException {
+			String fingerprint = fingerprints.get(goPackage);
+			if(fingerprint != null) {
+				return fingerprint;
+			}
+			fingerprints.put(goPackage, ""); // In case of an import cycle
+			
+			MessageDigest digest = newDigest();
+			update(digest, buildSettings);
+			
+			Location packageDir = graph.getPackageLocation(goPackage);
+			if(packageDir != null) {
+				for (Path file : getPackageFiles(packageDir)) {
+					BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+					update(digest, file.getFileName().toString());
+					update(digest, Long.toString(attributes.size()));
+					digest.update(getFileDigest(file, attributes));
+				}
+			}
+			
+			updateImports(digest, graph.getImports(goPackage));
+			
+			fingerprint = toHexString(digest.digest());
+			fingerprints.put(goPackage, fingerprint);
+			return fingerprint;
+		}
+		
+		protected void updateImports(MessageDigest digest, Collection<GoPackageName> importedPackages)
+				throws IOException {
+			ArrayList<String> imports = new ArrayList<>();
+			for (GoPackageName importedPackage : importedPackages) {
+				imports.add(importedPackage.getFullNameAsString());
+			}
+			Collections.sort(imports);
+			for (String importedPackage : imports) {
+				GoPackageName goPackage = new GoPackageName(importedPackage);
+				String importFingerprint = graph.containsPackage(goPackage) ? 
+						getFingerprint(goPackage) : getExternalFingerprint(goPackage);
+				if(importFingerprint != null) {
+					update(digest, importedPackage);
+					update(digest, importFingerprint);
+				}
+			}
+		}
+		
+		/** @return the fingerprint of given package outside of the graph, or null if it's not in the GOPATH. */
+		protected String getExternalFingerprint(GoPackageName goPackage) throws IOException {
+			if(externalFingerprints.containsKey(goPackage)) {
+				return externalFingerprints.get(goPackage);
+			}
+			externalFingerprints.put(goPackage, null); // In case of an import cycle
+			
+			Location packageDir = findGoPathPackage(goPackage);
+			if(packageDir == null) {
+				return null;
+			}
+			MessageDigest digest = newDigest();
+			update(digest, FileFingerprints.getFilesFingerprint(getPackageFiles(packageDir)));
+			ArrayList<GoPackageName> imports = new ArrayList<>();
+			GoPackageDependencyGraph.readPackageImports(packageDir, imports);
+			updateImports(digest, imports);
+			
+			String fingerprint = toHexString(digest.digest());
+			externalFingerprints.put(goPackage, fingerprint);
+			return fingerprint;
+		}
+		
+		protected Location findGoPathPackage(GoPackageName goPackage) {
+			for (String goPathEntry : goPath.getGoPathEntries()) {
+				Location goPathEntryLoc = Location.createValidOrNull(PathUtil.createPathOrNull(goPathEntry));
+				if(goPathEntryLoc == null) {
+					continue;
+				}
+				Location packageDir = goPathEntryLoc.resolve_fromValid(GoPath.SRC_DIR)
+						.resolve_fromValid(goPackage.getFullNameAsString());
+				if(Files.isDirectory(packageDir.toPath())) {
+					return packageDir;
+				}
+			}
+			return null;
+		}
+		
+	}
+	
+	/** @return the files of given package directory, sorted by name. Ignores the files the go tool ignores. */
+	protected static ArrayList<Path> getPackageFiles(Location packageDir) throws IOException {
+		ArrayList<Path> files = new ArrayList<>();
+		try(DirectoryStream<Path> dirStream = Files.newDirectoryStream(packageDir.toPath())) {
+			for (Path file : dirStream) {
+				String fileName = file.getFileName().toString();
+				if(!fileName.startsWith(".") && !fileName.startsWith("_") && Files.isRegularFile(file)) {
+					files.add(file);
+				}
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
+	
+	protected static class FileDigest {
+		
+		protected final long size;
+		protected final long lastModified;
+		protected final byte[] digest;
+		
+		public FileDigest(long size, long lastModified, byte[] digest) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+		
+	}
+	
+	protected synchronized byte[] getFileDigest(Path file, BasicFileAttributes attributes) throws IOException {
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		FileDigest fileDigest = fileDigests.get(file);
+		if(fileDigest != null && fileDigest.size == attributes.size() && fileDigest.lastModified == lastModified) {
+			return fileDigest.digest;
+		}
+		
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[8192];
+		try(InputStream is = Files.newInputStream(file)) {
+			int read;
+			while((read = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		fileDigest = new FileDigest(attributes.size(), lastModified, digest.digest());
+		fileDigests.put(file, fileDigest);
+		return fileDigest.digest;
+	}
+	
+	/* ----------------- Persistence ----------------- */
+	
+	/** Load the cache from given file. If the file doesn't exist, or is from another version, the cache is cleared. */
+	public synchronized void load(Location cacheFile) throws IOException {
+		entries.clear();
+		dirty = false;
+		
+		try(DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+			if(in.readInt() != FORMAT_VERSION) {
+				return;
+			}
+			int entryCount = in.readInt();
+			for (int i = 0; i < entryCount; i++) {
+				GoPackageName goPackage = new GoPackageName(in.readUTF());
+				String fingerprint = in.readUTF();
+				int messageCount = in.readInt();
+				ArrayList<ToolSourceMessage> messages = new ArrayList<>();
+				for (int j = 0; j < messageCount; j++) {
+					messages.add(readMessage(in));
+				}
+				entries.put(goPackage, new CacheEntry(fingerprint, messages));
+			}
+		} catch (NoSuchFileException e) {
+			return;
+		} catch (IOException | RuntimeException e) {
+			entries.clear();
+			throw e instanceof IOException ? (IOException) e : new IOException(e);
+		}
+	}
+	
+	/** Save the cache to given file, if it changed since it was last loaded or saved. */
+	public synchronized void save(Location cacheFile) throws IOException {
+		if(!dirty) {
+			return;
+		}
+		Files.createDirectories(cacheFile.toPath().getParent());
+		Path tempFile = Files.createTempFile(cacheFile.toPath().getParent(), "buildCache", ".tmp");
+		try {
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(entries.size());
+				for (Entry<GoPackageName, CacheEntry> entry : entries.entrySet()) {
+					out.writeUTF(entry.getKey().getFullNameAsString());
+					out.writeUTF(entry.getValue().fingerprint);
+					out.writeInt(entry.getValue().messages.size());
+					for (ToolSourceMessage message : entry.getValue().messages) {
+						writeMessage(out, message);
+					}
+				}
+			}
+			Files.move(tempFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+		dirty = false;
+	}
+	
+	protected static void writeMessage(DataOutputStream out, ToolSourceMessage message) throws IOException {
+		SourceLineColumnRange range = message.range;
+		out.writeUTF(range.path.toString());
+		out.writeInt(range.line);
+		out.writeInt(range.column);
+		out.writeInt(range.endLine);
+		out.writeInt(range.endColumn);
+		out.writeUTF(message.getMessageKind().name());
+		out.writeUTF(message.getMessage());
+	}
+	
+	protected static ToolSourceMessage readMessage(DataInputStream in) throws IOException {
+		Path path = Paths.get(in.readUTF());
+		int line = in.readInt();
+		int column = in.readInt();
+		int endLine = in.readInt();
+		int endColumn = in.readInt();
+		StatusLevel kind = StatusLevel.valueOf(in.readUTF());
+		String message = in.readUTF();
+		return new ToolSourceMessage(new SourceLineColumnRange(path, line, column, endLine, endColumn), kind, message);
+	}
+	
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import melnorme.utilbox.concurrency.ICancelMonitor;
+import melnorme.utilbox.concurrency.NamingThreadFactory;
+import melnorme.utilbox.concurrency.OperationCancellation;
+import melnorme.utilbox.core.CommonException;
+
+/**
+ * Builds a set of Go packages as separate jobs, running in a bounded pool of worker threads.
+ *
+ * Jobs are run in dependency order: a package is only built after the packages it imports
+ * (of those being built) were built successfully. If a package fails to build, the packages that import it
+ * are skipped, since their build would just fail again with the same errors.
+ */
+public class GoPackageBuildScheduler {
+	
+	/** A job building a single package. Called from the worker threads. */
+	public interface IPackageBuildJob {
+		
+		/** @return whether the package was built successfully. */
+		boolean buildPackage(GoPackageName goPackage) throws CommonException, OperationCancellation;
+		
+	}
+	
+	public static int getDefaultPoolSize() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+	
+	protected final int poolSize;
+	
+	/** @param poolSize the maximum number of jobs to run in parallel. If not positive, use the default. */
+	public GoPackageBuildScheduler(int poolSize) {
+		this.poolSize = poolSize > 0 ? poolSize : getDefaultPoolSize();
+	}
+	
+	protected static class PackageBuildResult {
+		
+		protected final GoPackageName goPackage;
+		protected final boolean success;
+		
+		public PackageBuildResult(GoPackageName goPackage, boolean success) {
+			this.goPackage = goPackage;
+			this.success = success;
+		}
+		
+	}
+	
+	/**
+	 * Build given packages, in the dependency order given by given graph.
+	 * @return the packages that were built, in order of completion (excluding skipped packages).
+	 */
+	public ArrayList<GoPackageName> run(Collection<GoPackageName> packages, GoPackageDependencyGraph graph,
+			IPackageBuildJob job, ICancelMonitor cm) throws CommonException, OperationCancellation {
+		
+		// The packages not yet started, and for each of those, the number of imports not yet built.
+		LinkedHashSet<GoPackageName> waitingPackages = new LinkedHashSet<>(packages);
+		HashMap<GoPackageName, Integer> pendingImportCount = new HashMap<>();
+		HashMap<GoPackageName, ArrayList<GoPackageName>> importers = new HashMap<>();
+		for (GoPackageName goPackage : waitingPackages) {
+			int importCount = 0;
+			for (GoPackageName importedPackage : graph.getImports(goPackage)) {
+				if(!waitingPackages.contains(importedPackage) || importedPackage.equals(goPackage)) {
+					continue;
+				}
+				importCount++;
+				ArrayList<GoPackageName> packageImporters = importers.get(importedPackage);
+				if(packageImporters == null) {
+					packageImporters = new ArrayList<>();
+					importers.put(importedPackage, packageImporters);
+				}
+				packageImporters.add(goPackage);
+			}
+			pendingImportCount.put(goPackage, importCount);
+		}
+		
+		ArrayList<GoPackageName> builtPackages = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+			new NamingThreadFactory("Go package build"));
+		ExecutorCompletionService<PackageBuildResult> completionService =
+				new ExecutorCompletionService<>(executor);
+		try {
+			int runningCount = 0;
+			for (GoPackageName goPackage : new ArrayList<>(waitingPackages)) {
+				if(pendingImportCount.get(goPackage) == 0) {
+					submitJob(completionService, job, goPackage);
+					waitingPackages.remove(goPackage);
+					runningCount++;
+				}
+			}
+			
+			while(runningCount > 0 || !waitingPackages.isEmpty()) {
+				if(runningCount == 0) {
+					// The remaining packages have an import cycle: build them anyways, so that errors are reported.
+					for (GoPackageName goPackage : waitingPackages) {
+						submitJob(completionService, job, goPackage);
+						runningCount++;
+					}
+					waitingPackages.clear();
+				}
+				
+				PackageBuildResult result = awaitJob(completionService, cm);
+				runningCount--;
+				builtPackages.add(result.goPackage);
+				
+				ArrayList<GoPackageName> packageImporters = importers.get(result.goPackage);
+				if(packageImporters == null) {
+					continue;
+				}
+				if(!result.success) {
+					skipImporters(result.goPackage, importers, waitingPackages);
+					continue;
+				}
+				for (GoPackageName importer : packageImporters) {
+					if(!waitingPackages.contains(importer)) {
+						continue;
+					}
+					int importCount = pendingImportCount.get(importer) - 1;
+					pendingImportCount.put(importer, importCount);
+					if(importCount == 0) {
+						submitJob(completionService, job, importer);
+						waitingPackages.remove(importer);
+						runningCount++;
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return builtPackages;
+	}
+	
+	protected void submitJob(ExecutorCompletionService<PackageBuildResult> completionService,
+			final IPackageBuildJob job, final GoPackageName goPackage) {
+		completionService.submit(new Callable<PackageBuildResult>() {
+			@Override
+			public PackageBuildResult call() throws Exception {
+				return new PackageBuildResult(goPackage, job.buildPackage(goPackage));
+			}
+		});
+	}
+	
+	protected PackageBuildResult awaitJob(ExecutorCompletionService<PackageBuildResult> completionService,
+			ICancelMonitor cm) throws CommonException, OperationCancellation {
+		try {
+			while(true) {
+				if(cm.isCanceled()) {
+					throw new OperationCancellation();
+				}
+				Future<PackageBuildResult> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+				if(future != null) {
+					return future.get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCancellation();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof CommonException) {
+				throw (CommonException) cause;
+			}
+			if(cause instanceof OperationCancellation) {
+				throw (OperationCancellation) cause;
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new CommonException("Error building package: " + cause, cause);
+		}
+	}
+	
+	protected void skipImporters(GoPackageName failedPackage, HashMap<GoPackageName,
+			ArrayList<GoPackageName>> importers, LinkedHashSet<GoPackageName> waitingPackages) {
+		ArrayList<GoPackageName> packageImporters = importers.get(failedPackage);
+		if(packageImporters == null) {
+			return;
+		}
+		for (GoPackageName importer : packageImporters) {
+			if(waitingPackages.remove(importer)) {
+				skipImporters(importer, importers, waitingPackages);
+			}
+		}
+	}
+	
+}
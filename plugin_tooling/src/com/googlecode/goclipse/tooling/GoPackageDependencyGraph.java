@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling;
+
+import static melnorme.utilbox.core.CoreUtil.listFrom;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import melnorme.utilbox.misc.Location;
+
+import com.googlecode.goclipse.tooling.env.GoPath;
+
+/**
+ * The import dependencies between the Go packages of a source folder,
+ * used to determine which packages need to be rebuilt when some packages change.
+ */
+public class GoPackageDependencyGraph {
+	
+	protected final HashMap<GoPackageName, Location> packageLocations = new HashMap<>();
+	protected final HashMap<GoPackageName, Set<GoPackageName>> packageImports = new HashMap<>();
+	
+	public GoPackageDependencyGraph() {
+	}
+	
+	/**
+	 * Create the graph of the packages in given source folder (and sub-folders),
+	 * which must be in a GOPATH entry of given goPath.
+	 */
+	public static GoPackageDependencyGraph create(GoPath goPath, Location sourceFolder) throws IOException {
+		Location goPathEntry = goPath.findGoPathEntry(sourceFolder);
+		if(goPathEntry == null) {
+			throw new IOException("Source folder not in GOPATH: " + sourceFolder);
+		}
+		
+		final IOException[] visitException = new IOException[1];
+		GoPackagesVisitor packagesVisitor = new GoPackagesVisitor(goPathEntry, listFrom(sourceFolder)) {
+			@Override
+			protected FileVisitResult handleFileVisitException(Path file, IOException exc) {
+				visitException[0] = exc;
+				return FileVisitResult.TERMINATE;
+			}
+		};
+		if(visitException[0] != null) {
+			throw visitException[0];
+		}
+		
+		GoPackageDependencyGraph graph = new GoPackageDependencyGraph();
+		for (Path packagePath : packagesVisitor.getModuleFiles()) {
+			Location packageLoc = Location.create_fromValid(packagePath);
+			graph.updatePackage(GoPath.getGoPackageForPath(goPathEntry, packageLoc), packageLoc);
+		}
+		return graph;
+	}
+	
+	/**
+	 * (Re)read the imports of given package, located at given directory.
+	 * If the directory has no Go source files anymore, the package is removed.
+	 */
+	public synchronized void updatePackage(GoPackageName goPackage, Location packageDir) throws IOException {
+		HashSet<GoPackageName> imports = new HashSet<>();
+		if(!readPackageImports(packageDir, imports)) {
+			removePackage(goPackage);
+			return;
+		}
+		packageLocations.put(goPackage, packageDir);
+		packageImports.put(goPackage, imports);
+	}
+	
+	public synchronized void removePackage(GoPackageName goPackage) {
+		packageLocations.remove(goPackage);
+		packageImports.remove(goPackage);
+	}
+	
+	public synchronized boolean containsPackage(GoPackageName goPackage) {
+		return packageLocations.containsKey(goPackage);
+	}
+	
+	/** @return the directory of given package, or null if the package is not in the graph. */
+	public synchronized Location getPackageLocation(GoPackageName goPackage) {
+		return packageLocations.get(goPackage);
+	}
+	
+	/** @return the packages imported by given package. Empty if the package is not in the graph. */
+	public synchronized HashSet<GoPackageName> getImports(GoPackageName goPackage) {
+		Set<GoPackageName> imports = packageImports.get(goPackage);
+		return imports == null ? new HashSet<GoPackageName>() : new HashSet<>(imports);
+	}
+	
+	/** @return all the packages in the graph. */
+	public synchronized HashSet<GoPackageName> getPackages() {
+		return new HashSet<>(packageLocations.keySet());
+	}
+	
+	/**
+	 * @return given packages, and all packages of the graph that import them, directly or indirectly.
+	 */
+	public synchronized LinkedHashSet<GoPackageName> getPackagesAndDependents(Collection<GoPackageName> packages) {
+		HashMap<GoPackageName, HashSet<GoPackageName>> importers = new HashMap<>();
+		for (Entry<GoPackageName, Set<GoPackageName>> entry : packageImports.entrySet()) {
+			for (GoPackageName importedPackage : entry.getValue()) {
+				HashSet<GoPackageName> packageImporters = importers.get(importedPackage);
+				if(packageImporters == null) {
+					packageImporters = new HashSet<>();
+					importers.put(importedPackage, packageImporters);
+				}
+				packageImporters.add(entry.getKey());
+			}
+		}
+		
+		LinkedHashSet<GoPackageName> result = new LinkedHashSet<>(packages);
+		ArrayDeque<GoPackageName> pending = new ArrayDeque<>(packages);
+		while(!pending.isEmpty()) {
+			HashSet<GoPackageName> packageImporters = importers.get(pending.remove());
+			if(packageImporters == null) {
+				continue;
+			}
+			for (GoPackageName importer : packageImporters) {
+				if(result.add(importer)) {
+					pending.add(importer);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/* -----------------  ----------------- */
+	
+	/**
+	 * Read the imports of the Go source files in given directory (not including sub-directories).
+	 * @return whether the directory has Go source files.
+	 */
+	public static boolean readPackageImports(Location packageDir, Collection<GoPackageName> imports)
+			throws IOException {
+		if(!Files.isDirectory(packageDir.toPath())) {
+			return false;
+		}
+		boolean hasSourceFiles = false;
+		try(DirectoryStream<Path> dirStream = Files.newDirectoryStream(packageDir.toPath(), "*.go")) {
+			for (Path file : dirStream) {
+				String fileName = file.getFileName().toString();
+				if(fileName.startsWith(".") || fileName.startsWith("_") || !Files.isRegularFile(file)) {
+					continue;
+				}
+				hasSourceFiles = true;
+				String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+				for (String importPath : parseImports(source)) {
+					imports.add(new GoPackageName(importPath));
+				}
+			}
+		}
+		return hasSourceFiles;
+	}
+	
+	/**
+	 * @return the import paths of the import declarations of given Go source.
+	 * Only the start of the source (the package clause and import declarations) is read.
+	 */
+	public static LinkedHashSet<String> parseImports(String source) {
+		LinkedHashSet<String> imports = new LinkedHashSet<>();
+		ImportsScanner scanner = new ImportsScanner(source);
+		
+		if(!"package".equals(scanner.nextToken()) || scanner.nextToken() == null) {
+			return imports;
+		}
+		String token = scanner.nextToken();
+		while("import".equals(token) || ";".equals(token)) {
+			if(";".equals(token)) {
+				token = scanner.nextToken();
+				continue;
+			}
+			token = scanner.nextToken();
+			if("(".equals(token)) {
+				while((token = scanner.nextToken()) != null && !")".equals(token)) {
+					if(scanner.isStringToken()) {
+						imports.add(scanner.getStringValue());
+					}
+				}
+			} else {
+				if(token != null && !scanner.isStringToken()) {
+					token = scanner.nextToken(); // Import alias, '.' or '_'
+				}
+				if(token != null && scanner.isStringToken()) {
+					imports.add(scanner.getStringValue());
+				}
+			}
+			token = scanner.nextToken();
+		}
+		return imports;
+	}
+	
+	/**
+	 * A very simple Go scanner, enough to read the imports: reads identifiers, string literals
+	 * and single characters, skipping whitespace and comments.
+	 */
+	protected static class ImportsScanner {
+		
+		protected final String source;
+		protected int pos = 0;
+		protected String stringValue;
+		
+		public ImportsScanner(String source) {
+			this.source = source;
+		}
+		
+		public boolean isStringToken() {
+			return stringValue != null;
+		}
+		
+		public String getStringValue() {
+			return stringValue;
+		}
+		
+		/** @return the next token, or null at the end of source. */
+		public String nextToken() {
+			stringValue = null;
+			skipWhitespaceAndComments();
+			if(pos >= source.length()) {
+				return null;
+			}
+			int start = pos;
+			char ch = source.charAt(pos);
+			if(Character.isLetter(ch) || ch == '_') {
+				while(pos < source.length() &&
+						(Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+					pos++;
+				}
+				return source.substring(start, pos);
+			}
+			if(ch == '"' || ch == '`') {
+				StringBuilder value = new StringBuilder();
+				pos++;
+				while(pos < source.length() && source.charAt(pos) != ch) {
+					if(ch == '"' && source.charAt(pos) == '\\' && pos + 1 < source.length()) {
+						pos++;
+					}
+					value.append(source.charAt(pos++));
+				}
+				pos++;
+				stringValue = value.toString();
+				return source.substring(start, Math.min(pos, source.length()));
+			}
+			pos++;
+			return String.valueOf(ch);
+		}
+		
+		protected void skipWhitespaceAndComments() {
+			while(pos < source.length()) {
+				char ch = source.charAt(pos);
+				if(Character.isWhitespace(ch)) {
+					pos++;
+				} else if(source.startsWith("//", pos)) {
+					int lineEnd = source.indexOf('\n', pos);
+					pos = lineEnd == -1 ? source.length() : lineEnd + 1;
+				} else if(source.startsWith("/*", pos)) {
+					int commentEnd = source.indexOf("*/", pos + 2);
+					pos = commentEnd == -1 ? source.length() : commentEnd + 2;
+				} else {
+					return;
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,632 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling.gocode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal implementation of the Go gob encoding (package encoding/gob),
+ * enough to talk to the net/rpc server of the gocode daemon.
+ *
+ * Values are encoded from, and decoded to, plain Java objects:
+ * bool - Boolean, int and uint - Long, float - Double, []byte - byte[], string - String,
+ * slices and arrays - List, maps - Map.
+ * Struct values are encoded from an Object[] with the value of each field,
+ * and decoded to a Map of field name to value (fields with a zero value are not sent, so may be missing).
+ * Interface values are not supported.
+ */
+public class GobCodec {
+	
+	public static final int ID_BOOL = 1;
+	public static final int ID_INT = 2;
+	public static final int ID_UINT = 3;
+	public static final int ID_FLOAT = 4;
+	public static final int ID_BYTES = 5;
+	public static final int ID_STRING = 6;
+	public static final int ID_COMPLEX = 7;
+	public static final int ID_INTERFACE = 8;
+	
+	protected static final int FIRST_USER_TYPE_ID = 65;
+	
+	protected static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+	
+	/* -----------------  types  ----------------- */
+	
+	public static abstract class GobType {
+	}
+	
+	public static class BuiltinType extends GobType {
+		
+		protected final int id;
+		
+		protected BuiltinType(int id) {
+			this.id = id;
+		}
+		
+	}
+	
+	public static final GobType BOOL = new BuiltinType(ID_BOOL);
+	public static final GobType INT = new BuiltinType(ID_INT);
+	public static final GobType UINT = new BuiltinType(ID_UINT);
+	public static final GobType FLOAT = new BuiltinType(ID_FLOAT);
+	public static final GobType BYTES = new BuiltinType(ID_BYTES);
+	public static final GobType STRING = new BuiltinType(ID_STRING);
+	
+	public static class SliceType extends GobType {
+		
+		protected final String name;
+		protected final GobType elemType;
+		
+		public SliceType(String name, GobType elemType) {
+			this.name = name;
+			this.elemType = elemType;
+		}
+		
+	}
+	
+	public static class StructField {
+		
+		protected final String name;
+		protected final GobType type;
+		
+		public StructField(String name, GobType type) {
+			this.name = name;
+			this.type = type;
+		}
+		
+	}
+	
+	public static StructField field(String name, GobType type) {
+		return new StructField(name, type);
+	}
+	
+	public static class StructType extends GobType {
+		
+		protected final String name;
+		protected final StructField[] fields;
+		
+		public StructType(String name, StructField... fields) {
+			this.name = name;
+			this.fields = fields;
+		}
+		
+	}
+	
+	/* -----------------  encoding  ----------------- */
+	
+	/** A gob message being built. */
+	protected static class MessageBuffer extends ByteArrayOutputStream {
+		
+		public void writeUint(long value) {
+			if(value >= 0 && value < 128) {
+				write((int) value);
+				return;
+			}
+			int byteCount = 8 - Long.numberOfLeadingZeros(value) / 8;
+			write(-byteCount & 0xFF);
+			for(int i = byteCount - 1; i >= 0; i--) {
+				write((int) (value >>> (i * 8)));
+			}
+		}
+		
+		public void writeInt(long value) {
+			writeUint(value < 0 ? (~value << 1) | 1 : value << 1);
+		}
+		
+		public void writeBytes(byte[] bytes) {
+			writeUint(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+		
+		public void writeString(String string) {
+			writeBytes(string.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		public void writeTo_withLength(OutputStream out) throws IOException {
+			MessageBuffer lengthBuffer = new MessageBuffer();
+			lengthBuffer.writeUint(size());
+			lengthBuffer.writeTo(out);
+			writeTo(out);
+		}
+		
+	}
+	
+	/**
+	 * Writes values to a gob stream. Type definitions are sent the first time each type is used.
+	 */
+	public static class Encoder {
+		
+		protected final OutputStream out;
+		protected final HashMap<GobType, Integer> sentTypes = new HashMap<>();
+		protected int nextTypeId = FIRST_USER_TYPE_ID;
+		
+		public Encoder(OutputStream out) {
+			this.out = out;
+		}
+		
+		public void encode(GobType type, Object value) throws IOException {
+			sendType(type);
+			
+			MessageBuffer message = new MessageBuffer();
+			message.writeInt(getTypeId(type));
+			if(!(type instanceof StructType)) {
+				message.writeUint(0); // Singleton values are sent as field 0
+			}
+			encodeValue(message, type, value);
+			message.writeTo_withLength(out);
+		}
+		
+		protected int getTypeId(GobType type) {
+			if(type instanceof BuiltinType) {
+				return ((BuiltinType) type).id;
+			}
+			return sentTypes.get(type);
+		}
+		
+		protected void sendType(GobType type) throws IOException {
+			if(type instanceof BuiltinType || sentTypes.containsKey(type)) {
+				return;
+			}
+			int id = nextTypeId++;
+			sentTypes.put(type, id);
+			
+			MessageBuffer message = new MessageBuffer();
+			message.writeInt(-id);
+			
+			// Write a wireType, with the SliceT (field 1) or StructT (field 2) set.
+			if(type instanceof SliceType) {
+				SliceType sliceType = (SliceType) type;
+				sendType(sliceType.elemType);
+				
+				message.writeUint(2);
+				writeCommonType(message, sliceType.name, id);
+				message.writeUint(1);
+				message.writeInt(getTypeId(sliceType.elemType));
+				message.writeUint(0);
+			} else {
+				StructType structType = (StructType) type;
+				for(StructField field : structType.fields) {
+					sendType(field.type);
+				}
+				
+				message.writeUint(3);
+				writeCommonType(message, structType.name, id);
+				if(structType.fields.length > 0) {
+					message.writeUint(1);
+					message.writeUint(structType.fields.length);
+					for(StructField field : structType.fields) {
+						message.writeUint(1);
+						message.writeString(field.name);
+						message.writeUint(1);
+						message.writeInt(getTypeId(field.type));
+						message.writeUint(0);
+					}
+				}
+				message.writeUint(0);
+			}
+			message.writeUint(0);
+			message.writeTo_withLength(out);
+		}
+		
+		protected static void writeCommonType(MessageBuffer message, String name, int id) {
+			message.writeUint(1);
+			message.writeUint(1);
+			message.writeString(name);
+			message.writeUint(1);
+			message.writeInt(id);
+			message.writeUint(0);
+		}
+		
+		protected void encodeValue(MessageBuffer message, GobType type, Object value) throws IOException {
+			if(type instanceof BuiltinType) {
+				switch (((BuiltinType) type).id) {
+				case ID_BOOL: message.writeUint((Boolean) value ? 1 : 0); return;
+				case ID_INT: message.writeInt(((Number) value).longValue()); return;
+				case ID_UINT: message.writeUint(((Number) value).longValue()); return;
+				case ID_FLOAT:
+					message.writeUint(Long.reverseBytes(Double.doubleToLongBits(((Number) value).doubleValue())));
+					return;
+				case ID_BYTES: message.writeBytes((byte[]) value); return;
+				case ID_STRING: message.writeString((String) value); return;
+				}
+			} else if(type instanceof SliceType) {
+				GobType elemType = ((SliceType) type).elemType;
+				List<?> list = (List<?>) value;
+				message.writeUint(list.size());
+				for(Object elem : list) {
+					encodeValue(message, elemType, elem);
+				}
+				return;
+			} else if(type instanceof StructType) {
+				StructField[] fields = ((StructType) type).fields;
+				Object[] fieldValues = (Object[]) value;
+				int lastField = -1;
+				for(int i = 0; i < fields.length; i++) {
+					if(isZero(fieldValues[i])) {
+						continue;
+					}
+					message.writeUint(i - lastField);
+					encodeValue(message, fields[i].type, fieldValues[i]);
+					lastField = i;
+				}
+				message.writeUint(0);
+				return;
+			}
+			throw new IOException("Unsupported gob type.");
+		}
+		
+		protected static boolean isZero(Object value) {
+			if(value == null) {
+				return true;
+			}
+			if(value instanceof Boolean) {
+				return !((Boolean) value);
+			}
+			if(value instanceof Number) {
+				return ((Number) value).doubleValue() == 0;
+			}
+			if(value instanceof String) {
+				return ((String) value).isEmpty();
+			}
+			if(value instanceof byte[]) {
+				return ((byte[]) value).length == 0;
+			}
+			if(value instanceof List) {
+				return ((List<?>) value).isEmpty();
+			}
+			return false;
+		}
+		
+	}
+	
+	/* -----------------  decoding  ----------------- */
+	
+	/** A gob message being read. */
+	protected static class MessageInput {
+		
+		protected final byte[] bytes;
+		protected int pos = 0;
+		
+		public MessageInput(byte[] bytes) {
+			this.bytes = bytes;
+		}
+		
+		protected int readByte() throws IOException {
+			if(pos >= bytes.length) {
+				throw new IOException("Corrupt gob message: unexpected end of message.");
+			}
+			return bytes[pos++] & 0xFF;
+		}
+		
+		public long readUint() throws IOException {
+			int first = readByte();
+			if(first < 128) {
+				return first;
+			}
+			int byteCount = 256 - first;
+			if(byteCount > 8) {
+				throw new IOException("Corrupt gob message: invalid uint.");
+			}
+			long value = 0;
+			for(int i = 0; i < byteCount; i++) {
+				value = (value << 8) | readByte();
+			}
+			return value;
+		}
+		
+		public long readInt() throws IOException {
+			long value = readUint();
+			return (value & 1) != 0 ? ~(value >>> 1) : value >>> 1;
+		}
+		
+		public int readCount() throws IOException {
+			long count = readUint();
+			if(count < 0 || count > bytes.length - pos) {
+				throw new IOException("Corrupt gob message: invalid length.");
+			}
+			return (int) count;
+		}
+		
+		public byte[] readBytes() throws IOException {
+			int length = readCount();
+			byte[] result = new byte[length];
+			System.arraycopy(bytes, pos, result, 0, length);
+			pos += length;
+			return result;
+		}
+		
+		public String readString() throws IOException {
+			int length = readCount();
+			String result = new String(bytes, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			return result;
+		}
+		
+		public double readFloat() throws IOException {
+			return Double.longBitsToDouble(Long.reverseBytes(readUint()));
+		}
+		
+	}
+	
+	protected static enum WireKind { ARRAY, SLICE, STRUCT, MAP, GOB_ENCODER }
+	
+	/** A type definition received in a gob stream. */
+	protected static class WireType {
+		
+		protected final WireKind kind;
+		protected String name;
+		protected int elemId;
+		protected int keyId;
+		protected final ArrayList<String> fieldNames = new ArrayList<>();
+		protected final ArrayList<Integer> fieldIds = new ArrayList<>();
+		
+		public WireType(WireKind kind) {
+			this.kind = kind;
+		}
+		
+	}
+	
+	/**
+	 * Reads values from a gob stream.
+	 */
+	public static class Decoder {
+		
+		protected final InputStream in;
+		protected final HashMap<Integer, WireType> types = new HashMap<>();
+		
+		public Decoder(InputStream in) {
+			this.in = in;
+		}
+		
+		/**
+		 * Read the next value of the stream, reading any type definitions preceding it.
+		 * @throws EOFException if the stream ended before the start of a message.
+		 */
+		public Object decode() throws IOException {
+			while(true) {
+				MessageInput message = readMessage();
+				int typeId = (int) message.readInt();
+				if(typeId < 0) {
+					types.put(-typeId, readWireType(message));
+					continue;
+				}
+				if(!isStructType(typeId) && message.readUint() != 0) {
+					throw new IOException("Corrupt gob message: invalid singleton value.");
+				}
+				return decodeValue(message, typeId);
+			}
+		}
+		
+		protected MessageInput readMessage() throws IOException {
+			int first = in.read();
+			if(first == -1) {
+				throw new EOFException();
+			}
+			long length = first;
+			if(first >= 128) {
+				int byteCount = 256 - first;
+				if(byteCount > 8) {
+					throw new IOException("Corrupt gob stream: invalid message length.");
+				}
+				length = 0;
+				for(int i = 0; i < byteCount; i++) {
+					length = (length << 8) | readStreamByte();
+				}
+			}
+			if(length <= 0 || length > MAX_MESSAGE_SIZE) {
+				throw new IOException("Corrupt gob stream: invalid message length.");
+			}
+			byte[] bytes = new byte[(int) length];
+			int read = 0;
+			while(read < bytes.length) {
+				int count = in.read(bytes, read, bytes.length - read);
+				if(count == -1) {
+					throw new EOFException("Unexpected end of gob stream.");
+				}
+				read += count;
+			}
+			return new MessageInput(bytes);
+		}
+		
+		protected int readStreamByte() throws IOException {
+			int value = in.read();
+			if(value == -1) {
+				throw new EOFException("Unexpected end of gob stream.");
+			}
+			return value;
+		}
+		
+		protected boolean isStructType(int typeId) {
+			WireType wireType = types.get(typeId);
+			return wireType != null && wireType.kind == WireKind.STRUCT;
+		}
+		
+		protected WireType readWireType(MessageInput message) throws IOException {
+			WireType wireType = null;
+			int fieldIndex = -1;
+			long delta;
+			while((delta = message.readUint()) != 0) {
+				fieldIndex += delta;
+				switch (fieldIndex) {
+				case 0: wireType = readTypeDescriptor(message, WireKind.ARRAY); break;
+				case 1: wireType = readTypeDescriptor(message, WireKind.SLICE); break;
+				case 2: wireType = readTypeDescriptor(message, WireKind.STRUCT); break;
+				case 3: wireType = readTypeDescriptor(message, WireKind.MAP); break;
+				case 4: case 5: case 6: wireType = readTypeDescriptor(message, WireKind.GOB_ENCODER); break;
+				default: throw new IOException("Corrupt gob message: invalid type definition.");
+				}
+			}
+			if(wireType == null) {
+				throw new IOException("Corrupt gob message: empty type definition.");
+			}
+			return wireType;
+		}
+		
+		/** Read an arrayType, sliceType, structType, mapType or gobEncoderType. */
+		protected WireType readTypeDescriptor(MessageInput message, WireKind kind) throws IOException {
+			WireType wireType = new WireType(kind);
+			int fieldIndex = -1;
+			long delta;
+			while((delta = message.readUint()) != 0) {
+				fieldIndex += delta;
+				if(fieldIndex == 0) {
+					wireType.name = readCommonTypeName(message);
+				} else if(fieldIndex == 1 && kind == WireKind.STRUCT) {
+					int fieldCount = message.readCount();
+					for(int i = 0; i < fieldCount; i++) {
+						readStructField(message, wireType);
+					}
+				} else if(fieldIndex == 1 && kind == WireKind.MAP) {
+					wireType.keyId = (int) message.readInt();
+				} else if(fieldIndex == 1 && (kind == WireKind.ARRAY || kind == WireKind.SLICE)
+						|| fieldIndex == 2 && kind == WireKind.MAP) {
+					wireType.elemId = (int) message.readInt();
+				} else if(fieldIndex == 2 && kind == WireKind.ARRAY) {
+					message.readInt(); // Len, arrays are sent with their length anyways
+				} else {
+					throw new IOException("Corrupt gob message: invalid type definition.");
+				}
+			}
+			return wireType;
+		}
+		
+		protected String readCommonTypeName(MessageInput message) throws IOException {
+			String name = "";
+			int fieldIndex = -1;
+			long delta;
+			while((delta = message.readUint()) != 0) {
+				fieldIndex += delta;
+				if(fieldIndex == 0) {
+					name = message.readString();
+				} else if(fieldIndex == 1) {
+					message.readInt(); // Id
+				} else {
+					throw new IOException("Corrupt gob message: invalid type definition.");
+				}
+			}
+			return name;
+		}
+		
+		protected void readStructField(MessageInput message, WireType wireType) throws IOException {
+			String name = "";
+			int id = 0;
+			int fieldIndex = -1;
+			long delta;
+			while((delta = message.readUint()) != 0) {
+				fieldIndex += delta;
+				if(fieldIndex == 0) {
+					name = message.readString();
+				} else if(fieldIndex == 1) {
+					id = (int) message.readInt();
+				} else {
+					throw new IOException("Corrupt gob message: invalid type definition.");
+				}
+			}
+			wireType.fieldNames.add(name);
+			wireType.fieldIds.add(id);
+		}
+		
+		protected Object decodeValue(MessageInput message, int typeId) throws IOException {
+			switch (typeId) {
+			case ID_BOOL: return message.readUint() != 0;
+			case ID_INT: return message.readInt();
+			case ID_UINT: return message.readUint();
+			case ID_FLOAT: return message.readFloat();
+			case ID_BYTES: return message.readBytes();
+			case ID_STRING: return message.readString();
+			case ID_COMPLEX: return new double[] { message.readFloat(), message.readFloat() };
+			case ID_INTERFACE: throw new IOException("Gob interface values are not supported.");
+			}
+			
+			WireType wireType = types.get(typeId);
+			if(wireType == null) {
+				throw new IOException("Corrupt gob message: unknown type id " + typeId + ".");
+			}
+			switch (wireType.kind) {
+			case ARRAY:
+			case SLICE: {
+				int count = message.readCount();
+				ArrayList<Object> list = new ArrayList<>(count);
+				for(int i = 0; i < count; i++) {
+					list.add(decodeValue(message, wireType.elemId));
+				}
+				return list;
+			}
+			case MAP: {
+				int count = message.readCount();
+				LinkedHashMap<Object, Object> map = new LinkedHashMap<>();
+				for(int i = 0; i < count; i++) {
+					Object key = decodeValue(message, wireType.keyId);
+					map.put(key, decodeValue(message, wireType.elemId));
+				}
+				return map;
+			}
+			case STRUCT: {
+				LinkedHashMap<String, Object> struct = new LinkedHashMap<>();
+				int fieldIndex = -1;
+				long delta;
+				while((delta = message.readUint()) != 0) {
+					fieldIndex += delta;
+					if(fieldIndex >= wireType.fieldIds.size()) {
+						throw new IOException("Corrupt gob message: invalid field of " + wireType.name + ".");
+					}
+					struct.put(wireType.fieldNames.get(fieldIndex),
+						decodeValue(message, wireType.fieldIds.get(fieldIndex)));
+				}
+				return struct;
+			}
+			case GOB_ENCODER:
+				return message.readBytes();
+			}
+			throw new IOException("Corrupt gob message: unknown type id " + typeId + ".");
+		}
+		
+	}
+	
+	/* -----------------  ----------------- */
+	
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> asStruct(Object value) throws IOException {
+		if(!(value instanceof Map)) {
+			throw new IOException("Unexpected gob value, expected a struct.");
+		}
+		return (Map<String, Object>) value;
+	}
+	
+	/** @return given struct field as a string. "" if the field was not sent (it has a zero value). */
+	public static String getString(Map<String, Object> struct, String fieldName) {
+		Object value = struct.get(fieldName);
+		return value instanceof String ? (String) value : "";
+	}
+	
+	/** @return given struct field as a long. 0 if the field was not sent (it has a zero value). */
+	public static long getLong(Map<String, Object> struct, String fieldName) {
+		Object value = struct.get(fieldName);
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+	
+	/** @return given struct field as a list. Empty if the field was not sent (it has a zero value). */
+	public static List<?> getList(Map<String, Object> struct, String fieldName) {
+		Object value = struct.get(fieldName);
+		return value instanceof List ? (List<?>) value : new ArrayList<>();
+	}
+	
+}
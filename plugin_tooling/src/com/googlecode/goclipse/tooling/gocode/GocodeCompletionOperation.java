@@ -15,6 +15,7 @@ import java.util.regex.Pattern;
 import melnorme.lang.tooling.ops.AbstractToolOperation;
 import melnorme.lang.tooling.ops.IOperationHelper;
 import melnorme.utilbox.collections.ArrayList2;
+import melnorme.utilbox.concurrency.ICancelMonitor;
 import melnorme.utilbox.concurrency.OperationCancellation;
 import melnorme.utilbox.core.CommonException;
 import melnorme.utilbox.process.ExternalProcessHelper.ExternalProcessResult;
@@ -28,14 +29,28 @@ public class GocodeCompletionOperation extends AbstractToolOperation {
 	
 	protected final GoEnvironment goEnvironment;
 	protected final String gocodePath;
+	protected final GocodeLibPathTracker libPathTracker;
 	
 	public GocodeCompletionOperation(IOperationHelper opHelper, GoEnvironment goEnvironment, String gocodePath) {
+		this(opHelper, goEnvironment, gocodePath, null);
+	}
+	
+	/**
+	 * @param libPathTracker if not null, used to avoid setting the lib-path when it is already set.
+	 */
+	public GocodeCompletionOperation(IOperationHelper opHelper, GoEnvironment goEnvironment, String gocodePath,
+			GocodeLibPathTracker libPathTracker) {
 		super(opHelper);
 		this.goEnvironment = goEnvironment;
 		this.gocodePath = gocodePath;
+		this.libPathTracker = libPathTracker;
 	}
 	
 	protected void setLibPathForEnvironment() throws CommonException, OperationCancellation {
+		String libPath = goEnvironment.getGoPathString();
+		if(libPathTracker != null && libPathTracker.checkLibPathSet(libPath)) {
+			return;
+		}
 		
 		ArrayList2<String> arguments = new ArrayList2<>(gocodePath);
 		
@@ -44,11 +59,15 @@ public class GocodeCompletionOperation extends AbstractToolOperation {
 		}
 		arguments.add("set");
 		arguments.add("lib-path");
-		arguments.add(goEnvironment.getGoPathString());
+		arguments.add(libPath);
 		
 		ProcessBuilder pb = goEnvironment.createProcessBuilder(arguments, null, true);
 		
 		runToolProcess(pb, null);
+		
+		if(libPathTracker != null) {
+			libPathTracker.libPathSet(libPath);
+		}
 	}
 	
 	public ExternalProcessResult execute(String filePath, String bufferText, int offset) 
@@ -71,12 +90,33 @@ public class GocodeCompletionOperation extends AbstractToolOperation {
 		ExternalProcessResult processResult = runToolProcess(pb, bufferText);
 		
 		if(processResult.exitValue != 0) {
+			if(libPathTracker != null) {
+				libPathTracker.invalidate(); // The server might have been restarted
+			}
 			throw new CommonException("Error, gocode returned non-zero status: " + processResult.exitValue);
 		}
 		
 		return processResult;
 	}
 	
+	/**
+	 * Run the completion through given daemon client, instead of running the gocode client process.
+	 * @return the completions, one per line, in the same format as {@link #execute(String, String, int)}.
+	 */
+	public ArrayList2<String> executeWithDaemon(GocodeDaemonClient daemonClient, String filePath, 
+			String bufferText, int offset, ICancelMonitor cm) throws CommonException, OperationCancellation {
+		
+		String libPath = goEnvironment.getGoPathString();
+		if(libPathTracker == null || !libPathTracker.isLibPathSet(libPath)) {
+			daemonClient.setLibPath(libPath, cm);
+			if(libPathTracker != null) {
+				libPathTracker.libPathSet(libPath);
+			}
+		}
+		
+		return daemonClient.autoComplete(filePath, bufferText, offset, goEnvironment, cm);
+	}
+	
 	// TODO: move the code that process gocode result to here
 	
 	public static final Pattern LINE_SPLITTER = Pattern.compile("\n|(\r\n)|\r");
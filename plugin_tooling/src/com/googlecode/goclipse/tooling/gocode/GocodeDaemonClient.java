@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling.gocode;
+
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.BYTES;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.INT;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.STRING;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.UINT;
+import static com.googlecode.goclipse.tooling.gocode.GobCodec.field;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import melnorme.utilbox.collections.ArrayList2;
+import melnorme.utilbox.concurrency.ICancelMonitor;
+import melnorme.utilbox.concurrency.OperationCancellation;
+import melnorme.utilbox.core.CommonException;
+
+import com.googlecode.goclipse.tooling.env.GoEnvironment;
+import com.googlecode.goclipse.tooling.gocode.GobCodec.StructType;
+
+/**
+ * A client for the gocode daemon (gocode -s -sock=tcp), that talks the daemon RPC protocol
+ * (Go net/rpc, with gob encoding) directly, instead of running a gocode client process for each request.
+ *
+ * A single connection is kept open, and requests are pipelined on it: replies are matched to requests
+ * by sequence number. If the connection is lost (for example, the daemon was restarted),
+ * a new one is opened on the next request.
+ */
+public class GocodeDaemonClient {
+	
+	public static final String DEFAULT_HOST = "127.0.0.1";
+	public static final int DEFAULT_PORT = 37373;
+	
+	public static final int CONNECT_TIMEOUT_MILLIS = 1000;
+	
+	protected static final StructType RPC_REQUEST = new StructType("Request",
+		field("ServiceMethod", STRING),
+		field("Seq", UINT)
+	);
+	
+	protected static final StructType ARGS_SET = new StructType("Args_set",
+		field("Arg0", STRING),
+		field("Arg1", STRING)
+	);
+	
+	protected static final StructType GO_BUILD_CONTEXT = new StructType("go_build_context",
+		field("GOARCH", STRING),
+		field("GOOS", STRING),
+		field("GOROOT", STRING),
+		field("GOPATH", STRING)
+	);
+	
+	protected static final StructType ARGS_AUTO_COMPLETE = new StructType("Args_auto_complete",
+		field("Arg0", BYTES),
+		field("Arg1", STRING),
+		field("Arg2", INT),
+		field("Arg3", GO_BUILD_CONTEXT)
+	);
+	
+	/** Names of the gocode decl_class values, starting at -1. */
+	protected static final String[] DECL_CLASS_NAMES = { "PANIC", "const", "func", "import", "package", "type",
+		"var" };
+	
+	protected final String host;
+	protected final int port;
+	protected final AtomicLong nextSeq = new AtomicLong();
+	
+	protected Connection connection; // guarded by this
+	
+	public GocodeDaemonClient() {
+		this(DEFAULT_HOST, DEFAULT_PORT);
+	}
+	
+	public GocodeDaemonClient(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+	
+	/**
+	 * Close the current connection, if any. Pending requests fail.
+	 * A new connection is opened on the next request (use when the daemon is restarted or stopped).
+	 */
+	public void reset() {
+		Connection oldConnection;
+		synchronized(this) {
+			oldConnection = connection;
+			connection = null;
+		}
+		if(oldConnection != null) {
+			oldConnection.close(new IOException("Connection reset."));
+		}
+	}
+	
+	protected synchronized Connection getConnection() throws IOException {
+		if(connection == null || connection.isClosed()) {
+			Socket socket = new Socket();
+			try {
+				socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+				socket.setTcpNoDelay(true);
+				connection = new Connection(socket);
+			} catch(IOException e) {
+				socket.close();
+				throw e;
+			}
+		}
+		return connection;
+	}
+	
+	/**
+	 * Send a request to the daemon, without waiting for the reply.
+	 */
+	public PendingCall call(String serviceMethod, StructType argsType, Object[] args) throws CommonException {
+		IOException failure = null;
+		// If a connection was lost since it was last used, the send fails: retry once, with a new connection.
+		for(int attempt = 0; attempt < 2; attempt++) {
+			Connection conn;
+			try {
+				conn = getConnection();
+			} catch(IOException e) {
+				throw new CommonException("Could not connect to gocode daemon at " + host + ":" + port, e);
+			}
+			try {
+				return conn.send(serviceMethod, argsType, args);
+			} catch(IOException e) {
+				conn.close(e);
+				failure = e;
+			}
+		}
+		throw new CommonException("Error sending request to gocode daemon: " + failure.getMessage(), failure);
+	}
+	
+	public void setLibPath(String libPath, ICancelMonitor cm) throws CommonException, OperationCancellation {
+		call("RPC.RPC_set", ARGS_SET, new Object[] { "lib-path", libPath }).awaitReply(cm);
+	}
+	
+	/**
+	 * @return the completions at given offset, one per line, in the format of gocode -f=csv
+	 * ("class,,name,,type").
+	 */
+	public ArrayList2<String> autoComplete(String filePath, String bufferText, int offset,
+			GoEnvironment goEnvironment, ICancelMonitor cm) throws CommonException, OperationCancellation {
+		byte[] fileBytes = bufferText.getBytes(StandardCharsets.UTF_8);
+		// gocode works with byte offsets
+		int cursor = bufferText.substring(0, offset).getBytes(StandardCharsets.UTF_8).length;
+		
+		Object[] buildContext = {
+			goEnvironment.getGoArch().asString(),
+			goEnvironment.getGoOs().asString(),
+			goEnvironment.getGoRoot().asString(),
+			goEnvironment.getGoPathString(),
+		};
+		Object[] args = { fileBytes, filePath, cursor, buildContext };
+		
+		Object reply = call("RPC.RPC_auto_complete", ARGS_AUTO_COMPLETE, args).awaitReply(cm);
+		
+		ArrayList2<String> completions = new ArrayList2<>();
+		try {
+			for(Object candidateValue : GobCodec.getList(GobCodec.asStruct(reply), "Arg0")) {
+				Map<String, Object> candidate = GobCodec.asStruct(candidateValue);
+				completions.add(getDeclClassName(GobCodec.getLong(candidate, "Class")) + ",," +
+					GobCodec.getString(candidate, "Name") + ",," + GobCodec.getString(candidate, "Type"));
+			}
+		} catch(IOException e) {
+			throw new CommonException("Invalid reply from gocode daemon: " + e.getMessage(), e);
+		}
+		return completions;
+	}
+	
+	protected static String getDeclClassName(long declClass) {
+		int index = (int) declClass + 1;
+		return index >= 0 && index < DECL_CLASS_NAMES.length ? DECL_CLASS_NAMES[index] : DECL_CLASS_NAMES[0];
+	}
+	
+	/* -----------------  ----------------- */
+	
+	protected class Connection implements Runnable {
+		
+		protected final Socket socket;
+		protected final OutputStream output;
+		protected final GobCodec.Encoder encoder;
+		protected final GobCodec.Decoder decoder;
+		protected final HashMap<Long, PendingCall> pendingCalls = new HashMap<>();
+		protected IOException closeReason; // guarded by pendingCalls
+		
+		public Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.output = new BufferedOutputStream(socket.getOutputStream());
+			this.encoder = new GobCodec.Encoder(output);
+			this.decoder = new GobCodec.Decoder(new BufferedInputStream(socket.getInputStream()));
+			
+			Thread readerThread = new Thread(this, "gocode daemon client reader");
+			readerThread.setDaemon(true);
+			readerThread.start();
+		}
+		
+		public boolean isClosed() {
+			synchronized(pendingCalls) {
+				return closeReason != null;
+			}
+		}
+		
+		public PendingCall send(String serviceMethod, StructType argsType, Object[] args) throws IOException {
+			long seq = nextSeq.getAndIncrement();
+			PendingCall call = new PendingCall(this, seq);
+			synchronized(pendingCalls) {
+				if(closeReason != null) {
+					throw closeReason;
+				}
+				pendingCalls.put(seq, call);
+			}
+			synchronized(encoder) {
+				encoder.encode(RPC_REQUEST, new Object[] { serviceMethod, seq });
+				encoder.encode(argsType, args);
+				output.flush();
+			}
+			return call;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while(true) {
+					Map<String, Object> response = GobCodec.asStruct(decoder.decode());
+					Object body = decoder.decode();
+					
+					PendingCall call;
+					synchronized(pendingCalls) {
+						call = pendingCalls.remove(GobCodec.getLong(response, "Seq"));
+					}
+					if(call != null) {
+						call.complete(body, GobCodec.getString(response, "Error"));
+					}
+				}
+			} catch(IOException e) {
+				close(e);
+			}
+		}
+		
+		protected void forget(PendingCall call) {
+			synchronized(pendingCalls) {
+				pendingCalls.remove(call.seq);
+			}
+		}
+		
+		public void close(IOException reason) {
+			ArrayList<PendingCall> failedCalls;
+			synchronized(pendingCalls) {
+				if(closeReason != null) {
+					return;
+				}
+				closeReason = reason;
+				failedCalls = new ArrayList<>(pendingCalls.values());
+				pendingCalls.clear();
+			}
+			try {
+				socket.close();
+			} catch(IOException e) {
+				// Ignore
+			}
+			for(PendingCall call : failedCalls) {
+				call.fail(reason);
+			}
+		}
+		
+	}
+	
+	/**
+	 * A request sent to the daemon, whose reply may not have arrived yet.
+	 */
+	public static class PendingCall {
+		
+		protected final Connection connection;
+		protected final long seq;
+		protected final CountDownLatch replyLatch = new CountDownLatch(1);
+		protected volatile Object reply;
+		protected volatile String error;
+		protected volatile IOException failure;
+		
+		protected PendingCall(Connection connection, long seq) {
+			this.connection = connection;
+			this.seq = seq;
+		}
+		
+		protected void complete(Object reply, String error) {
+			this.reply = reply;
+			this.error = error;
+			replyLatch.countDown();
+		}
+		
+		protected void fail(IOException failure) {
+			this.failure = failure;
+			replyLatch.countDown();
+		}
+		
+		/**
+		 * Wait for the reply. If given monitor is cancelled, stop waiting, and ignore the reply.
+		 */
+		public Object awaitReply(ICancelMonitor cm) throws CommonException, OperationCancellation {
+			try {
+				while(!replyLatch.await(50, TimeUnit.MILLISECONDS)) {
+					if(cm.isCanceled()) {
+						connection.forget(this);
+						throw new OperationCancellation();
+					}
+				}
+			} catch(InterruptedException e) {
+				connection.forget(this);
+				Thread.currentThread().interrupt();
+				throw new OperationCancellation();
+			}
+			
+			if(failure != null) {
+				throw new CommonException("Connection to gocode daemon failed: " + failure.getMessage(), failure);
+			}
+			if(error != null && !error.isEmpty()) {
+				throw new CommonException("gocode daemon error: " + error);
+			}
+			return reply;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2015 Bruno Medeiros and other Contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Bruno Medeiros - initial API and implementation
+ *******************************************************************************/
+package com.googlecode.goclipse.tooling.gocode;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the lib-path last set in a running gocode server, so that it is only set again 
+ * if the GOPATH or the server changes. 
+ * 
+ * The lib-path is only tracked while a known server instance is set: if the server is not known
+ * (for example, if gocode auto-started it) the lib-path is always set.
+ */
+public class GocodeLibPathTracker {
+	
+	protected Object serverInstance;
+	protected String libPath;
+	protected final AtomicLong avoidedSpawnCount = new AtomicLong();
+	
+	public GocodeLibPathTracker() {
+	}
+	
+	/**
+	 * Set the server the lib-path is set into. Null if no server is known.
+	 * Any lib-path previously recorded is forgotten.
+	 */
+	public synchronized void setServerInstance(Object serverInstance) {
+		this.serverInstance = serverInstance;
+		this.libPath = null;
+	}
+	
+	/**
+	 * @return true if given lib-path is known to be set in the server, in which case
+	 * the spawn of a "set lib-path" process is counted as avoided.
+	 */
+	public synchronized boolean checkLibPathSet(String libPath) {
+		if(isLibPathSet(libPath)) {
+			avoidedSpawnCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+	
+	/** @return true if given lib-path is known to be set in the server. Doesn't count an avoided spawn. */
+	public synchronized boolean isLibPathSet(String libPath) {
+		return serverInstance != null && this.libPath != null && this.libPath.equals(libPath);
+	}
+	
+	/** Record given lib-path as set in the server. */
+	public synchronized void libPathSet(String libPath) {
+		if(serverInstance != null) {
+			this.libPath = libPath;
+		}
+	}
+	
+	/** Forget the recorded lib-path (for example, if the server reported an error). */
+	public synchronized void invalidate() {
+		this.libPath = null;
+	}
+	
+	/** @return the number of "set lib-path" process spawns avoided so far. */
+	public long getAvoidedSpawnCount() {
+		return avoidedSpawnCount.get();
+	}
+	
+}